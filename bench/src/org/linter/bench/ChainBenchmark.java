@@ -0,0 +1,48 @@
+package org.linter.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.linter.ServiceParser;
+import org.linter.ServiceParserChainManager;
+import org.linter.ServiceParserTypesetter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ServiceParser chain lookup and instantiation for a page URL
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+	@Param({ Fixtures.ARTICLE, Fixtures.GALLERY, Fixtures.VIDEO, Fixtures.BLOG })
+	public String fixture;
+
+	private String _url;
+
+	@Setup
+	public void setup() throws IOException {
+		_url = Fixtures.getUrl(fixture);
+		// As registered by the command-line application
+		ServiceParserChainManager.getInstance().registerServiceParser(ServiceParserTypesetter::new);
+	}
+
+	@Benchmark
+	public ServiceParser getServiceParser() {
+		return ServiceParserChainManager.getInstance().getServiceParser(_url);
+	}
+}
@@ -0,0 +1,88 @@
+package org.linter.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checked-in HTML fixtures and the page URLs they were saved from
+ *
+ * Fixtures are read from bench/fixtures relative to the working directory, or from the
+ * directory named by the linter.bench.fixtures system property. fixtures.tsv lists each
+ * fixture file with its page URL.
+ */
+public class Fixtures {
+
+	/**
+	 * System property naming the fixtures directory
+	 */
+	public static final String FIXTURES_PROPERTY = "linter.bench.fixtures";
+
+	/**
+	 * Fixture names, as used by the benchmark parameters
+	 */
+	public static final String ARTICLE = "article.html";
+	public static final String GALLERY = "gallery.html";
+	public static final String VIDEO = "video.html";
+	public static final String BLOG = "blog.html";
+
+
+
+	/**
+	 * Get the fixtures directory
+	 * @return Directory
+	 */
+	public static File getDirectory() {
+		return new File(System.getProperty(FIXTURES_PROPERTY, "bench/fixtures"));
+	}
+
+	/**
+	 * Read a fixture
+	 * @param name	Fixture file name
+	 * @return		Raw HTML
+	 * @throws IOException	If the fixture cannot be read
+	 */
+	public static byte[] load(String name) throws IOException {
+		return Files.readAllBytes(new File(getDirectory(), name).toPath());
+	}
+
+	/**
+	 * Get the page URL of a fixture
+	 * @param name	Fixture file name
+	 * @return		Page URL
+	 * @throws IOException	If the fixture list cannot be read or does not list the fixture
+	 */
+	public static String getUrl(String name) throws IOException {
+		String url = getUrls().get(name);
+		if (url == null)
+			throw new IOException("Fixture not listed in fixtures.tsv: " + name);
+		return url;
+	}
+
+	/**
+	 * Get the page URLs of all fixtures
+	 * @return Page URLs by fixture name, in listed order
+	 * @throws IOException	If the fixture list cannot be read
+	 */
+	public static Map<String, String> getUrls() throws IOException {
+		Map<String, String> urls = new LinkedHashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new FileReader(new File(getDirectory(), "fixtures.tsv")));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("\t");
+				if (fields.length >= 2)
+					urls.put(fields[0].trim(), fields[1].trim());
+			}
+		} finally {
+			reader.close();
+		}
+		return urls;
+	}
+}
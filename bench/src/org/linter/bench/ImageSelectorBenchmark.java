@@ -0,0 +1,58 @@
+package org.linter.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.linter.AlgorithmicImageSelector;
+import org.linter.HtmlMetaIndex;
+import org.linter.ImageProbeCache;
+import org.linter.LintedPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.htmlparser.jericho.Source;
+
+/**
+ * Algorithmic preview image selection with probes stubbed and the probe cache off,
+ * so every candidate without dimensions is probed on each invocation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageSelectorBenchmark {
+
+	@Param({ Fixtures.ARTICLE, Fixtures.GALLERY, Fixtures.VIDEO, Fixtures.BLOG })
+	public String fixture;
+
+	private HtmlMetaIndex _index;
+	private String _providerUrl;
+
+	@Setup
+	public void setup() throws IOException {
+		URI uri = URI.create(Fixtures.getUrl(fixture));
+		_providerUrl = uri.getScheme() + "://" + uri.getRawAuthority();
+		_index = new HtmlMetaIndex(new Source(new ByteArrayInputStream(Fixtures.load(fixture))));
+
+		LintedPage.setDefaultFetcher(new StubPageFetcher());
+		ImageProbeCache.getInstance().setEnabled(false);
+	}
+
+	@Benchmark
+	public String getPreviewUrl() {
+		return new AlgorithmicImageSelector(_index, _providerUrl, "").getPreviewUrl();
+	}
+}
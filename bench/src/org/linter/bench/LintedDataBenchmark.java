@@ -0,0 +1,62 @@
+package org.linter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.linter.LintedData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Meta data puts and the merge done after each successor parser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LintedDataBenchmark {
+
+	/**
+	 * Keys set while scraping a page
+	 */
+	private static final String[] KEYS = { "meta_provider", "provider_name", "provider_url", "title", "description",
+		"fav_icon_url", "preview_image_url", "type", "url", "destination_url", "html", "author_name" };
+
+	private LintedData _page;
+	private LintedData _successor;
+
+	@Setup
+	public void setup() {
+		_page = newData("page");
+		_successor = newData("successor");
+	}
+
+	@Benchmark
+	public LintedData put() {
+		return newData("value");
+	}
+
+	@Benchmark
+	public LintedData merge() {
+		LintedData data = _page.copy();
+		data.mergeLintedData(_successor);
+		return data;
+	}
+
+	private static LintedData newData(String value) {
+		LintedData data = new LintedData();
+		for (String key : KEYS) {
+			data.put(key, value);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,206 @@
+package org.linter.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.linter.ConnectionPool;
+import org.linter.ImageProbeCache;
+import org.linter.LintedPage;
+import org.linter.MetadataCache;
+import org.linter.RedirectCache;
+
+/**
+ * Load test of LintedPage.process against a StandInServer
+ *
+ * Requests cycle through the paths of the chosen scenarios and run on a fixed number of
+ * threads. Throughput and the p50, p95 and p99 latency are reported per scenario and
+ * overall. The redirect, meta data and image probe caches and the coalescing of concurrent
+ * requests for the same URL are disabled unless -caches is given, so every request
+ * exercises the fetch path.
+ *
+ * Usage: LoadDriver [-concurrency n] [-requests n] [-warmup n] [-port n] [-caches] [scenario ...]
+ */
+public class LoadDriver {
+
+	/**
+	 * Paths of each scenario, relative to the server
+	 */
+	private static final Map<String, String[]> SCENARIOS = new LinkedHashMap<String, String[]>();
+
+	static {
+		SCENARIOS.put("page", paths("/page/"));
+		SCENARIOS.put("gzip", paths("/gzip/"));
+		SCENARIOS.put("deflate", paths("/deflate/"));
+		SCENARIOS.put("chunked", paths("/chunked/"));
+		SCENARIOS.put("redirect", paths("/redirect/3/page/"));
+		SCENARIOS.put("relative", paths("/relative/3/page/"));
+		SCENARIOS.put("loop", new String[] { "/loop/3/0" });
+		SCENARIOS.put("oversized", new String[] { "/oversized" });
+		SCENARIOS.put("image", new String[] { "/asset/direct/photo-1200x800.png" });
+		SCENARIOS.put("slow", new String[] { "/slow/500/page/" + Fixtures.ARTICLE });
+		SCENARIOS.put("hang", new String[] { "/hang" });
+	}
+
+	/**
+	 * Scenarios run when none are given, those that complete quickly
+	 */
+	private static final String[] DEFAULT_SCENARIOS = { "page", "gzip", "deflate", "chunked", "redirect", "loop", "oversized", "image" };
+
+	/**
+	 * Run the load test
+	 * @param args	Options and scenarios
+	 */
+	public static void main(String[] args) throws Exception {
+		int concurrency = 16;
+		int requests = 2000;
+		int warmup = 200;
+		int port = 0;
+		boolean caches = false;
+		List<String> scenarios = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-concurrency") && i + 1 < args.length) {
+				concurrency = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-requests") && i + 1 < args.length) {
+				requests = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-warmup") && i + 1 < args.length) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-port") && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-caches")) {
+				caches = true;
+			} else if (SCENARIOS.containsKey(args[i])) {
+				scenarios.add(args[i]);
+			} else {
+				System.out.println("Usage: LoadDriver [-concurrency n] [-requests n] [-warmup n] [-port n] [-caches] [scenario ...]");
+				System.out.println("Scenarios: " + SCENARIOS.keySet());
+				System.exit(1);
+			}
+		}
+		if (scenarios.isEmpty())
+			scenarios.addAll(Arrays.asList(DEFAULT_SCENARIOS));
+
+		ConnectionPool.configureTransportKeepAlive(ConnectionPool.DEFAULT_MAX_PER_HOST, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+		RedirectCache.getInstance().setEnabled(caches);
+		MetadataCache.getInstance().setEnabled(caches);
+		ImageProbeCache.getInstance().setEnabled(caches);
+		LintedPage.setCoalesceRequests(caches);
+
+		StandInServer server = new StandInServer(port);
+		try {
+			List<String> urls = new ArrayList<String>();
+			List<String> urlScenarios = new ArrayList<String>();
+			for (String scenario : scenarios) {
+				for (String path : SCENARIOS.get(scenario)) {
+					urls.add(server.getUrl(path));
+					urlScenarios.add(scenario);
+				}
+			}
+
+			System.out.println(String.format("Server: %s  Concurrency: %d  Requests: %d  Warmup: %d  Caches: %s  Scenarios: %s",
+					server.getUrl("/"), concurrency, requests, warmup, caches ? "on" : "off", scenarios));
+
+			if (warmup > 0)
+				run(urls, concurrency, warmup, new long[warmup], new boolean[warmup]);
+
+			long[] times = new long[requests];
+			boolean[] ok = new boolean[requests];
+			long elapsed = run(urls, concurrency, requests, times, ok);
+
+			for (String scenario : scenarios) {
+				List<Long> scenarioTimes = new ArrayList<Long>();
+				int failed = 0;
+				for (int i = 0; i < requests; i++) {
+					if (urlScenarios.get(i % urls.size()).equals(scenario)) {
+						scenarioTimes.add(times[i]);
+						if (!ok[i])
+							failed++;
+					}
+				}
+				report(scenario, scenarioTimes, failed, 0);
+			}
+
+			List<Long> allTimes = new ArrayList<Long>();
+			int failed = 0;
+			for (int i = 0; i < requests; i++) {
+				allTimes.add(times[i]);
+				if (!ok[i])
+					failed++;
+			}
+			report("total", allTimes, failed, elapsed);
+		} finally {
+			server.close();
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Process requests, each on the next URL in turn
+	 * @return Wall clock time in nanoseconds
+	 */
+	private static long run(final List<String> urls, int concurrency, final int requests, final long[] times, final boolean[] ok) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		for (int t = 0; t < concurrency; t++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					int i;
+					while ((i = next.getAndIncrement()) < requests) {
+						LintedPage page = new LintedPage(urls.get(i % urls.size()));
+						long begin = System.nanoTime();
+						try {
+							page.process();
+							ok[i] = Boolean.TRUE.equals(page.getParseOk());
+						} catch (RuntimeException e) {
+							ok[i] = false;
+						}
+						times[i] = System.nanoTime() - begin;
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Print the latency percentiles of a scenario, and its throughput if elapsed is given
+	 */
+	private static void report(String name, List<Long> times, int failed, long elapsed) {
+		if (times.isEmpty())
+			return;
+		List<Long> sorted = new ArrayList<Long>(times);
+		Collections.sort(sorted);
+		String throughput = (elapsed > 0) ? String.format("  Throughput: %.1f req/s", sorted.size() / (elapsed / 1e9)) : "";
+		System.out.println(String.format("%-10s Requests: %6d  Failed: %6d  p50: %9.3f ms  p95: %9.3f ms  p99: %9.3f ms  Max: %9.3f ms%s",
+				name, sorted.size(), failed, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.95) / 1e6,
+				percentile(sorted, 0.99) / 1e6, sorted.get(sorted.size() - 1) / 1e6, throughput));
+	}
+
+	/**
+	 * Nearest rank percentile of sorted times
+	 */
+	private static long percentile(List<Long> sorted, double fraction) {
+		int rank = (int) Math.ceil(fraction * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	private static String[] paths(String prefix) {
+		return new String[] {
+			prefix + Fixtures.ARTICLE,
+			prefix + Fixtures.GALLERY,
+			prefix + Fixtures.VIDEO,
+			prefix + Fixtures.BLOG
+		};
+	}
+}
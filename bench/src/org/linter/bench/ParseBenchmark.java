@@ -0,0 +1,105 @@
+package org.linter.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.linter.HtmlMetaIndex;
+import org.linter.ImageProbeCache;
+import org.linter.LintedPage;
+import org.linter.ServiceParser;
+import org.linter.ServiceParserChainManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.htmlparser.jericho.Source;
+
+/**
+ * Jericho parsing, the meta data index and each ServiceParserAlgorithmic parse step
+ *
+ * Steps run on a parser whose source and index were built during setup, so they measure
+ * the step alone. Image probes are stubbed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ Fixtures.ARTICLE, Fixtures.GALLERY, Fixtures.VIDEO, Fixtures.BLOG })
+	public String fixture;
+
+	private String _url;
+	private byte[] _html;
+	private Source _source;
+	private StepParser _parser;
+
+	@Setup
+	public void setup() throws IOException {
+		_url = Fixtures.getUrl(fixture);
+		_html = Fixtures.load(fixture);
+		_source = newSource();
+		_parser = new StepParser(_url, _source);
+		_parser.index();
+
+		LintedPage.setDefaultFetcher(new StubPageFetcher());
+		ImageProbeCache.getInstance().setEnabled(false);
+	}
+
+	@Benchmark
+	public Source sourceConstruction() throws IOException {
+		Source source = newSource();
+		source.fullSequentialParse();
+		return source;
+	}
+
+	@Benchmark
+	public HtmlMetaIndex metaIndex() {
+		return new HtmlMetaIndex(_source);
+	}
+
+	@Benchmark
+	public boolean parseTitle() {
+		return _parser.title();
+	}
+
+	@Benchmark
+	public boolean parseDescription() {
+		return _parser.description();
+	}
+
+	@Benchmark
+	public boolean parseFavIconUrl() {
+		return _parser.favIcon();
+	}
+
+	@Benchmark
+	public boolean parsePreviewImage() {
+		return _parser.previewImage();
+	}
+
+	/**
+	 * The whole page, from raw content through the parser chain
+	 */
+	@Benchmark
+	public boolean parsePage() {
+		ServiceParser parser = ServiceParserChainManager.getInstance().getServiceParser(_url);
+		parser.setRawContent(new ByteArrayInputStream(_html));
+		return parser.parse();
+	}
+
+	private Source newSource() throws IOException {
+		return new Source(new ByteArrayInputStream(_html));
+	}
+}
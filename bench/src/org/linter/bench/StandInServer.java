@@ -0,0 +1,349 @@
+package org.linter.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server standing in for the web while load testing LintedPage.process
+ *
+ * Pages are the checked-in fixtures. Their absolute and root-relative URLs are rewritten
+ * to /asset/ paths of this server, so image probes stay local too. Paths:
+ *
+ * <pre>
+ * /page/fixture				Fixture, gzip or deflate compressed if the request accepts it
+ * /gzip/fixture				Fixture, always gzip compressed
+ * /deflate/fixture				Fixture, always deflate compressed
+ * /chunked/fixture				Fixture, sent in chunks of CHUNK_SIZE bytes
+ * /oversized					Page of OVERSIZED_BYTES bytes, chunked, meta data at the top
+ * /redirect/n/path				n absolute redirects, then /path
+ * /relative/n/path				n root-relative redirects, then /path
+ * /loop/n/i					Redirect loop of n hops, starting at hop i
+ * /slow/millis/path			/path after a delay of millis before the headers
+ * /hang						No response until the server is closed
+ * /asset/anything				PNG image, widthxheight taken from the path or 640x480,
+ * 								honours single byte range requests
+ * </pre>
+ *
+ * Note that LintedPage resolves relative redirects against the default port of the scheme,
+ * the /relative chains only resolve when the server listens on port 80.
+ */
+public class StandInServer implements Closeable {
+
+	/**
+	 * Size of the chunks of /chunked pages
+	 */
+	public static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Size of the /oversized page, above the default maximum content length
+	 */
+	public static final int OVERSIZED_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * Image dimensions used when the asset path names none
+	 */
+	private static final int DEFAULT_WIDTH = 640;
+	private static final int DEFAULT_HEIGHT = 480;
+
+	/**
+	 * Absolute and root-relative URLs of fixtures, rewritten to assets of this server
+	 */
+	private static final Pattern ABSOLUTE_URL_PATTERN = Pattern.compile("(https?:)?//([A-Za-z0-9.-]+)");
+	private static final Pattern ROOT_RELATIVE_PATTERN = Pattern.compile("(src|href|content)=\"/(?!/)");
+
+	/**
+	 * Dimensions named by an asset path
+	 */
+	private static final Pattern DIMENSION_PATTERN = Pattern.compile("(\\d{1,4})x(\\d{1,4})");
+
+	/**
+	 * Single range of a Range header
+	 */
+	private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	private final String _baseUrl;
+
+	/**
+	 * Released when the server closes, ends the /hang requests
+	 */
+	private final CountDownLatch _closed = new CountDownLatch(1);
+
+	/**
+	 * Rewritten fixtures and encoded images
+	 */
+	private final Map<String, byte[]> _pages = new ConcurrentHashMap<String, byte[]>();
+	private final Map<String, byte[]> _images = new ConcurrentHashMap<String, byte[]>();
+
+
+
+	/**
+	 * Start a server on the loopback interface
+	 * @param port	Port to listen on, 0 for any free port
+	 * @throws IOException	If the server cannot listen
+	 */
+	public StandInServer(int port) throws IOException {
+		_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+		_baseUrl = "http://127.0.0.1" + ((_server.getAddress().getPort() == 80) ? "" : ":" + _server.getAddress().getPort());
+
+		// Hanging and slow requests each hold a thread
+		_executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "stand-in-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		_server.setExecutor(_executor);
+		_server.createContext("/", new Handler());
+		_server.start();
+	}
+
+	/**
+	 * Get the URL of a path on this server
+	 * @param path	Path starting with /
+	 * @return		Absolute URL
+	 */
+	public String getUrl(String path) {
+		return _baseUrl + path;
+	}
+
+	/**
+	 * Get the port this server listens on
+	 * @return Port
+	 */
+	public int getPort() {
+		return _server.getAddress().getPort();
+	}
+
+	/**
+	 * Stop the server, ending any hanging requests
+	 */
+	public void close() {
+		_closed.countDown();
+		_server.stop(0);
+		_executor.shutdownNow();
+	}
+
+	private class Handler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				serve(exchange, exchange.getRequestURI().getPath());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				// Client went away, e.g. after a read timeout
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	private void serve(HttpExchange exchange, String path) throws IOException, InterruptedException {
+		String[] parts = path.split("/", 4);
+		String route = (parts.length > 1) ? parts[1] : "";
+
+		if (route.equals("page") && parts.length > 2) {
+			String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			String encoding = null;
+			if (accept != null && accept.contains("gzip")) {
+				encoding = "gzip";
+			} else if (accept != null && accept.contains("deflate")) {
+				encoding = "deflate";
+			}
+			servePage(exchange, path.substring("/page/".length()), encoding, false);
+		} else if ((route.equals("gzip") || route.equals("deflate")) && parts.length > 2) {
+			servePage(exchange, path.substring(route.length() + 2), route, false);
+		} else if (route.equals("chunked") && parts.length > 2) {
+			servePage(exchange, path.substring("/chunked/".length()), null, true);
+		} else if (route.equals("oversized")) {
+			serveOversized(exchange);
+		} else if ((route.equals("redirect") || route.equals("relative")) && parts.length > 3) {
+			int hops = Integer.parseInt(parts[2]);
+			String next = (hops > 1) ? "/" + route + "/" + (hops - 1) + "/" + parts[3] : "/" + parts[3];
+			redirect(exchange, route.equals("relative") ? next : getUrl(next));
+		} else if (route.equals("loop") && parts.length > 3) {
+			int hops = Integer.parseInt(parts[2]);
+			redirect(exchange, getUrl("/loop/" + hops + "/" + ((Integer.parseInt(parts[3]) + 1) % hops)));
+		} else if (route.equals("slow") && parts.length > 3) {
+			Thread.sleep(Long.parseLong(parts[2]));
+			serve(exchange, "/" + parts[3]);
+		} else if (route.equals("hang")) {
+			_closed.await();
+		} else if (route.equals("asset")) {
+			serveImage(exchange, path);
+		} else {
+			send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	private void servePage(HttpExchange exchange, String fixture, String encoding, boolean chunked) throws IOException {
+		byte[] page = getPage(fixture);
+		if (page == null) {
+			send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.US_ASCII));
+			return;
+		}
+
+		if (encoding != null) {
+			exchange.getResponseHeaders().set("Content-Encoding", encoding);
+			exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+			page = compress(page, encoding);
+		}
+		if (chunked) {
+			sendChunked(exchange, "text/html; charset=utf-8", page, page.length);
+		} else {
+			send(exchange, 200, "text/html; charset=utf-8", page);
+		}
+	}
+
+	private void serveOversized(HttpExchange exchange) throws IOException {
+		StringBuilder head = new StringBuilder();
+		head.append("<!DOCTYPE html>\n<html><head><title>Oversized page</title>\n");
+		head.append("<meta property=\"og:title\" content=\"Oversized page\">\n");
+		head.append("<meta property=\"og:image\" content=\"").append(getUrl("/asset/oversized/cover-1200x630.png")).append("\">\n");
+		head.append("</head><body>\n");
+		sendChunked(exchange, "text/html; charset=utf-8", head.toString().getBytes(StandardCharsets.UTF_8), OVERSIZED_BYTES);
+	}
+
+	private void serveImage(HttpExchange exchange, String path) throws IOException {
+		int width = DEFAULT_WIDTH;
+		int height = DEFAULT_HEIGHT;
+		Matcher m = DIMENSION_PATTERN.matcher(path);
+		if (m.find()) {
+			width = Math.max(1, Integer.parseInt(m.group(1)));
+			height = Math.max(1, Integer.parseInt(m.group(2)));
+		}
+		byte[] image = getImage(width, height);
+
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		Matcher r = (range != null) ? RANGE_PATTERN.matcher(range.trim()) : null;
+		if (r != null && r.matches()) {
+			int first = Integer.parseInt(r.group(1));
+			int last = r.group(2).isEmpty() ? image.length - 1 : Math.min(image.length - 1, Integer.parseInt(r.group(2)));
+			if (first <= last) {
+				exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + image.length);
+				byte[] part = new byte[last - first + 1];
+				System.arraycopy(image, first, part, 0, part.length);
+				send(exchange, 206, "image/png", part);
+				return;
+			}
+		}
+		send(exchange, 200, "image/png", image);
+	}
+
+	private void redirect(HttpExchange exchange, String location) throws IOException {
+		exchange.getResponseHeaders().set("Location", location);
+		send(exchange, 301, "text/html", new byte[0]);
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		if (exchange.getRequestMethod().equals("HEAD")) {
+			exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+		if (body.length > 0) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+
+	/**
+	 * Send a body in chunks, padded with filler paragraphs up to length
+	 */
+	private void sendChunked(HttpExchange exchange, String contentType, byte[] body, int length) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		if (exchange.getRequestMethod().equals("HEAD")) {
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, 0);
+
+		byte[] filler = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n".getBytes(StandardCharsets.US_ASCII);
+		OutputStream out = exchange.getResponseBody();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		int written = 0;
+		while (written < length) {
+			int size = Math.min(CHUNK_SIZE, length - written);
+			for (int i = 0; i < size; i++) {
+				int offset = written + i;
+				chunk[i] = (offset < body.length) ? body[offset] : filler[(offset - body.length) % filler.length];
+			}
+			out.write(chunk, 0, size);
+			out.flush();
+			written += size;
+		}
+		out.close();
+	}
+
+	/**
+	 * Fixture with its URLs pointing at this server, null if there is no such fixture
+	 */
+	private byte[] getPage(String fixture) throws IOException {
+		byte[] page = _pages.get(fixture);
+		if (page != null)
+			return page;
+		if (fixture.contains("/") || fixture.contains(".."))
+			return null;
+
+		String html;
+		try {
+			html = new String(Fixtures.load(fixture), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+		String assets = getUrl("/asset/");
+		html = ABSOLUTE_URL_PATTERN.matcher(html).replaceAll(Matcher.quoteReplacement(assets) + "$2");
+		html = ROOT_RELATIVE_PATTERN.matcher(html).replaceAll("$1=\"" + Matcher.quoteReplacement(assets) + "local/");
+		page = html.getBytes(StandardCharsets.UTF_8);
+		_pages.put(fixture, page);
+		return page;
+	}
+
+	private byte[] getImage(int width, int height) throws IOException {
+		String key = width + "x" + height;
+		byte[] image = _images.get(key);
+		if (image == null) {
+			BufferedImage buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(buffer, "png", out);
+			image = out.toByteArray();
+			_images.put(key, image);
+		}
+		return image;
+	}
+
+	private static byte[] compress(byte[] data, String encoding) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+		// LintedPage inflates deflate bodies without the zlib wrapper
+		OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+}
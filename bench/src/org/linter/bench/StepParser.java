@@ -0,0 +1,42 @@
+package org.linter.bench;
+
+import org.linter.HtmlMetaIndex;
+import org.linter.ServiceParserAlgorithmic;
+
+import net.htmlparser.jericho.Source;
+
+/**
+ * ServiceParserAlgorithmic exposing its parse steps to the benchmarks
+ */
+public class StepParser extends ServiceParserAlgorithmic {
+
+	/**
+	 * Constructor
+	 * @param url		Page URL
+	 * @param source	Parsed page
+	 */
+	public StepParser(String url, Source source) {
+		initialize(url);
+		setJerichoSource(source);
+	}
+
+	public HtmlMetaIndex index() {
+		return getMetaIndex();
+	}
+
+	public boolean title() {
+		return parseTitle(getMetaIndex());
+	}
+
+	public boolean description() {
+		return parseDescription(getMetaIndex());
+	}
+
+	public boolean favIcon() {
+		return parseFavIconUrl(getMetaIndex());
+	}
+
+	public boolean previewImage() {
+		return parsePreviewImage(getMetaIndex());
+	}
+}
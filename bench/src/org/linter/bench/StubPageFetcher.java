@@ -0,0 +1,55 @@
+package org.linter.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.linter.FetchRequest;
+import org.linter.FetchResponse;
+import org.linter.PageFetcher;
+
+/**
+ * Fetcher answering every request with the header of a PNG image, without any I/O
+ *
+ * Used to benchmark image selection with probes stubbed out.
+ */
+public class StubPageFetcher implements PageFetcher {
+
+	/**
+	 * Dimensions of the stubbed image
+	 */
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 480;
+
+	/**
+	 * Total size reported for the stubbed image
+	 */
+	private static final int FILE_SIZE = 48 * 1024;
+
+	/**
+	 * PNG signature and IHDR chunk
+	 */
+	private static final byte[] PNG_HEADER = {
+		(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a,
+		0, 0, 0, 13, 'I', 'H', 'D', 'R',
+		0, 0, (byte) (WIDTH >> 8), (byte) WIDTH,
+		0, 0, (byte) (HEIGHT >> 8), (byte) HEIGHT,
+		8, 2, 0, 0, 0
+	};
+
+	public FetchResponse fetch(FetchRequest request) {
+		Map<String, List<String>> headers = new HashMap<String, List<String>>();
+		headers.put("Content-Type", Collections.singletonList("image/png"));
+		headers.put("Content-Length", Collections.singletonList(Integer.toString(PNG_HEADER.length)));
+		headers.put("Content-Range", Collections.singletonList("bytes 0-" + (PNG_HEADER.length - 1) + "/" + FILE_SIZE));
+		return new FetchResponse(request.getUrl(), 206, headers, new ByteArrayInputStream(Arrays.copyOf(PNG_HEADER, PNG_HEADER.length)), null);
+	}
+
+	public CompletableFuture<FetchResponse> fetchAsync(FetchRequest request) {
+		return CompletableFuture.completedFuture(fetch(request));
+	}
+}
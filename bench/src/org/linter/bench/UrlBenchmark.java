@@ -0,0 +1,60 @@
+package org.linter.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.linter.URLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * URL parameter removal, applied to every destination URL, and canonicalization,
+ * applied to every cache lookup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBenchmark {
+
+	/**
+	 * Tracking parameters commonly stripped from destination URLs
+	 */
+	private static final String[] TRACKING_PARAMETERS = { "utm_source", "utm_medium", "utm_campaign", "utm_content", "fbclid", "ref" };
+
+	@Param({ Fixtures.ARTICLE, Fixtures.GALLERY, Fixtures.VIDEO, Fixtures.BLOG })
+	public String fixture;
+
+	private String _url;
+
+	@Setup
+	public void setup() throws IOException {
+		_url = Fixtures.getUrl(fixture);
+	}
+
+	@Benchmark
+	public String removeParameters() {
+		return URLParser.removeParameters(_url, TRACKING_PARAMETERS);
+	}
+
+	@Benchmark
+	public String canonicalize() {
+		return URLParser.canonicalize(_url);
+	}
+
+	@Benchmark
+	public String canonicalizeSorted() {
+		return URLParser.canonicalize(_url, true);
+	}
+}
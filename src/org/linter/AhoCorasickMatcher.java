@@ -0,0 +1,169 @@
+package org.linter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Finds which of a fixed set of ASCII strings occur in a text, in a single pass
+ *
+ * The Aho-Corasick automaton is compiled into a full transition table, so matching
+ * costs one table lookup per character whatever the number of strings, and allocates
+ * nothing. Characters outside ASCII occur in no string and reset the automaton.
+ * {@link #matchesAny(CharSequence)} takes any number of strings, {@link #match(CharSequence)}
+ * reports them in a 64 bit mask and so needs at most MAX_STRINGS.
+ */
+public class AhoCorasickMatcher {
+
+	/**
+	 * Maximum number of strings for {@link #match(CharSequence)}, one bit of the match mask each
+	 */
+	public static final int MAX_STRINGS = 64;
+
+	/**
+	 * Characters with a transition table column
+	 */
+	private static final int ALPHABET = 128;
+
+	/**
+	 * Transitions by state and character
+	 */
+	private final int[][] _next;
+
+	/**
+	 * Strings ending at each state, including those reached by its failure links; only
+	 * kept with at most MAX_STRINGS strings
+	 */
+	private final long[] _output;
+
+	/**
+	 * Whether any string ends at each state
+	 */
+	private final boolean[] _accepting;
+
+	/**
+	 * Number of strings
+	 */
+	private final int _size;
+
+
+
+	/**
+	 * Constructor
+	 * @param strings	Strings to find, ASCII only
+	 * @throws IllegalArgumentException	If a string is empty or not ASCII
+	 */
+	public AhoCorasickMatcher(String... strings) {
+		boolean masked = strings.length <= MAX_STRINGS;
+		int maxStates = 1;
+		for (String string : strings) {
+			maxStates += string.length();
+		}
+		int[][] next = new int[maxStates][];
+		long[] output = masked ? new long[maxStates] : null;
+		boolean[] accepting = new boolean[maxStates];
+		next[0] = newRow();
+		int states = 1;
+
+		// Trie
+		for (int i = 0; i < strings.length; i++) {
+			String string = strings[i];
+			if (string.isEmpty())
+				throw new IllegalArgumentException("Empty string");
+			int state = 0;
+			for (int j = 0; j < string.length(); j++) {
+				char c = string.charAt(j);
+				if (c >= ALPHABET)
+					throw new IllegalArgumentException("Not ASCII: " + string);
+				if (next[state][c] < 0) {
+					next[states] = newRow();
+					next[state][c] = states++;
+				}
+				state = next[state][c];
+			}
+			if (masked)
+				output[state] |= 1L << i;
+			accepting[state] = true;
+		}
+
+		// Failure links breadth first, folded into the transitions
+		int[] fail = new int[states];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int c = 0; c < ALPHABET; c++) {
+			if (next[0][c] < 0) {
+				next[0][c] = 0;
+			} else {
+				queue.add(next[0][c]);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int c = 0; c < ALPHABET; c++) {
+				int child = next[state][c];
+				if (child < 0) {
+					next[state][c] = next[fail[state]][c];
+				} else {
+					fail[child] = next[fail[state]][c];
+					if (masked)
+						output[child] |= output[fail[child]];
+					accepting[child] |= accepting[fail[child]];
+					queue.add(child);
+				}
+			}
+		}
+
+		_next = Arrays.copyOf(next, states);
+		_output = masked ? Arrays.copyOf(output, states) : null;
+		_accepting = Arrays.copyOf(accepting, states);
+		_size = strings.length;
+	}
+
+	/**
+	 * Find the strings occurring in a text
+	 * @param text	Text to search
+	 * @return		Bit i set if string i occurs
+	 * @throws IllegalStateException	If there are more than MAX_STRINGS strings
+	 */
+	public long match(CharSequence text) {
+		if (_output == null)
+			throw new IllegalStateException("Match mask needs at most " + MAX_STRINGS + " strings: " + _size);
+
+		long found = 0;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			state = (c < ALPHABET) ? _next[state][c] : 0;
+			found |= _output[state];
+		}
+		return found;
+	}
+
+	/**
+	 * Determine if any string occurs in a text, stopping at the first match
+	 * @param text	Text to search
+	 * @return		True if a string occurs
+	 */
+	public boolean matchesAny(CharSequence text) {
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			state = (c < ALPHABET) ? _next[state][c] : 0;
+			if (_accepting[state])
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the number of strings
+	 * @return String count
+	 */
+	public int size() {
+		return _size;
+	}
+
+	private static int[] newRow() {
+		int[] row = new int[ALPHABET];
+		Arrays.fill(row, -1);
+		return row;
+	}
+}
@@ -1,11 +1,10 @@
 package org.linter;
 
 import java.awt.image.BufferedImage;
-import java.io.InputStream;
+import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.Proxy;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
 
 import javax.imageio.ImageIO;
 
@@ -19,6 +18,9 @@ public class AlgorithmicImageItem {
 	public static final int UNSPECIFIED_IMAGE_DIM = -1;
 	public static final float UNSPECIFIED_ASPECT_RATIO = -1;
 	
+	// Range requested first, enough for the dimensions of most images
+	protected static final int SNIFF_RANGE_BYTES = 2048;
+	
 	// Image URL
 	String _url;
 	
@@ -37,6 +39,9 @@ public class AlgorithmicImageItem {
 	// File Size
 	int _fileSize = 0;
 	
+	// Set once downloaded or taken from a cached probe
+	boolean _probed = false;
+	
 	// Potential image score
 	float _score;
 	
@@ -87,6 +92,14 @@ public class AlgorithmicImageItem {
 		_class = ( classname == null ) ? new String() : classname;
 	}
 	
+	public String getId() {
+		return _id;
+	}
+	
+	public String getClassName() {
+		return _class;
+	}
+	
 	public void setHeight( String height ) {
 		_height = dimensionStringToInt( height );
 	}
@@ -152,27 +165,82 @@ public class AlgorithmicImageItem {
 
 	/*
 	 * Download an Image
-	 * Download a remote image and set height and width attributes
+	 * Read the dimensions from the image header, requesting only its first bytes if the
+	 * server supports ranges. Images over the maximum file size are rejected before any
+	 * body is read. Only images of unknown format are downloaded and decoded in full.
+	 * @param fetcher Fetcher of the page
 	 */
-	public void downloadImage() {
+	public void downloadImage( PageFetcher fetcher ) {
 		final int CONNECT_TIMEOUT = 2000;
 		final int READ_TIMEOUT = 2000;
 		
+		LinterEvents.ImageProbe event = new LinterEvents.ImageProbe();
+		event.begin();
+		String outcome = null;
+		
+		_probed = true;
+		FetchResponse response = null;
 		try {
-			URL url = new URL( _url );	
-			URLConnection connection = url.openConnection();
-			connection.setConnectTimeout( CONNECT_TIMEOUT );
-			connection.setReadTimeout( READ_TIMEOUT );
-			connection.connect();
+			response = fetchFollowingRedirects( fetcher, FetchRequest.METHOD_GET, "bytes=0-" + ( SNIFF_RANGE_BYTES - 1 ), CONNECT_TIMEOUT, READ_TIMEOUT );
+			if( response.getStatusCode() >= 300 ) {
+				outcome = "HTTP error";
+				return;
+			}
 			
-			_fileSize = connection.getContentLength();
+			// Servers ignoring the range send the whole image
+			boolean partial = response.getStatusCode() == HttpURLConnection.HTTP_PARTIAL;
+			// Compared before narrowing, a total past 2 GB would otherwise turn negative
+			long fileSize = partial ? getRangeTotal( response ) : response.getContentLength();
+			_fileSize = (int) Math.min( fileSize, Integer.MAX_VALUE );
+			if( fileSize > AlgorithmicImageSelector.MAX_FILE_SIZE ) {
+				outcome = "too large";
+				return;
+			}
 			
-			InputStream inputStream = connection.getInputStream();
-			BufferedImage img = ImageIO.read( inputStream );
+			ImageDimensionSniffer sniffer = new ImageDimensionSniffer( response.getBody() );
+			boolean sniffed = sniffer.sniff();
+			if( !sniffed && partial ) {
+				// Dimensions lie beyond the range or the format is unknown, fetch the whole image
+				response.close();
+				response = fetchFollowingRedirects( fetcher, FetchRequest.METHOD_GET, null, CONNECT_TIMEOUT, READ_TIMEOUT );
+				if( response.getStatusCode() >= 300 ) {
+					outcome = "HTTP error";
+					return;
+				}
+				sniffer = new ImageDimensionSniffer( response.getBody() );
+				sniffed = sniffer.sniff();
+			}
 			
-			_width = img.getWidth();
-			_height = img.getHeight();
+			if( sniffed ) {
+				_width = sniffer.getWidth();
+				_height = sniffer.getHeight();
+				outcome = "sniffed";
+			} else if( sniffer.getFormat() == null ) {
+				BufferedImage img = ImageIO.read( sniffer.getReplayStream() );
+				
+				_width = img.getWidth();
+				_height = img.getHeight();
+				outcome = "decoded";
+			} else {
+				outcome = "not sniffed";
+			}
 		} catch( Exception e ) {
+			outcome = e.toString();
+		} finally {
+			if( response != null ) {
+				response.close();
+			}
+			
+			event.end();
+			if( event.shouldCommit() ) {
+				event.url = _url;
+				event.host = LinterEvents.getHost( _url );
+				event.outcome = outcome;
+				event.width = _width;
+				event.height = _height;
+				event.fileSize = _fileSize;
+				event.commit();
+			}
 		}
 	}
 	
@@ -185,24 +253,72 @@ public class AlgorithmicImageItem {
 	 */
 	public void downloadImageHead() {
 		try {
-		URL url = new URL( _url );
-		
-		HttpURLConnection connection = (HttpURLConnection) url.openConnection(Proxy.NO_PROXY);
-		connection.setInstanceFollowRedirects(false);
-		connection.setRequestMethod("HEAD"); // only want the headers
-		connection.setConnectTimeout(LintedPage.HTTP_CONNECT_TIMEOUT);
-		connection.setReadTimeout(LintedPage.HTTP_READ_TIMEOUT);
-		connection.setRequestProperty("User-Agent", LintedPage.HTTP_USER_AGENT);
-		connection.connect();
-		
-		
-		//int contentLength = connection.getContentLength();
+			FetchResponse response = LintedPage.getDefaultFetcher().fetch( new FetchRequest( _url, FetchRequest.METHOD_HEAD ) );
 		
+			//long contentLength = response.getContentLength();
+			
+			response.close();
 		} catch( Exception e ) {
 			
 		}
 	}
 
+	/*
+	 * Fetch the image URL, following redirects as image hosts commonly redirect to CDNs
+	 * @param fetcher Fetcher of the page
+	 * @param method HTTP method
+	 * @param range Range header, null for the whole image
+	 * @param connectTimeout Connect timeout in ms
+	 * @param readTimeout Read timeout in ms
+	 * @return Response of the final hop
+	 */
+	private FetchResponse fetchFollowingRedirects( PageFetcher fetcher, String method, String range, int connectTimeout, int readTimeout ) throws IOException {
+		final int MAX_REDIRECTS = 5;
+		
+		String location = _url;
+		for( int i = 0; ; i++ ) {
+			FetchRequest request = new FetchRequest( location, method );
+			request.setTimeouts( connectTimeout, readTimeout );
+			if( range != null ) {
+				request.setHeader( "Range", range );
+			}
+			FetchResponse response = fetcher.fetch( request );
+			
+			int status = response.getStatusCode();
+			String next = response.getHeader( "Location" );
+			if( status < 300 || status >= 400 || next == null || i >= MAX_REDIRECTS ) {
+				return response;
+			}
+			
+			response.close();
+			try {
+				location = new URI( location ).resolve( next.trim() ).toString();
+			} catch( URISyntaxException e ) {
+				throw new IOException( "Invalid image redirect: " + next, e );
+			}
+		}
+	}
+	
+	/*
+	 * Get the total size from the Content-Range header of a partial response
+	 * @param response Partial response
+	 * @return Total size in bytes, -1 if unknown
+	 */
+	private long getRangeTotal( FetchResponse response ) {
+		String contentRange = response.getHeader( "Content-Range" );
+		if( contentRange != null ) {
+			int slash = contentRange.lastIndexOf( '/' );
+			if( slash >= 0 ) {
+				try {
+					return Long.parseLong( contentRange.substring( slash + 1 ).trim() );
+				} catch( NumberFormatException e ) {
+					// unknown total, "*"
+				}
+			}
+		}
+		return -1;
+	}
+	
 	/*
 	 * Get Aspect Ratio
 	 * @return float aspect ratio, UNSPECIFIED_ASPECT_RATIO if undefined image sizes
@@ -236,6 +352,28 @@ public class AlgorithmicImageItem {
 		return _fileSize;
 	}
 	
+	/*
+	 * Apply a cached probe instead of downloading the image
+	 * Dimensions are only taken from successful probes, as with downloadImage
+	 * @param probe Cached probe of this image URL
+	 */
+	public void applyProbe( ImageProbeCache.Probe probe ) {
+		if( !probe.isFailed() ) {
+			_width = probe.getWidth();
+			_height = probe.getHeight();
+		}
+		_fileSize = probe.getFileSize();
+		_probed = true;
+	}
+	
+	/*
+	 * Is Probed
+	 * @return true if the image was downloaded or a cached probe applied
+	 */
+	public boolean isProbed() {
+		return _probed;
+	}
+	
 	/*
 	 * Dimension String to Integer
 	 * Convert a dimension string from HTML attribute to an integer. Removes any non-digit
@@ -1,15 +1,21 @@
 package org.linter;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 
 import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.HTMLElementName;
-import net.htmlparser.jericho.Source;
 
 /**
  * Determine the best preview image, algorithm scans HTML and picks the most likely
@@ -47,32 +53,99 @@ public class AlgorithmicImageSelector {
 	 */
 	protected static final int MAX_FILE_SIZE = 100 * 1024;
 	
+	/**
+	 *  Default number of top scored candidates considered, probed concurrently if needed
+	 */
+	public static final int DEFAULT_PROBE_COUNT = 2;
+	
+	/**
+	 *  Default overall deadline for probing candidates, 3 sec
+	 */
+	public static final long DEFAULT_PROBE_DEADLINE_MILLIS = 3000;
+	
+	/**
+	 *  Maximum concurrent probes across all selectors
+	 */
+	private static final int PROBE_THREADS = 16;
+	
+	/**
+	 *  Maximum probes waiting for a thread, further probes are rejected and their candidate skipped
+	 */
+	private static final int PROBE_QUEUE_SIZE = PROBE_THREADS * 4;
+	
+	/**
+	 *  Downloads candidate images, threads time out when idle
+	 */
+	private static final ThreadPoolExecutor PROBE_EXECUTOR = createProbeExecutor();
+	
+	/**
+	 *  Number of top scored candidates considered
+	 */
+	private static volatile int _probeCount = DEFAULT_PROBE_COUNT;
+	
+	/**
+	 *  Overall deadline for probing candidates
+	 */
+	private static volatile long _probeDeadlineMillis = DEFAULT_PROBE_DEADLINE_MILLIS;
+	
+	/**
+	 *  Whether candidates without dimensions are downloaded at all
+	 */
+	private static volatile boolean _probeImages = true;
+	
+	/**
+	 *  Scoring rules, swapped atomically; each selection keeps the rules it started with
+	 */
+	private static final AtomicReference<ImageScoringRules> SCORING_RULES = new AtomicReference<ImageScoringRules>( ImageScoringRules.loadConfigured() );
+	
+	/**
+	 *  Scoring rules of this selection
+	 */
+	protected ImageScoringRules _rules;
+	
 	/**
 	 *  Provider for fixing relative URLs (e.g. http://www.facebook.com)
 	 */
 	protected String _providerUrl;
 	
 	/**
-	 *  Jericho Parser Source
+	 *  URL of the page, reported in flight recorder events
 	 */
-	protected Source _source;
+	protected String _pageUrl;
+	
+	/**
+	 *  Meta data index of the page
+	 */
+	protected HtmlMetaIndex _metaIndex;
 	
 	/**
 	 *  Potential set of usable images
 	 */
 	protected ArrayList<AlgorithmicImageItem> _potentialSet;	
 	
+	/**
+	 *  Fetcher of the page for image probes, null for the default
+	 */
+	protected PageFetcher _fetcher;
+	
+	/**
+	 *  Number of candidate images downloaded by this selection
+	 */
+	private int _probesStarted;
+	
 	
 	
 	/**
 	 * Constructor
-	 * @param source		Jericho source
+	 * @param metaIndex		Meta data index of the page
 	 * @param providerUrl 	URL provider (e.g. http://www.facebook.com)
 	 */
-	public AlgorithmicImageSelector(Source source, String providerUrl, String logPrefix ) {
+	public AlgorithmicImageSelector(HtmlMetaIndex metaIndex, String providerUrl, String logPrefix ) {
 		_providerUrl = providerUrl;
-		_source = source;
+		_pageUrl = providerUrl;
+		_metaIndex = metaIndex;
 		_logPrefix = logPrefix;
+		_rules = SCORING_RULES.get();
 	}
 
 	/**
@@ -81,88 +154,275 @@ public class AlgorithmicImageSelector {
 	 */
 	public String getPreviewUrl() {
 		logger.trace( "Algorithmically selecting preview image" );
-		long timeStart = System.currentTimeMillis();
+		LinterEvents.ImageSelection event = new LinterEvents.ImageSelection();
+		event.begin();
+		long timeStart = System.nanoTime();
 				
-		// Parse URL, Width, Height, Id, Class for each image in the document
+		// Parse URL, Width, Height, Id, Class for each image in the document, except
+		// images with a blacklisted URL (e.g. ad.doubleclick.net)
 		parseAllImages();
 		logger.trace( _logPrefix + "Initial potential set length: " + _potentialSet.size() );
 		
-		// Remove any images with a blacklisted URL (e.g. ad.doubleclick.net)
-		removeBlacklistedImages();
-		
-		// Reduce score for image with dimensions identical to 2+ other images (i.e. thumbnails of the same size)		
+		// Remove images with dimensions identical to 2+ other images (i.e. thumbnails of the same size)		
 		removeMatchingDimensions();
 		
-		// Reduce score for images matching a standard advertisement size
-		reduceScoreByDimension();
+		// Score by advertisement size, miss and hit names, format and largest dimensions
+		scoreImages();
 		
-		// Reduce score for images containing a likely miss name (e.g. button, icon, avatar, logo)
-		reduceScoreByMissName();		
-		
-		// Increase score for images containing a likely hit name (e.g. photo, full, main)
-		increaseScoreByHitName();
+		logger.trace( _logPrefix + "Filtered potential set length: " + _potentialSet.size() );		
+	
+		// Verify the highest scoring images exist and are larger than the minimum preview dimensions
+		String imageUrl = selectProbedImage( getTopScoredImages( _probeCount ) );
 		
-		// Increase score for preferred image formats
-		increaseScoreByFormat();		
+		event.end();
+		if( event.shouldCommit() ) {
+			event.url = _pageUrl;
+			event.host = LinterEvents.getHost( _pageUrl );
+			event.outcome = imageUrl.isEmpty() ? "none" : "selected";
+			event.imageUrl = imageUrl;
+			event.candidates = _potentialSet.size();
+			event.probes = _probesStarted;
+			event.commit();
+		}
 		
-		// Increase score for image with the largest image dimensions
-		increaseLargestImageScore();
+		long timeDelta = System.nanoTime() - timeStart;
+		LinterMetrics.getInstance().recordImageSelection( timeDelta, _probesStarted );
+		PageProfile profile = PageProfile.current();
+		if( profile != null ) {
+			profile.setImageSelectionTime( timeDelta );
+		}
+		logger.trace( _logPrefix + "AlgorithmicimageSelector: Preview image select time: " + TimeUnit.NANOSECONDS.toMillis( timeDelta ) + "ms" );
 		
-		logger.trace( _logPrefix + "Filtered potential set length: " + _potentialSet.size() );		
+		return imageUrl;
+	}
+	
+	/**
+	 * Set the URL of the page, reported in flight recorder events; the provider URL by default
+	 * 
+	 * @param pageUrl	Page URL
+	 */
+	public void setPageUrl( String pageUrl ) {
+		_pageUrl = pageUrl;
+	}
 	
-		// Verify the highest scoring image exists and is larger than the minimum preview dimensions
+	/**
+	 * Set the fetcher image probes are made with, so they use the same engine as the page
+	 * 
+	 * @param fetcher	Fetcher of the page, null for the default
+	 */
+	public void setFetcher( PageFetcher fetcher ) {
+		_fetcher = fetcher;
+	}
+	
+	/**
+	 * Set the number of top scored candidates considered for all selectors
+	 * 
+	 * @param probeCount	Candidate count, at least 1
+	 */
+	public static void setProbeCount( int probeCount ) {
+		_probeCount = Math.max( 1, probeCount );
+	}
+	
+	/**
+	 * Replace the scoring rules of all selectors started from now on
+	 * 
+	 * @param rules	Compiled scoring rules
+	 */
+	public static void setScoringRules( ImageScoringRules rules ) {
+		SCORING_RULES.set( rules );
+	}
+	
+	/**
+	 * Get the scoring rules used by selectors started now
+	 * 
+	 * @return Compiled scoring rules
+	 */
+	public static ImageScoringRules getScoringRules() {
+		return SCORING_RULES.get();
+	}
+	
+	/**
+	 * Set the overall deadline for probing candidates for all selectors
+	 * 
+	 * @param probeDeadlineMillis	Deadline in ms
+	 */
+	public static void setProbeDeadline( long probeDeadlineMillis ) {
+		_probeDeadlineMillis = probeDeadlineMillis;
+	}
+	
+	/**
+	 * Set whether candidates without dimensions are downloaded by all selectors; without
+	 * probing, only dimensions from the markup or the probe cache are known
+	 * 
+	 * @param probeImages	False to never download images
+	 */
+	public static void setProbeImages( boolean probeImages ) {
+		_probeImages = probeImages;
+	}
+	
+	/**
+	 * Pick the highest ranked valid candidate, downloading candidates without dimensions
+	 * and without a cached probe concurrently under a single deadline. Candidates still probing at the deadline are
+	 * skipped, and probes still running once the winner is settled are cancelled.
+	 * 
+	 * @param candidates	Candidates, highest score first
+	 * @return				URL of the selected image, empty if none is valid
+	 */
+	private String selectProbedImage( List<AlgorithmicImageItem> candidates ) {
+		
+		// Candidates ranked below one valid without a download are never needed
+		int needed = candidates.size();
+		for( int i = 0; i < candidates.size(); i++ ) {
+			AlgorithmicImageItem image = candidates.get( i );
+			if( needsDownload( image ) ) {
+				ImageProbeCache.Probe probe = ImageProbeCache.getInstance().get( image.getUrl() );
+				if( probe != null ) {
+					image.applyProbe( probe );
+				}
+			}
+			if( !needsDownload( image ) && isValidPreviewImage( image ) ) {
+				needed = i + 1;
+				break;
+			}
+		}
+		
+		// Probes report to the profile of the page from their own threads
+		final PageProfile profile = PageProfile.current();
+		final PageFetcher fetcher = ( _fetcher != null ) ? _fetcher : LintedPage.getDefaultFetcher();
+		List<Future<?>> probes = new ArrayList<Future<?>>( needed );
+		for( int i = 0; i < needed; i++ ) {
+			final AlgorithmicImageItem image = candidates.get( i );
+			if( needsDownload( image ) && _probeImages ) {
+				Future<?> probe;
+				try {
+					probe = PROBE_EXECUTOR.submit( new Runnable() {
+						public void run() {
+							long probeStart = System.nanoTime();
+							image.downloadImage( fetcher );
+							long probeTime = System.nanoTime() - probeStart;
+							LinterMetrics.getInstance().recordImageProbe( probeTime );
+							if( profile != null ) {
+								profile.addImageProbe( image.getUrl(), image.getWidth(), image.getHeight(), probeTime );
+							}
+						
+							// Cancelled probes were cut short, their result says nothing about the image
+							if( !Thread.currentThread().isInterrupted() ) {
+								ImageProbeCache.getInstance().put( image.getUrl(), image.getWidth(), image.getHeight(), image.getFileSize() );
+							}
+						}
+					} );
+					_probesStarted++;
+				} catch( RejectedExecutionException e ) {
+					// Probe backlog full, the candidate stays without dimensions
+					logger.trace( _logPrefix + "AlgorithmicimageSelector: Probe rejected for url: " + image.getUrl() );
+					probe = null;
+				}
+				probes.add( probe );
+			} else {
+				probes.add( null );
+			}
+		}
+		
 		String imageUrl = "";
-		for( int i = 0; i < 2; i++ ) {
-			
-			// Pick image with the highest score		
-			AlgorithmicImageItem highestScoredImage = getHighestScoredImage();
-			
-			if( highestScoredImage != null ) {
-				
-				// Download the image if we do not have any width information
-				if( highestScoredImage.getWidth() == AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM || highestScoredImage.getHeight() == AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM ) {
-					highestScoredImage.downloadImage();
+		long deadline = System.currentTimeMillis() + _probeDeadlineMillis;
+		try {
+			for( int i = 0; i < needed; i++ ) {
+				AlgorithmicImageItem image = candidates.get( i );
+				Future<?> probe = probes.get( i );
+				if( probe != null ) {
+					try {
+						probe.get( Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+					} catch( TimeoutException e ) {
+						// Past the deadline only finished probes are considered
+						logger.trace( _logPrefix + "AlgorithmicimageSelector: Probe deadline passed for url: " + image.getUrl() );
+						continue;
+					} catch( ExecutionException e ) {
+						continue;
+					}
 				}
-								
-				// Verify that the top image is larger than the minimum preview dimensions
-				float aspectRatio = highestScoredImage.getAspectRatio();
-				if( highestScoredImage.getWidth() > MIN_PREVIEW_IMAGE_DIM && 
-					highestScoredImage.getHeight() > MIN_PREVIEW_IMAGE_DIM &&
-					aspectRatio >= MIN_ASPECT_RATIO &&
-					aspectRatio <= MAX_ASPECT_RATIO &&
-					highestScoredImage.getFileSize() <= MAX_FILE_SIZE ) {
+				
+				if( isValidPreviewImage( image ) ) {
 					
 					// Image is good!
-					imageUrl = highestScoredImage.getUrl();
+					imageUrl = image.getUrl();
 					logger.trace( _logPrefix + "AlgorithmicimageSelector: Selected image with url: " + imageUrl );
 					break;
 				} else {
-					// Image is not good. Retry
-					logger.trace( _logPrefix + "AlgorithmicimageSelector: Image has invalid characteristics. Width: " + highestScoredImage.getWidth() + " Height: " + highestScoredImage.getHeight() + " Size: " + highestScoredImage.getFileSize() + " Url: " + highestScoredImage.getUrl() );
-					_potentialSet.remove( highestScoredImage );
-					
+					logger.trace( _logPrefix + "AlgorithmicimageSelector: Image has invalid characteristics. Width: " + image.getWidth() + " Height: " + image.getHeight() + " Size: " + image.getFileSize() + " Url: " + image.getUrl() );
+				}
+			}
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Interrupts running probes, whose fetch gives up, and frees the queue of waiting ones
+			for( Future<?> probe : probes ) {
+				if( probe != null && probe.cancel( true ) ) {
+					PROBE_EXECUTOR.remove( (Runnable) probe );
 				}
 			}
 		}
 		
-		long timeDelta = System.currentTimeMillis() - timeStart;
-		logger.trace( _logPrefix + "AlgorithmicimageSelector: Preview image select time: " + timeDelta + "ms" );
-		
 		return imageUrl;
 	}
 	
 	/**
-	 * Find all images from the Jericho source and add to the potential image set
+	 * Determine if an image must be downloaded to learn its dimensions
+	 * 
+	 * @param image	Candidate image
+	 * @return		True if width or height is unspecified and the image was not probed yet
+	 */
+	private boolean needsDownload( AlgorithmicImageItem image ) {
+		return !image.isProbed() && ( image.getWidth() == AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM || image.getHeight() == AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM );
+	}
+	
+	/**
+	 * Verify that an image is larger than the minimum preview dimensions, within the
+	 * allowed aspect ratios and file size
+	 * 
+	 * @param image	Candidate image
+	 * @return		True if usable as preview image
+	 */
+	private boolean isValidPreviewImage( AlgorithmicImageItem image ) {
+		float aspectRatio = image.getAspectRatio();
+		return image.getWidth() > MIN_PREVIEW_IMAGE_DIM && 
+			image.getHeight() > MIN_PREVIEW_IMAGE_DIM &&
+			aspectRatio >= MIN_ASPECT_RATIO &&
+			aspectRatio <= MAX_ASPECT_RATIO &&
+			image.getFileSize() <= MAX_FILE_SIZE;
+	}
+	
+	/**
+	 * Create the shared probe executor
+	 */
+	private static ThreadPoolExecutor createProbeExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor( PROBE_THREADS, PROBE_THREADS, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>( PROBE_QUEUE_SIZE ), new ThreadFactory() {
+			public Thread newThread( Runnable r ) {
+				Thread t = new Thread( r, "linter-image-probe" );
+				t.setDaemon( true );
+				return t;
+			}
+		} );
+		executor.allowCoreThreadTimeOut( true );
+		return executor;
+	}
+	
+	/**
+	 * Find all images from the meta data index and add to the potential image set,
+	 * except images with a blacklisted URL, mostly obvious advertisements
 	 */
 	private void parseAllImages() {
-		_potentialSet = new ArrayList<AlgorithmicImageItem>();
+		List<Element> imageElements = _metaIndex.getImageElements();
+		_potentialSet = new ArrayList<AlgorithmicImageItem>( imageElements.size() );
 		
-		List<Element> imageElements = _source.getAllElements( HTMLElementName.IMG );
 		for( Element element : imageElements ) {
 			AlgorithmicImageItem image = new AlgorithmicImageItem();
+			image.setUrl( element.getAttributeValue( "src" ),  _providerUrl  );
+			if( _rules.isBlacklisted( image.getUrl() ) ) {
+				continue;
+			}
 			image.setId( element.getAttributeValue( "id" ) );
 			image.setClass( element.getAttributeValue( "class" ) );
-			image.setUrl( element.getAttributeValue( "src" ),  _providerUrl  );
 			image.setWidth( element.getAttributeValue( "width" ) );
 			image.setHeight( element.getAttributeValue( "height" ) );
 			_potentialSet.add( image );			
@@ -170,266 +430,168 @@ public class AlgorithmicImageSelector {
 	}	
 	
 	/**
-	 * Remove any URLs matching a blacklist from the potential image set, mostly
-	 * obvious advertisements urls
+	 * Remove any images from the potential set if there are 3+ other images
+	 * with the same dimensions, these are often preview images for other pages.
+	 * Images with unknown dimensions are kept.
 	 */
-	private void removeBlacklistedImages() {		
-		
-		// A few choices from massive list on http://someonewhocares.org/hosts/
-		final String[] URL_BLACKLIST = {						
-			"adfarm.mediaplex.com",
-			"adserver.com",
-			"ak.imgfarm.com",
-			"apmebf.com",
-			"click.linksynergy.com",
-			"doubleclick.net",
-			"fastclick.net",
-			"global.msads.net",
-			"intellitxt.com",
-			"lads.myspace.com",
-			"refer.ccbill.com",
-			"rmads.msn.com",
-			"tkqlhce.com",
-			"transfer.go.com",									
-			
-			"http://ad.",
-			"http://ads.",
-			"http://banner.",
-			"http://banners."									
-		};
+	private void removeMatchingDimensions() {
 		
-		ArrayList<AlgorithmicImageItem> removeList = new ArrayList<AlgorithmicImageItem>();
+		// Threshold of matching image dimensions where it's safe to start removing
+		final int MATCHING_IMAGE_COUNT_THRESHOLD = _rules.getDuplicateThreshold();
 		
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			for( int i = 0; i < URL_BLACKLIST.length; i++ ) {
-				if( image.getUrl().indexOf( URL_BLACKLIST[i] ) != -1 ) {
-					removeList.add( image );
-				}
+		// Count each known image dimension
+		int size = _potentialSet.size();
+		DimensionCounts dimensionCount = new DimensionCounts( size );
+		for( int i = 0; i < size; i++ ) {
+			AlgorithmicImageItem image = _potentialSet.get( i );
+			if( image.getWidth() >= 0 && image.getHeight() >= 0 ) {
+				dimensionCount.increment( ImageScoringRules.getDimensionKey( image.getWidth(), image.getHeight() ) );
 			}
 		}
 		
-		for( AlgorithmicImageItem image : removeList ) {
-			_potentialSet.remove( image );
+		// Compact the images to keep in place
+		int kept = 0;
+		for( int i = 0; i < size; i++ ) {
+			AlgorithmicImageItem image = _potentialSet.get( i );
+			if( image.getWidth() < 0 || image.getHeight() < 0 ||
+				dimensionCount.get( ImageScoringRules.getDimensionKey( image.getWidth(), image.getHeight() ) ) < MATCHING_IMAGE_COUNT_THRESHOLD ) {
+				_potentialSet.set( kept++, image );
+			}
 		}
+		_potentialSet.subList( kept, size ).clear();
 	}
 	
 	/**
-	 * Remove any images from the potential set if there are 3+ other images
-	 * with the same dimensions, these are often preview images for other pages.
+	 * Score all potential images in one pass by advertisement size, miss and hit names
+	 * in the Id or Class (e.g. button, icon, avatar, logo; photo, full, main) and format.
+	 * Finally the first of the largest images is scored.
 	 */
-	private void removeMatchingDimensions() {
-		
-		// Threshold of matching image dimensions where it's safe to start removing
-		final int MATCHING_IMAGE_COUNT_THRESHOLD = 3;
+	private void scoreImages() {
+		AlgorithmicImageItem maxImage = null;
 		
-		// Search through each potential image to get a count for each
-		// image dimension. Do not include images with unknown dimensions.
-		HashMap<String, Integer> dimensionCount = new HashMap<String, Integer>();
 		for( AlgorithmicImageItem image : _potentialSet ) {
+			_rules.score( image );
 			
-			int width = image.getWidth();
-			int height = image.getHeight();
-			
-			if( width >= 0 && height >= 0 ) {
-
-				// Add or increment matching count in hash
-				String key = getDimensionKey( width, height );
-				if( dimensionCount.containsKey( key ) ) {
-					Integer value = dimensionCount.get( key );
-					dimensionCount.put( key, ++value );	// Increment
-				} else {
-					dimensionCount.put( key, 1 ); // Add new key
-				}
-				
+			if( maxImage == null || image.getImageArea() > maxImage.getImageArea() ) {
+				maxImage = image;
 			}
 		}
 		
-		// Remove any images with dimensions matching 2+ others
-		ArrayList<AlgorithmicImageItem> removeList = new ArrayList<AlgorithmicImageItem>();
-		Set<String> keySet = dimensionCount.keySet();
-		for( String key : keySet ) {
-			if( dimensionCount.get( key ) >= MATCHING_IMAGE_COUNT_THRESHOLD ) {
-				for( AlgorithmicImageItem image : _potentialSet ) {
-					if( getDimensionKey( image.getWidth(), image.getHeight() ).compareTo( key ) == 0 ) {
-						removeList.add( image );
-					}
-				}
-			}				
-		}
-		
-		for( AlgorithmicImageItem image : removeList ) {
-			_potentialSet.remove( image );
+		if( maxImage != null ) {
+			_rules.scoreLargest( maxImage );
 		}
 	}
-	
-	
+
 	/**
-	 * Reduce the score of all potential images matching certain dimensions.
-	 * Most are standard advertising image sizes. Also reduces score if smaller
-	 * than the minimum preview dimensions. Images with undefined sizes are ignored
+	 * Get the images with the highest scores, earlier images first among equal scores
+	 * @param count	Maximum number of images
+	 * @return		Images with highest score first
 	 */
-	private void reduceScoreByDimension() {
-		// Compare image to standard advertisement sizes
-		// http://en.wikipedia.org/wiki/Web_banner
-		final int STANDARD_AD_SIZES[][] = { 
-				// { width, height }
-				
-				// Rectangles, Pop-Ups
-				{ 300, 250 },	// Medium Rectangle
-				{ 250, 250 },	// Square Pop-Up
-				{ 240, 400 },	// Vertical Rectangle
-				{ 336, 280 },	// Large Rectangle
-				{ 180, 150 },	// Rectangle
-				{ 300, 100 },	// 3:1 Rectangle
-				{ 720, 300 },	// Pop-Under
-				
-				// Banners and Buttons
-				{ 468, 60  },	// Full Banner
-				{ 234, 60  },	// Half Banner
-				{ 88,  31  },	// Micro Bar
-				{ 120, 90  },	// Button 1
-				{ 120, 60  },	// Button 2
-				{ 120, 240 },	// Vertical Banner
-				{ 125, 125 },	// Square Button
-				{ 728, 90  },	// Leaderboard
-				
-				// Skyscrapers
-				{ 160, 600 },	// Wide Skyscraper
-				{ 120, 600 },	// Skyscraper
-				{ 300, 600 }	// Half-Page Ad
-		};
-
-		// Loop through each image and change score
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			for( int i = 0; i < STANDARD_AD_SIZES.length; i++ ) {
-				int width = image.getWidth();
-				int height = image.getHeight();
-				
-				if( width == STANDARD_AD_SIZES[i][0] &&
-					height == STANDARD_AD_SIZES[i][1] ) {
-					image.addToScore( -0.1f );
-				} else if( width > 0 && height > 0 && width < MIN_PREVIEW_IMAGE_DIM && height < MIN_PREVIEW_IMAGE_DIM ) {
-					image.addToScore( -0.1f );
-				}
+	private List<AlgorithmicImageItem> getTopScoredImages( int count ) {
+		int size = _potentialSet.size();
+		count = Math.min( count, size );
+		
+		// Min-heap of potential set indices, the worst of the best images so far on top
+		int[] heap = new int[count];
+		int heapSize = 0;
+		for( int i = 0; i < size; i++ ) {
+			if( heapSize < count ) {
+				heap[heapSize] = i;
+				siftUp( heap, heapSize++ );
+			} else if( isRankedBefore( i, heap[0] ) ) {
+				heap[0] = i;
+				siftDown( heap, heapSize );
 			}
 		}
+		
+		// Pop the worst first, filling from the back
+		AlgorithmicImageItem[] ranked = new AlgorithmicImageItem[heapSize];
+		while( heapSize > 0 ) {
+			ranked[--heapSize] = _potentialSet.get( heap[0] );
+			heap[0] = heap[heapSize];
+			siftDown( heap, heapSize );
+		}
+		return Arrays.asList( ranked );
 	}
 	
 	/**
-	 * Reduce score for any images with an ID or Class name matching
-	 * terms commonly associated with non-preview images (e.g. buttons, banners, etc)
+	 * Ranking of potential images, higher score first and document order among ties
 	 */
-	private void reduceScoreByMissName() {
-		
-		final String[] MISS_NAMES = {
-				"button", 
-				"icon",
-				"yt", 
-				"uix", 
-				"avatar", 
-				"arrow", 
-				"addto",
-				"comment",
-				"img",
-				"author",
-				"post",
-				"uloaded",
-				"imagecache",
-				"watch",
-				"border",
-				"thumbnail",
-				"sidebarimage",
-				"attachment",
-				"trail",
-				"logo"				
-		};
-		
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			for( int i = 0; i < MISS_NAMES.length; i++ ) {
-				if( image.doAttributesContainString( MISS_NAMES[i] ) ) {
-					image.addToScore( -0.1f );
-				}
+	private boolean isRankedBefore( int a, int b ) {
+		int cmp = Float.compare( _potentialSet.get( a ).getScore(), _potentialSet.get( b ).getScore() );
+		return cmp > 0 || ( cmp == 0 && a < b );
+	}
+	
+	private void siftUp( int[] heap, int i ) {
+		while( i > 0 ) {
+			int parent = ( i - 1 ) >>> 1;
+			if( !isRankedBefore( heap[parent], heap[i] ) ) {
+				break;
 			}
+			swap( heap, parent, i );
+			i = parent;
 		}
 	}
-
 	
-	/**
-	 * Increase score for images with Id or Class names matching
-	 * terms commonly associated with preview images
-	 */
-	private void increaseScoreByHitName() {
-		
-		String[] MISS_NAMES = {
-				"photo",
-				"full",
-				"main"				
-		};
-		
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			for( int i = 0; i < MISS_NAMES.length; i++ ) {
-				if( image.doAttributesContainString( MISS_NAMES[i] ) ) {
-					image.addToScore( 0.1f );
-				}
+	private void siftDown( int[] heap, int size ) {
+		int i = 0;
+		while( true ) {
+			int worst = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if( left < size && isRankedBefore( heap[worst], heap[left] ) ) {
+				worst = left;
+			}
+			if( right < size && isRankedBefore( heap[worst], heap[right] ) ) {
+				worst = right;
+			}
+			if( worst == i ) {
+				return;
 			}
+			swap( heap, worst, i );
+			i = worst;
 		}
 	}
-
+	
+	private static void swap( int[] heap, int i, int j ) {
+		int tmp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = tmp;
+	}
+	
 	/**
-	 * Increase score for images matching preferred image extensions
+	 * Open addressing counts of dimension keys
 	 */
-	private void increaseScoreByFormat() {
-		String[] PREFERRED_EXTENSIONS = {
-				".jpg"
-		};
+	private static final class DimensionCounts {
+		private final long[] _keys;
+		private final int[] _counts;
+		private final int _mask;
 		
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			String extension = image.getExtension();
-			for( int i = 0; i < PREFERRED_EXTENSIONS.length; i++ ) {
-				if( extension.compareTo( PREFERRED_EXTENSIONS[i] ) == 0 ) {
-					image.addToScore( 0.1f );
-					break;
-				}
-			}
+		DimensionCounts( int expected ) {
+			int capacity = Integer.highestOneBit( Math.max( expected, 2 ) * 2 - 1 ) << 1;
+			_keys = new long[capacity];
+			_counts = new int[capacity];
+			_mask = capacity - 1;
 		}
-	}
-			
-	/**
-	 * Increase the score for the largest image
-	 */
-	private void increaseLargestImageScore() {
-		AlgorithmicImageItem maxImage = null;
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			if( maxImage == null || image.getImageArea() > maxImage.getImageArea() ) {
-				maxImage = image;
-			}
+		
+		void increment( long key ) {
+			_counts[slot( key )]++;
 		}
 		
-		if( maxImage != null ) {
-			maxImage.addToScore( 0.1f );
+		int get( long key ) {
+			return _counts[slot( key )];
 		}
-	}
-
-	/**
-	 * Get the image with the highest score
-	 * @return Image with highest score
-	 */
-	private AlgorithmicImageItem getHighestScoredImage() {
-		AlgorithmicImageItem maxImage = null;
-		for( AlgorithmicImageItem image : _potentialSet ) {
-			if( maxImage == null || image.getScore() > maxImage.getScore() ) {
-				maxImage = image;
+		
+		/**
+		 * Slot holding the key, or the free slot to store it in
+		 */
+		private int slot( long key ) {
+			int i = (int) ( ( key * 0x9E3779B97F4A7C15L ) >>> 40 ) & _mask;
+			while( _counts[i] != 0 && _keys[i] != key ) {
+				i = ( i + 1 ) & _mask;
 			}
+			_keys[i] = key;
+			return i;
 		}
-		return maxImage;
-	}
-	
-	/**
-	 * Key used for matching images with like dimensions
-	 * 
-	 * @return String corresponding to image dimensions
-	 */
-	private String getDimensionKey( int width, int height ) {
-		return width + "_" + height;
 	}
 }
@@ -0,0 +1,283 @@
+package org.linter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Non-blocking PageFetcher on top of java.net.http.HttpClient
+ *
+ * A single client is shared by every page, so requests to the same origin are multiplexed
+ * over one HTTP/2 connection where the server supports it (ALPN for https, h2c upgrade for
+ * http), and fall back to pooled HTTP/1.1 connections otherwise. The client has no body
+ * read timeout of its own, so bodies are guarded by a watchdog that closes a stream once
+ * it made no progress for the request read timeout.
+ */
+public class AsyncPageFetcher implements PageFetcher {
+
+	/**
+	 * Log4J Logger
+	 */
+	static private Logger logger = Logger.getLogger(AsyncPageFetcher.class);
+
+	/**
+	 * Closes stalled body streams
+	 */
+	private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "linter-fetch-watchdog");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	static {
+		// Checks of closed streams leave the queue at once, not when they would have run
+		WATCHDOG.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Shared HTTP client
+	 */
+	private final HttpClient _client;
+
+	/**
+	 * Connection pool, bounds connections per origin
+	 */
+	private final ConnectionPool _pool;
+
+
+
+	/**
+	 * Create a fetcher with a new HTTP/2 client
+	 */
+	public AsyncPageFetcher() {
+		this(createClient());
+	}
+
+	/**
+	 * Create a fetcher on an existing client, which must not follow redirects
+	 * @param client	HTTP client
+	 */
+	public AsyncPageFetcher(HttpClient client) {
+		_client = client;
+		_pool = ConnectionPool.getInstance();
+	}
+
+	/**
+	 * Create the default client: HTTP/2 preferred, no redirects, no proxy, all certificates accepted
+	 * @return HTTP client
+	 */
+	public static HttpClient createClient() {
+		return HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(Duration.ofMillis(LintedPage.HTTP_CONNECT_TIMEOUT))
+				.sslContext(LintedPage.getSslContext())
+				.build();
+	}
+
+	/**
+	 * Execute a request, blocking until the response headers are received
+	 * @param request	Request to execute
+	 * @return			Response, must be closed by the caller
+	 * @throws IOException	On connection failure or timeout
+	 * @throws InterruptedIOException	If interrupted while waiting, the request is cancelled
+	 */
+	public FetchResponse fetch(FetchRequest request) throws IOException {
+		CompletableFuture<FetchResponse> future = fetchAsync(request);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for " + request.getUrl());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CompletionException && cause.getCause() != null)
+				cause = cause.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Execute a request without blocking the caller
+	 *
+	 * Cancelling the future gives up a connection still being waited for, aborts the
+	 * exchange where the client supports it and closes a response that arrives anyway.
+	 *
+	 * @param request	Request to execute
+	 * @return			Future completing with the response once headers are received
+	 */
+	public CompletableFuture<FetchResponse> fetchAsync(final FetchRequest request) {
+		HttpRequest httpRequest;
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(new URI(request.getUrl()))
+					.method(request.getMethod(), HttpRequest.BodyPublishers.noBody())
+					.timeout(Duration.ofMillis(request.getReadTimeout()));
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				builder.header(header.getKey(), header.getValue());
+			}
+			httpRequest = builder.build();
+		} catch (Exception e) {
+			// Invalid URI or restricted header
+			return CompletableFuture.failedFuture(new IOException("Invalid request [" + request.getUrl() + "]: " + e, e));
+		}
+
+		final HttpRequest sendRequest = httpRequest;
+		final CompletableFuture<FetchResponse> result = new CompletableFuture<FetchResponse>();
+		final CompletableFuture<ConnectionPool.Lease> leased = _pool.leaseAsync(request.getUrl());
+		result.whenComplete((response, error) -> {
+			if (result.isCancelled())
+				leased.cancel(false);
+		});
+
+		leased.thenAccept(lease -> {
+			// Cancelled as the lease was granted
+			if (result.isDone()) {
+				lease.cancel();
+				return;
+			}
+
+			final CompletableFuture<HttpResponse<InputStream>> sent = _client.sendAsync(sendRequest, HttpResponse.BodyHandlers.ofInputStream());
+			result.whenComplete((response, error) -> {
+				if (result.isCancelled())
+					sent.cancel(true);
+			});
+			sent.whenComplete((response, error) -> {
+				if (error != null) {
+					lease.release(false);
+					result.completeExceptionally(error);
+					return;
+				}
+
+				InputStream body = new WatchedInputStream(response.body(), request.getReadTimeout());
+				logger.trace(response.version() + " " + response.statusCode() + " " + request.getMethod() + " " + request.getUrl());
+				if (response.version() == HttpClient.Version.HTTP_2)
+					_pool.setMultiplexed(request.getUrl());
+				FetchResponse fetchResponse = new FetchResponse(request.getUrl(), response.statusCode(), response.headers().map(), body, reusable -> lease.release(reusable));
+				if (!result.complete(fetchResponse))
+					fetchResponse.close();
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * Body stream closed by the watchdog when a read makes no progress within the read timeout
+	 *
+	 * The watchdog is only armed while a read is in progress, so a stream nobody reads, even
+	 * one never closed, costs no wakeups and is not kept reachable by the scheduler.
+	 */
+	private static class WatchedInputStream extends FilterInputStream {
+		private final long _timeoutNanos;
+		private volatile long _lastProgress;
+		private volatile boolean _reading = false;
+		private volatile boolean _closed = false;
+		private volatile boolean _timedOut = false;
+
+		/**
+		 * Pending check, null while disarmed; guarded by this
+		 */
+		private ScheduledFuture<?> _check = null;
+
+		WatchedInputStream(InputStream in, int readTimeoutMillis) {
+			super(in);
+			_timeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+			_lastProgress = System.nanoTime();
+		}
+
+		@Override public int read() throws IOException {
+			begin();
+			try {
+				return super.read();
+			} finally {
+				end();
+			}
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			begin();
+			try {
+				return super.read(b, off, len);
+			} finally {
+				end();
+			}
+		}
+
+		@Override public void close() throws IOException {
+			synchronized (this) {
+				_closed = true;
+				if (_check != null) {
+					_check.cancel(false);
+					_check = null;
+				}
+			}
+			super.close();
+		}
+
+		private void begin() throws IOException {
+			if (_timedOut)
+				throw new InterruptedIOException("Read timed out");
+			_lastProgress = System.nanoTime();
+			_reading = true;
+			synchronized (this) {
+				if (_check == null && !_closed)
+					_check = schedule(_timeoutNanos);
+			}
+		}
+
+		private void end() throws IOException {
+			_reading = false;
+			_lastProgress = System.nanoTime();
+			if (_timedOut)
+				throw new InterruptedIOException("Read timed out");
+		}
+
+		private ScheduledFuture<?> schedule(long delayNanos) {
+			return WATCHDOG.schedule(new Runnable() {
+				public void run() {
+					check();
+				}
+			}, delayNanos, TimeUnit.NANOSECONDS);
+		}
+
+		private void check() {
+			synchronized (this) {
+				_check = null;
+				if (_closed || !_reading)
+					return; // disarmed until the next read begins
+
+				long idle = System.nanoTime() - _lastProgress;
+				if (idle < _timeoutNanos) {
+					_check = schedule(_timeoutNanos - idle);
+					return;
+				}
+				_timedOut = true;
+			}
+			try {
+				close();
+			} catch (IOException e) {
+				// already failing the read
+			}
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package org.linter;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Process many URLs concurrently
+ *
+ * LintedPages run on a bounded executor, optionally backed by virtual threads. Work is
+ * dispatched per host of the original URL so that a burst of links to one site queues
+ * behind its own host limit instead of occupying every worker, and each HTTP request
+ * made by a page is additionally capped per destination host through a {@link HostThrottle}.
+ */
+public class BatchLinter {
+
+	/**
+	 * Log4J Logger
+	 */
+	static private Logger logger = Logger.getLogger(BatchLinter.class);
+
+	/**
+	 * Default number of worker threads
+	 */
+	public static final int DEFAULT_THREAD_COUNT = 16;
+
+	/**
+	 * Default maximum in-flight requests per host
+	 */
+	public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+	/**
+	 * Executor running the LintedPages
+	 */
+	private final ExecutorService _executor;
+
+	/**
+	 * Per destination host request limit, shared by all pages of this batch linter
+	 */
+	private final HostThrottle _hostThrottle;
+
+	/**
+	 * Pages running or queued per original URL host
+	 */
+	private final HashMap<String, HostQueue> _hostQueues;
+
+	/**
+	 * Whether new URLs are rejected, guarded by _hostQueues
+	 */
+	private boolean _shutdown = false;
+
+
+
+	/**
+	 * Create a batch linter with default thread count and host limits on platform threads
+	 */
+	public BatchLinter() {
+		this(DEFAULT_THREAD_COUNT, DEFAULT_MAX_REQUESTS_PER_HOST, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param threadCount			Maximum number of pages processed at once
+	 * @param maxRequestsPerHost	Maximum in-flight requests per host; the shared
+	 * 								{@link ConnectionPool} limit is raised to match if lower
+	 * @param useVirtualThreads		Run pages on virtual threads if the JVM supports them,
+	 * 								falls back to platform threads otherwise
+	 */
+	public BatchLinter(int threadCount, int maxRequestsPerHost, boolean useVirtualThreads) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException("threadCount must be at least 1: " + threadCount);
+
+		ThreadFactory factory = null;
+		if (useVirtualThreads) {
+			factory = createVirtualThreadFactory();
+		}
+		if (factory == null) {
+			factory = new WorkerThreadFactory();
+		}
+
+		_executor = Executors.newFixedThreadPool(threadCount, factory);
+		_hostThrottle = new HostThrottle(maxRequestsPerHost);
+		// Otherwise the pool would cap HTTP/1.1 origins below the throttle
+		ConnectionPool pool = ConnectionPool.getInstance();
+		if (pool.getMaxPerHost() < maxRequestsPerHost)
+			pool.setMaxPerHost(maxRequestsPerHost);
+		_hostQueues = new HashMap<String, HostQueue>();
+	}
+
+	/**
+	 * Submit a single URL for processing
+	 * @param url	URL to process
+	 * @return		Future completing with the processed LintedPage
+	 * @throws RejectedExecutionException	After {@link #shutdown()}
+	 */
+	public Future<LintedPage> submit(String url) {
+		return submit(url, null);
+	}
+
+	/**
+	 * Submit URLs for processing
+	 * @param urls	URLs to process
+	 * @return		Futures of the processed LintedPages, in the order of urls
+	 * @throws RejectedExecutionException	After {@link #shutdown()}
+	 */
+	public List<Future<LintedPage>> processUrls(Collection<String> urls) {
+		List<Future<LintedPage>> futures = new ArrayList<Future<LintedPage>>(urls.size());
+		for (String url : urls) {
+			futures.add(submit(url, null));
+		}
+		return futures;
+	}
+
+	/**
+	 * Submit URLs for processing, publishing each future to a queue as soon as it completes
+	 * @param urls	URLs to process
+	 * @return		Queue receiving one completed future per URL, in order of completion
+	 * @throws RejectedExecutionException	After {@link #shutdown()}
+	 */
+	public BlockingQueue<Future<LintedPage>> processUrlsAsCompleted(Collection<String> urls) {
+		BlockingQueue<Future<LintedPage>> completionQueue = new LinkedBlockingQueue<Future<LintedPage>>();
+		for (String url : urls) {
+			submit(url, completionQueue);
+		}
+		return completionQueue;
+	}
+
+	/**
+	 * Get the per-host request throttle used by pages of this batch linter
+	 * @return Host throttle
+	 */
+	public HostThrottle getHostThrottle() {
+		return _hostThrottle;
+	}
+
+	/**
+	 * Stop accepting URLs, already submitted URLs are still processed
+	 *
+	 * The executor is shut down once the pages queued behind their host have all been started
+	 * and finished.
+	 */
+	public void shutdown() {
+		boolean drained;
+		synchronized (_hostQueues) {
+			_shutdown = true;
+			drained = _hostQueues.isEmpty();
+		}
+		if (drained) {
+			_executor.shutdown();
+		}
+	}
+
+	/**
+	 * Wait for all submitted URLs to complete after {@link #shutdown()}
+	 * @param timeout	Maximum time to wait
+	 * @param unit		Time unit of timeout
+	 * @return			True if all work completed, false on timeout
+	 * @throws InterruptedException	If interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return _executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Queue a URL behind its host, starting it right away if the host is under its limit
+	 */
+	private Future<LintedPage> submit(final String url, final BlockingQueue<Future<LintedPage>> completionQueue) {
+		final String host = getHost(url);
+
+		PageTask task = new PageTask(host, new Callable<LintedPage>() {
+			public LintedPage call() {
+				LintedPage lp = new LintedPage(url);
+				lp.setHostThrottle(_hostThrottle);
+				lp.process();
+				return lp;
+			}
+		}, completionQueue);
+
+		boolean start;
+		synchronized (_hostQueues) {
+			if (_shutdown)
+				throw new RejectedExecutionException("Batch linter is shut down: " + url);
+
+			HostQueue queue = _hostQueues.get(host);
+			if (queue == null) {
+				queue = new HostQueue();
+				_hostQueues.put(host, queue);
+			}
+			start = queue.running < _hostThrottle.getMaxPerHost();
+			if (start) {
+				queue.running++;
+			} else {
+				queue.pending.add(task);
+			}
+		}
+
+		if (start) {
+			execute(task);
+		}
+		return task;
+	}
+
+	/**
+	 * Run a page on the executor, failing its future if the executor rejects it
+	 */
+	private void execute(PageTask task) {
+		try {
+			_executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			logger.error("Unable to start page of host " + task.host + ": " + e);
+			task.reject(e);
+			startNext(task.host);
+		}
+	}
+
+	/**
+	 * Start the next queued page of a host after one of its pages finished
+	 */
+	private void startNext(String host) {
+		PageTask next;
+		boolean drained = false;
+		synchronized (_hostQueues) {
+			HostQueue queue = _hostQueues.get(host);
+			next = queue.pending.poll();
+			if (next == null) {
+				if (--queue.running == 0) {
+					_hostQueues.remove(host);
+					drained = _shutdown && _hostQueues.isEmpty();
+				}
+			}
+		}
+
+		if (next != null) {
+			execute(next);
+		} else if (drained) {
+			_executor.shutdown();
+		}
+	}
+
+	/**
+	 * Get the lowercase host of a URL, or the URL itself if it cannot be parsed
+	 */
+	private static String getHost(String url) {
+		try {
+			String host = new URL(url).getHost();
+			if (host != null && !host.isEmpty())
+				return host.toLowerCase();
+		} catch (Exception e) {
+			// fall through, invalid URLs fail fast in LintedPage
+		}
+		return url;
+	}
+
+	/**
+	 * Create a virtual thread factory through reflection, so this class still runs on JVMs
+	 * without virtual threads
+	 * @return Virtual thread factory, null if unsupported
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "linter-virtual-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			logger.warn("Virtual threads are not supported by this JVM, using platform threads: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Pages of a single host
+	 */
+	private static class HostQueue {
+		// Pages of this host currently on the executor
+		int running = 0;
+
+		// Pages of this host waiting for a free host slot
+		LinkedList<PageTask> pending = new LinkedList<PageTask>();
+	}
+
+	/**
+	 * Page processing future, starting the next page of its host when done
+	 */
+	private class PageTask extends FutureTask<LintedPage> {
+		final String host;
+		private final BlockingQueue<Future<LintedPage>> _completionQueue;
+
+		PageTask(String host, Callable<LintedPage> callable, BlockingQueue<Future<LintedPage>> completionQueue) {
+			super(callable);
+			this.host = host;
+			_completionQueue = completionQueue;
+		}
+
+		@Override public void run() {
+			try {
+				super.run();
+			} finally {
+				startNext(host);
+			}
+		}
+
+		@Override protected void done() {
+			if (_completionQueue != null)
+				_completionQueue.add(this);
+		}
+
+		/**
+		 * Fail the page without running it
+		 */
+		void reject(Throwable t) {
+			setException(t);
+		}
+	}
+
+	/**
+	 * Named daemon worker threads
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+		private final AtomicInteger _threadNumber = new AtomicInteger(1);
+		private final String _prefix = "linter-" + POOL_NUMBER.getAndIncrement() + "-worker-";
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, _prefix + _threadNumber.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.linter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * PageFetcher on top of blocking HttpURLConnection, one thread per socket
+ *
+ * This is the original Linter HTTP path, kept as a fallback for environments where
+ * the asynchronous client misbehaves.
+ */
+public class BlockingPageFetcher implements PageFetcher {
+
+	/**
+	 * Connection pool, bounds connections per origin
+	 */
+	private final ConnectionPool _pool;
+
+
+
+	/**
+	 * Constructor
+	 */
+	public BlockingPageFetcher() {
+		// Accept all certificates, as the Linter always did
+		LintedPage.getSslContext();
+		_pool = ConnectionPool.getInstance();
+	}
+
+	/**
+	 * Execute a request on the calling thread
+	 * @param request	Request to execute
+	 * @return			Response, must be closed by the caller
+	 * @throws IOException	On connection failure or timeout
+	 */
+	public FetchResponse fetch(FetchRequest request) throws IOException {
+		URL url = new URL(request.getUrl());
+		final ConnectionPool.Lease lease = _pool.lease(request.getUrl());
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) url.openConnection(Proxy.NO_PROXY);
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestMethod(request.getMethod());
+			connection.setConnectTimeout(request.getConnectTimeout());
+			connection.setReadTimeout(request.getReadTimeout());
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				connection.setRequestProperty(header.getKey(), header.getValue());
+			}
+			connection.connect();
+
+			int statusCode = connection.getResponseCode();
+			InputStream body = (statusCode >= 400) ? connection.getErrorStream() : connection.getInputStream();
+
+			// A fully read body returns the socket to the keep-alive cache, anything else closes it
+			final HttpURLConnection responseConnection = connection;
+			FetchResponse response = new FetchResponse(request.getUrl(), statusCode, connection.getHeaderFields(), body, new FetchResponse.Connection() {
+				public void release(boolean reusable) {
+					if (!reusable)
+						responseConnection.disconnect();
+					lease.release(reusable);
+				}
+			});
+			connection = null;
+			return response;
+		} finally {
+			if (connection != null) {
+				connection.disconnect();
+				lease.release(false);
+			}
+		}
+	}
+
+	/**
+	 * Execute a request on the calling thread, the returned future is already complete
+	 * @param request	Request to execute
+	 * @return			Completed future
+	 */
+	public CompletableFuture<FetchResponse> fetchAsync(FetchRequest request) {
+		CompletableFuture<FetchResponse> future = new CompletableFuture<FetchResponse>();
+		try {
+			future.complete(fetch(request));
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
@@ -0,0 +1,118 @@
+package org.linter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that ends after a byte budget, whatever the underlying stream holds
+ *
+ * Wrapped around the decoded page body, so the budget applies to decompressed bytes and
+ * to chunked responses without a Content-Length. Reading past the budget reports end of
+ * stream and marks the stream truncated if the underlying stream had more data.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+	/**
+	 * Maximum number of bytes returned
+	 */
+	private final long _limit;
+
+	/**
+	 * Bytes returned so far
+	 */
+	private long _count = 0;
+
+	/**
+	 * Set once data beyond the budget was detected
+	 */
+	private boolean _truncated = false;
+
+
+
+	/**
+	 * Constructor
+	 * @param in		Underlying stream
+	 * @param limit		Maximum number of bytes to return
+	 */
+	public BoundedInputStream(InputStream in, long limit) {
+		super(in);
+		_limit = limit;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (_count >= _limit) {
+			checkTruncated();
+			return -1;
+		}
+		int b = in.read();
+		if (b >= 0)
+			_count++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (_count >= _limit) {
+			checkTruncated();
+			return -1;
+		}
+		int read = in.read(b, off, (int) Math.min(len, _limit - _count));
+		if (read > 0)
+			_count += read;
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(Math.min(n, _limit - _count));
+		if (skipped > 0)
+			_count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(in.available(), _limit - _count);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Whether the underlying stream held more than the budget
+	 * @return True if content was cut off
+	 */
+	public boolean isTruncated() {
+		return _truncated;
+	}
+
+	/**
+	 * Get the number of bytes returned so far
+	 * @return Byte count
+	 */
+	public long getCount() {
+		return _count;
+	}
+
+	/**
+	 * Get the byte budget
+	 * @return Maximum number of bytes returned
+	 */
+	public long getLimit() {
+		return _limit;
+	}
+
+	/**
+	 * At the budget, probe one byte to tell a cut-off from an exact fit
+	 */
+	private void checkTruncated() throws IOException {
+		if (!_truncated && in.read() >= 0)
+			_truncated = true;
+	}
+}
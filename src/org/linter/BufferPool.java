@@ -0,0 +1,117 @@
+package org.linter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide pool of byte buffers used to read page bodies
+ *
+ * Buffers come in power of two sizes from MIN_BUFFER_SIZE up to MAX_BUFFER_SIZE, with
+ * a bounded number of idle buffers kept per size. Requests larger than MAX_BUFFER_SIZE
+ * are allocated and never pooled.
+ */
+public class BufferPool {
+
+	/**
+	 * Smallest buffer handed out, 16KB
+	 */
+	public static final int MIN_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * Largest pooled buffer, 2MB
+	 */
+	public static final int MAX_BUFFER_SIZE = 2 * 1024 * 1024;
+
+	/**
+	 * Default number of idle buffers kept per size
+	 */
+	public static final int DEFAULT_MAX_IDLE_PER_SIZE = 16;
+
+	/**
+	 * Singleton instance
+	 */
+	private static final BufferPool INSTANCE = new BufferPool(DEFAULT_MAX_IDLE_PER_SIZE);
+
+	/**
+	 * Idle buffers, one queue per power of two size
+	 */
+	private final ConcurrentLinkedQueue<byte[]>[] _idle;
+
+	/**
+	 * Idle buffer count per size, kept beside the queues since their size() is linear
+	 */
+	private final AtomicInteger[] _idleCounts;
+
+	/**
+	 * Maximum number of idle buffers kept per size
+	 */
+	private final int _maxIdlePerSize;
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Buffer pool
+	 */
+	public static BufferPool getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private BufferPool(int maxIdlePerSize) {
+		int sizes = bucketOf(MAX_BUFFER_SIZE) + 1;
+		_idle = new ConcurrentLinkedQueue[sizes];
+		_idleCounts = new AtomicInteger[sizes];
+		for (int i = 0; i < sizes; i++) {
+			_idle[i] = new ConcurrentLinkedQueue<byte[]>();
+			_idleCounts[i] = new AtomicInteger();
+		}
+		_maxIdlePerSize = maxIdlePerSize;
+	}
+
+	/**
+	 * Get a buffer of at least the given size, contents undefined
+	 * @param minSize	Minimum length
+	 * @return			Buffer, its length a power of two for pooled sizes
+	 */
+	public byte[] acquire(int minSize) {
+		if (minSize > MAX_BUFFER_SIZE)
+			return new byte[minSize];
+
+		int bucket = bucketOf(minSize);
+		byte[] buffer = _idle[bucket].poll();
+		if (buffer != null) {
+			_idleCounts[bucket].decrementAndGet();
+			return buffer;
+		}
+		return new byte[MIN_BUFFER_SIZE << bucket];
+	}
+
+	/**
+	 * Return a buffer obtained from {@link #acquire(int)}, the caller must not use it afterwards
+	 * @param buffer	Buffer, may be null
+	 */
+	public void release(byte[] buffer) {
+		if (buffer == null || buffer.length < MIN_BUFFER_SIZE || buffer.length > MAX_BUFFER_SIZE || Integer.bitCount(buffer.length) != 1)
+			return;
+
+		int bucket = bucketOf(buffer.length);
+		if (_idleCounts[bucket].incrementAndGet() <= _maxIdlePerSize) {
+			_idle[bucket].offer(buffer);
+		} else {
+			_idleCounts[bucket].decrementAndGet();
+		}
+	}
+
+	/**
+	 * Index of the smallest pooled size holding the given length
+	 */
+	private static int bucketOf(int size) {
+		if (size <= MIN_BUFFER_SIZE)
+			return 0;
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,440 @@
+package org.linter;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide per-origin connection limit shared by all fetchers
+ *
+ * Every fetch leases a connection slot for its origin and returns it when the response
+ * is closed, reporting whether the connection was left reusable, i.e. its body was read
+ * to the end. At most maxPerHost slots per origin are leased at once; further leases wait.
+ * Origins that answered over HTTP/2 carry all requests as streams of one connection, so
+ * their leases are not limited.
+ *
+ * The JDK transports own the sockets, keep them alive and evict idle ones; they do not
+ * expose which socket serves a request. The statistics therefore count what the pool
+ * sees: leases, waits and whether a released connection was handed back reusable or
+ * closed, not whether the transport actually reused it. The transport keep-alive caches
+ * are configured through JVM-wide system properties, which only applications owning the
+ * JVM should set, see {@link #configureTransportKeepAlive(int, long)}.
+ */
+public class ConnectionPool {
+
+	/**
+	 * Default maximum leased connections per origin
+	 */
+	public static final int DEFAULT_MAX_PER_HOST = 8;
+
+	/**
+	 * Default idle connection timeout, 30 sec
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * Default maximum bytes drained from an unfinished body to keep its connection reusable
+	 */
+	public static final int DEFAULT_MAX_DRAIN_BYTES = 16 * 1024;
+
+	/**
+	 * Maximum number of remembered HTTP/2 origins
+	 */
+	private static final int MAX_MULTIPLEXED_ORIGINS = 10000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static final ConnectionPool INSTANCE = new ConnectionPool(DEFAULT_MAX_PER_HOST);
+
+	/**
+	 * Maximum leased connections per origin, written under _origins
+	 */
+	private volatile int _maxPerHost;
+
+	/**
+	 * Maximum bytes drained from an unfinished body
+	 */
+	private volatile int _maxDrainBytes = DEFAULT_MAX_DRAIN_BYTES;
+
+	/**
+	 * State of all origins with leased or awaited connections
+	 */
+	private final HashMap<String, Origin> _origins;
+
+	/**
+	 * Origins recently answering over HTTP/2, forgotten after the idle timeout
+	 */
+	private final ExpiringLruCache<String, Boolean> _multiplexed;
+
+	/**
+	 * Statistics
+	 */
+	private final AtomicLong _leases = new AtomicLong();
+	private final AtomicLong _waits = new AtomicLong();
+	private final AtomicLong _reusableReleases = new AtomicLong();
+	private final AtomicLong _discarded = new AtomicLong();
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Connection pool
+	 */
+	public static ConnectionPool getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private ConnectionPool(int maxPerHost) {
+		_maxPerHost = maxPerHost;
+		_origins = new HashMap<String, Origin>();
+		_multiplexed = new ExpiringLruCache<String, Boolean>(MAX_MULTIPLEXED_ORIGINS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Configure the keep-alive caches of HttpURLConnection and HttpClient
+	 *
+	 * Sets the JVM-wide system properties http.maxConnections, http.keepAlive.time.server
+	 * and jdk.httpclient.keepalive.timeout, affecting every user of the transports in the
+	 * JVM. The transports read them once, so call this before the first request.
+	 *
+	 * @param maxIdlePerHost	Maximum idle HttpURLConnection sockets kept per origin
+	 * @param idleTimeoutMillis	Idle socket timeout, rounded down to seconds
+	 */
+	public static void configureTransportKeepAlive(int maxIdlePerHost, long idleTimeoutMillis) {
+		String idleTimeout = Long.toString(idleTimeoutMillis / 1000);
+		System.setProperty("http.maxConnections", Integer.toString(maxIdlePerHost));
+		System.setProperty("http.keepAlive.time.server", idleTimeout);
+		System.setProperty("jdk.httpclient.keepalive.timeout", idleTimeout);
+	}
+
+	/**
+	 * Lease a connection, blocking while the origin is at its limit
+	 * @param url	Requested URL
+	 * @return		Lease, must be released exactly once
+	 * @throws InterruptedIOException	If interrupted while waiting; nothing is leased in that case
+	 */
+	public Lease lease(String url) throws InterruptedIOException {
+		CompletableFuture<Lease> future = leaseAsync(url);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			// Give the lease back if it was granted meanwhile
+			if (!future.cancel(false))
+				future.join().cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a connection to " + url);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Lease a connection without blocking
+	 * @param url	Requested URL
+	 * @return		Future completing with the lease once the origin is below its limit
+	 */
+	public CompletableFuture<Lease> leaseAsync(String url) {
+		String key = getOrigin(url);
+		_leases.incrementAndGet();
+		if (_multiplexed.get(key) != null)
+			return CompletableFuture.completedFuture(new Lease(key, false));
+
+		synchronized (_origins) {
+			Origin origin = _origins.get(key);
+			if (origin == null) {
+				origin = new Origin();
+				_origins.put(key, origin);
+			}
+			if (origin.leased < _maxPerHost) {
+				return CompletableFuture.completedFuture(grant(key, origin));
+			}
+
+			_waits.incrementAndGet();
+			CompletableFuture<Lease> waiter = new CompletableFuture<Lease>();
+			origin.waiters.add(waiter);
+			return waiter;
+		}
+	}
+
+	/**
+	 * Record that an origin answered over HTTP/2, lifting its lease limit; waiting leases
+	 * are granted right away
+	 * @param url	Any URL of the origin
+	 */
+	public void setMultiplexed(String url) {
+		String key = getOrigin(url);
+		if (_multiplexed.get(key) != null)
+			return;
+		_multiplexed.put(key, Boolean.TRUE);
+
+		ArrayDeque<CompletableFuture<Lease>> waiters;
+		synchronized (_origins) {
+			Origin origin = _origins.get(key);
+			if (origin == null || origin.waiters.isEmpty())
+				return;
+			waiters = new ArrayDeque<CompletableFuture<Lease>>(origin.waiters);
+			origin.waiters.clear();
+			if (origin.isUnused())
+				_origins.remove(key);
+		}
+		for (CompletableFuture<Lease> waiter : waiters) {
+			waiter.complete(new Lease(key, false));
+		}
+	}
+
+	/**
+	 * Whether an origin recently answered over HTTP/2
+	 * @param url	Any URL of the origin
+	 * @return		True if its leases are not limited
+	 */
+	public boolean isMultiplexed(String url) {
+		return _multiplexed.get(getOrigin(url)) != null;
+	}
+
+	/**
+	 * Get the maximum bytes drained from an unfinished body to keep its connection reusable
+	 * @return Byte count
+	 */
+	public int getMaxDrainBytes() {
+		return _maxDrainBytes;
+	}
+
+	/**
+	 * Set the maximum bytes drained from an unfinished body; larger remainders close the connection
+	 * @param maxDrainBytes	Byte count, 0 to never drain
+	 */
+	public void setMaxDrainBytes(int maxDrainBytes) {
+		_maxDrainBytes = maxDrainBytes;
+	}
+
+	/**
+	 * Get the maximum leased connections per origin, not applied to HTTP/2 origins
+	 * @return Connection count
+	 */
+	public int getMaxPerHost() {
+		return _maxPerHost;
+	}
+
+	/**
+	 * Set the maximum leased connections per origin; a higher limit grants waiting leases
+	 * right away, a lower one lets current leases finish
+	 * @param maxPerHost	Connection count, at least 1
+	 */
+	public void setMaxPerHost(int maxPerHost) {
+		if (maxPerHost < 1)
+			throw new IllegalArgumentException("maxPerHost must be at least 1: " + maxPerHost);
+
+		ArrayList<String> waiting = new ArrayList<String>();
+		synchronized (_origins) {
+			_maxPerHost = maxPerHost;
+			for (Map.Entry<String, Origin> entry : _origins.entrySet()) {
+				if (!entry.getValue().waiters.isEmpty())
+					waiting.add(entry.getKey());
+			}
+		}
+		for (String key : waiting) {
+			dispatch(key);
+		}
+	}
+
+	/**
+	 * Get the number of leased connections of an origin
+	 * @param url	Any URL of the origin
+	 * @return		Leased connection count
+	 */
+	public int getLeased(String url) {
+		synchronized (_origins) {
+			Origin origin = _origins.get(getOrigin(url));
+			return (origin == null) ? 0 : origin.leased;
+		}
+	}
+
+	/**
+	 * Leases granted, including those that waited
+	 * @return Lease count
+	 */
+	public long getLeaseCount() {
+		return _leases.get();
+	}
+
+	/**
+	 * Leases that had to wait for the origin limit
+	 * @return Wait count
+	 */
+	public long getWaitCount() {
+		return _waits.get();
+	}
+
+	/**
+	 * Connections handed back to the transport reusable, their body read to the end
+	 * @return Release count
+	 */
+	public long getReusableReleaseCount() {
+		return _reusableReleases.get();
+	}
+
+	/**
+	 * Connections closed on release because their body was not read to the end
+	 * @return Discard count
+	 */
+	public long getDiscardCount() {
+		return _discarded.get();
+	}
+
+	/**
+	 * Fraction of released connections handed back to the transport reusable; whether the
+	 * transport then reuses them is not visible to the pool
+	 * @return Rate between 0 and 1
+	 */
+	public double getReusableReleaseRate() {
+		long reusable = _reusableReleases.get();
+		long released = reusable + _discarded.get();
+		return (released == 0) ? 0 : (double) reusable / released;
+	}
+
+	/**
+	 * Hand out a slot of an origin below its limit, guarded by _origins
+	 */
+	private Lease grant(String key, Origin origin) {
+		origin.leased++;
+		return new Lease(key, true);
+	}
+
+	/**
+	 * Return a leased connection and pass its slot to the next waiter
+	 */
+	private void release(Lease lease, boolean reusable) {
+		if (reusable) {
+			_reusableReleases.incrementAndGet();
+		} else {
+			_discarded.incrementAndGet();
+		}
+		unlease(lease);
+	}
+
+	/**
+	 * Give back the slot of a lease, if it holds one
+	 */
+	private void unlease(Lease lease) {
+		lease._released = true;
+		if (!lease._limited)
+			return;
+		synchronized (_origins) {
+			_origins.get(lease._origin).leased--;
+		}
+		dispatch(lease._origin);
+	}
+
+	/**
+	 * Grant free slots of an origin to its waiters, completing them outside the lock
+	 */
+	private void dispatch(String key) {
+		while (true) {
+			CompletableFuture<Lease> next;
+			Lease granted;
+			synchronized (_origins) {
+				Origin origin = _origins.get(key);
+				if (origin == null)
+					return;
+				if (origin.waiters.isEmpty() || origin.leased >= _maxPerHost) {
+					if (origin.isUnused())
+						_origins.remove(key);
+					return;
+				}
+				next = origin.waiters.poll();
+				granted = grant(key, origin);
+			}
+
+			// A waiter that gave up returns the slot, which goes to the next one
+			if (!next.complete(granted))
+				unlease(granted);
+		}
+	}
+
+	/**
+	 * Get the origin key of a URL, scheme://host:port
+	 */
+	private static String getOrigin(String url) {
+		try {
+			URI uri = new URI(url);
+			String scheme = (uri.getScheme() == null) ? "http" : uri.getScheme().toLowerCase();
+			int port = uri.getPort();
+			if (port < 0)
+				port = scheme.equals("https") ? 443 : 80;
+			String host = (uri.getHost() == null) ? "" : uri.getHost().toLowerCase();
+			return scheme + "://" + host + ":" + port;
+		} catch (Exception e) {
+			return url;
+		}
+	}
+
+	/**
+	 * Per-origin state, guarded by _origins
+	 */
+	private static class Origin {
+		int leased = 0;
+
+		final ArrayDeque<CompletableFuture<Lease>> waiters = new ArrayDeque<CompletableFuture<Lease>>();
+
+		boolean isUnused() {
+			return leased == 0 && waiters.isEmpty();
+		}
+	}
+
+	/**
+	 * A leased connection
+	 */
+	public class Lease {
+		private final String _origin;
+		private final boolean _limited;
+		private boolean _released = false;
+
+		Lease(String origin, boolean limited) {
+			_origin = origin;
+			_limited = limited;
+		}
+
+		/**
+		 * Whether this lease holds one of the limited slots of its origin
+		 * @return False for HTTP/2 origins
+		 */
+		public boolean isLimited() {
+			return _limited;
+		}
+
+		/**
+		 * Give back a lease that was never used, later calls are ignored
+		 */
+		void cancel() {
+			synchronized (this) {
+				if (_released)
+					return;
+				_released = true;
+			}
+			unlease(this);
+		}
+
+		/**
+		 * Return the connection, later calls are ignored
+		 * @param reusable	True if the connection can serve another request
+		 */
+		public void release(boolean reusable) {
+			synchronized (this) {
+				if (_released)
+					return;
+				_released = true;
+			}
+			ConnectionPool.this.release(this, reusable);
+		}
+	}
+}
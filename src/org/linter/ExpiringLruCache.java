@@ -0,0 +1,211 @@
+package org.linter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, thread-safe LRU cache whose entries expire after a time to live
+ *
+ * Expired entries are dropped lazily when looked up, and the least recently used
+ * entry is evicted whenever the cache grows past its maximum size.
+ *
+ * @param <K>	Key type
+ * @param <V>	Value type
+ */
+public class ExpiringLruCache<K, V> {
+
+	/**
+	 * Entries in access order, least recently used first
+	 */
+	private final LinkedHashMap<K, Entry<V>> _entries;
+
+	/**
+	 * Maximum number of entries
+	 */
+	private int _maxSize;
+
+	/**
+	 * Default time to live in nanoseconds
+	 */
+	private long _ttlNanos;
+
+	/**
+	 * Statistics
+	 */
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+
+
+
+	/**
+	 * Constructor
+	 * @param maxSize		Maximum number of entries
+	 * @param ttlMillis		Default time to live of entries in milliseconds
+	 */
+	public ExpiringLruCache(int maxSize, long ttlMillis) {
+		_entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+		setMaxSize(maxSize);
+		setTtlMillis(ttlMillis);
+	}
+
+	/**
+	 * Get a value
+	 * @param key	Key
+	 * @return		Value, null if absent or expired
+	 */
+	public synchronized V get(K key) {
+		Entry<V> entry = _entries.get(key);
+		if (entry != null && entry.expires - System.nanoTime() <= 0) {
+			_entries.remove(key);
+			entry = null;
+		}
+
+		if (entry == null) {
+			_misses.incrementAndGet();
+			return null;
+		}
+		_hits.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Store a value with the default time to live
+	 * @param key	Key
+	 * @param value	Value
+	 */
+	public void put(K key, V value) {
+		put(key, value, TimeUnit.NANOSECONDS.toMillis(_ttlNanos));
+	}
+
+	/**
+	 * Store a value with its own time to live
+	 * @param key		Key
+	 * @param value		Value
+	 * @param ttlMillis	Time to live in milliseconds
+	 */
+	public synchronized void put(K key, V value, long ttlMillis) {
+		_entries.put(key, new Entry<V>(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+		evict();
+	}
+
+	/**
+	 * Remove a value
+	 * @param key	Key
+	 */
+	public synchronized void remove(K key) {
+		_entries.remove(key);
+	}
+
+	/**
+	 * Remove all values, statistics are kept
+	 */
+	public synchronized void clear() {
+		_entries.clear();
+	}
+
+	/**
+	 * Get the number of entries, including expired entries not yet dropped
+	 * @return Entry count
+	 */
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	/**
+	 * Set the maximum number of entries, evicting if needed
+	 * @param maxSize	Maximum number of entries
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+		_maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 * Get the maximum number of entries
+	 * @return Maximum size
+	 */
+	public synchronized int getMaxSize() {
+		return _maxSize;
+	}
+
+	/**
+	 * Set the default time to live of new entries
+	 * @param ttlMillis	Time to live in milliseconds
+	 */
+	public synchronized void setTtlMillis(long ttlMillis) {
+		_ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	/**
+	 * Get the default time to live of new entries
+	 * @return Time to live in milliseconds
+	 */
+	public synchronized long getTtlMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(_ttlNanos);
+	}
+
+	/**
+	 * Get the number of lookups that found a live entry
+	 * @return Hit count
+	 */
+	public long getHitCount() {
+		return _hits.get();
+	}
+
+	/**
+	 * Get the number of lookups that found no entry or an expired one
+	 * @return Miss count
+	 */
+	public long getMissCount() {
+		return _misses.get();
+	}
+
+	/**
+	 * Get the number of entries evicted for size
+	 * @return Eviction count
+	 */
+	public long getEvictionCount() {
+		return _evictions.get();
+	}
+
+	/**
+	 * Get the ratio of hits to lookups
+	 * @return Hit rate between 0 and 1, 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		long hits = _hits.get();
+		long total = hits + _misses.get();
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Evict least recently used entries beyond the maximum size
+	 */
+	private void evict() {
+		Iterator<Map.Entry<K, Entry<V>>> itr = _entries.entrySet().iterator();
+		while (_entries.size() > _maxSize && itr.hasNext()) {
+			itr.next();
+			itr.remove();
+			_evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Cached value and its expiry time
+	 */
+	private static class Entry<V> {
+		final V value;
+		final long expires;
+
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
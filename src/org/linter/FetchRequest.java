@@ -0,0 +1,131 @@
+package org.linter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single HTTP request made through a {@link PageFetcher}
+ *
+ * Redirects are never followed by the fetcher, LintedPage follows them itself to record aliases.
+ */
+public class FetchRequest {
+
+	/**
+	 * HTTP GET
+	 */
+	public static final String METHOD_GET = "GET";
+
+	/**
+	 * HTTP HEAD
+	 */
+	public static final String METHOD_HEAD = "HEAD";
+
+	/**
+	 * Request URL
+	 */
+	private final String _url;
+
+	/**
+	 * HTTP method
+	 */
+	private final String _method;
+
+	/**
+	 * Request headers, in insertion order
+	 */
+	private final LinkedHashMap<String, String> _headers;
+
+	/**
+	 * Connect timeout in milliseconds
+	 */
+	private int _connectTimeout;
+
+	/**
+	 * Read timeout in milliseconds
+	 */
+	private int _readTimeout;
+
+
+
+	/**
+	 * Create a request with the Linter user agent and default timeouts
+	 * @param url		Absolute URL
+	 * @param method	HTTP method, {@link #METHOD_GET} or {@link #METHOD_HEAD}
+	 */
+	public FetchRequest(String url, String method) {
+		_url = url;
+		_method = method;
+		_headers = new LinkedHashMap<String, String>();
+		_headers.put("User-Agent", LintedPage.HTTP_USER_AGENT);
+		_connectTimeout = LintedPage.HTTP_CONNECT_TIMEOUT;
+		_readTimeout = LintedPage.HTTP_READ_TIMEOUT;
+	}
+
+	/**
+	 * Set a request header, replacing any previous value
+	 * @param name		Header name
+	 * @param value		Header value, null removes the header
+	 * @return			This request
+	 */
+	public FetchRequest setHeader(String name, String value) {
+		if (value == null) {
+			_headers.remove(name);
+		} else {
+			_headers.put(name, value);
+		}
+		return this;
+	}
+
+	/**
+	 * Set connect and read timeouts
+	 * @param connectTimeout	Connect timeout in milliseconds
+	 * @param readTimeout		Read timeout in milliseconds
+	 * @return					This request
+	 */
+	public FetchRequest setTimeouts(int connectTimeout, int readTimeout) {
+		_connectTimeout = connectTimeout;
+		_readTimeout = readTimeout;
+		return this;
+	}
+
+	/**
+	 * Get the request URL
+	 * @return Absolute URL
+	 */
+	public String getUrl() {
+		return _url;
+	}
+
+	/**
+	 * Get the HTTP method
+	 * @return Method
+	 */
+	public String getMethod() {
+		return _method;
+	}
+
+	/**
+	 * Get the request headers
+	 * @return Headers in insertion order, unmodifiable
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(_headers);
+	}
+
+	/**
+	 * Get the connect timeout
+	 * @return Timeout in milliseconds
+	 */
+	public int getConnectTimeout() {
+		return _connectTimeout;
+	}
+
+	/**
+	 * Get the read timeout
+	 * @return Timeout in milliseconds
+	 */
+	public int getReadTimeout() {
+		return _readTimeout;
+	}
+}
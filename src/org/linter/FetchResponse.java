@@ -0,0 +1,211 @@
+package org.linter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response of a {@link PageFetcher} request
+ *
+ * Headers are available as soon as the response is returned, the body is streamed.
+ * Responses must always be closed to release the underlying connection. Closing drains
+ * a small unread remainder of the body so the connection can be kept alive; larger
+ * remainders are abandoned together with the connection.
+ */
+public class FetchResponse implements Closeable {
+
+	/**
+	 * Requested URL
+	 */
+	private final String _url;
+
+	/**
+	 * HTTP status code
+	 */
+	private final int _statusCode;
+
+	/**
+	 * Response headers, case-insensitive names
+	 */
+	private final TreeMap<String, List<String>> _headers;
+
+	/**
+	 * Raw response body, still content-encoded
+	 */
+	private final InputStream _body;
+
+	/**
+	 * Releases the underlying connection, may be null
+	 */
+	private final Connection _connection;
+
+	/**
+	 * Set once closed
+	 */
+	private boolean _closed = false;
+
+
+
+	/**
+	 * Constructor
+	 * @param url			Requested URL
+	 * @param statusCode	HTTP status code
+	 * @param headers		Response headers
+	 * @param body			Raw response body, null if there is none
+	 * @param connection	Releases the underlying connection on close, may be null
+	 */
+	public FetchResponse(String url, int statusCode, Map<String, List<String>> headers, InputStream body, Connection connection) {
+		_url = url;
+		_statusCode = statusCode;
+		_headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			// HttpURLConnection reports the status line under a null key
+			if (header.getKey() != null)
+				_headers.put(header.getKey(), header.getValue());
+		}
+		_body = (body == null) ? new ByteArrayInputStream(new byte[0]) : body;
+		_connection = connection;
+	}
+
+	/**
+	 * Get the requested URL
+	 * @return URL
+	 */
+	public String getUrl() {
+		return _url;
+	}
+
+	/**
+	 * Get the HTTP status code
+	 * @return Status code
+	 */
+	public int getStatusCode() {
+		return _statusCode;
+	}
+
+	/**
+	 * Get the first value of a header
+	 * @param name	Header name, case-insensitive
+	 * @return		Header value, null if absent
+	 */
+	public String getHeader(String name) {
+		List<String> values = _headers.get(name);
+		if (values == null || values.isEmpty())
+			return null;
+		return values.get(0);
+	}
+
+	/**
+	 * Get all response headers
+	 * @return Header map with case-insensitive names
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return _headers;
+	}
+
+	/**
+	 * Get the Content-Type header
+	 * @return Content type, null if absent
+	 */
+	public String getContentType() {
+		return getHeader("Content-Type");
+	}
+
+	/**
+	 * Get the Content-Encoding header
+	 * @return Content encoding, null if absent
+	 */
+	public String getContentEncoding() {
+		return getHeader("Content-Encoding");
+	}
+
+	/**
+	 * Get the Content-Length header
+	 * @return Content length in bytes, -1 if absent or invalid
+	 */
+	public long getContentLength() {
+		String value = getHeader("Content-Length");
+		if (value == null)
+			return -1;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Get the raw response body, not decompressed
+	 * @return Response body, empty if there is none
+	 */
+	public InputStream getBody() {
+		return _body;
+	}
+
+	/**
+	 * Close the body and release the connection, later calls are ignored
+	 */
+	public void close() {
+		synchronized (this) {
+			if (_closed)
+				return;
+			_closed = true;
+		}
+
+		boolean reusable = drain();
+		try {
+			_body.close();
+		} catch (IOException e) {
+			// nothing to do, the connection is released below
+		}
+		if (_connection != null) {
+			_connection.release(reusable);
+		}
+	}
+
+	/**
+	 * Read the rest of the body if it is small enough
+	 * @return True if the body was read to the end and the connection may be kept alive
+	 */
+	private boolean drain() {
+		if ("close".equalsIgnoreCase(getHeader("Connection")))
+			return false;
+
+		// A cancelled fetch closes its connection rather than wait for more of the body
+		if (Thread.currentThread().isInterrupted())
+			return false;
+
+		int remaining = ConnectionPool.getInstance().getMaxDrainBytes();
+		byte[] buffer = BufferPool.getInstance().acquire(BufferPool.MIN_BUFFER_SIZE);
+		try {
+			while (true) {
+				int read = _body.read(buffer, 0, Math.min(buffer.length, remaining + 1));
+				if (read < 0)
+					return true;
+				remaining -= read;
+				if (remaining < 0)
+					return false;
+			}
+		} catch (IOException e) {
+			return false;
+		} finally {
+			BufferPool.getInstance().release(buffer);
+		}
+	}
+
+	/**
+	 * Underlying connection of a response
+	 */
+	public interface Connection {
+
+		/**
+		 * Release the connection
+		 * @param reusable	True if the body was read to the end and the connection can serve another request
+		 */
+		void release(boolean reusable);
+	}
+}
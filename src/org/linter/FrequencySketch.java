@@ -0,0 +1,121 @@
+package org.linter;
+
+/**
+ * Approximate access frequency of keys, a count-min sketch with periodic aging
+ *
+ * Used as a cache admission filter: a new entry only displaces the eviction candidate
+ * when it has been requested more often recently, so one-off keys cannot flush a hot set.
+ * Counters saturate at 15 and are all halved every sample period, so frequencies
+ * reflect recent history. Not thread-safe, callers synchronize.
+ */
+public class FrequencySketch {
+
+	/**
+	 * Number of hash rows
+	 */
+	private static final int DEPTH = 4;
+
+	/**
+	 * Saturation value of a counter
+	 */
+	private static final int MAX_COUNT = 15;
+
+	/**
+	 * Row seeds, arbitrary odd constants
+	 */
+	private static final int[] SEEDS = { 0x97cb3127, 0xb7e15163, 0x9e3779b9, 0xc2b2ae35 };
+
+	/**
+	 * Counters, DEPTH rows of width entries
+	 */
+	private final byte[] _table;
+
+	/**
+	 * Row width - 1, width is a power of two
+	 */
+	private final int _mask;
+
+	/**
+	 * Increments between agings
+	 */
+	private final int _samplePeriod;
+
+	/**
+	 * Increments since the last aging
+	 */
+	private int _additions = 0;
+
+
+
+	/**
+	 * Constructor
+	 * @param expectedSize	Expected number of distinct hot keys, usually the cache size
+	 */
+	public FrequencySketch(int expectedSize) {
+		int width = Integer.highestOneBit(Math.max(expectedSize, 16) * 2 - 1);
+		_table = new byte[DEPTH * width];
+		_mask = width - 1;
+		_samplePeriod = 10 * Math.max(expectedSize, 16);
+	}
+
+	/**
+	 * Record an access to a key
+	 * @param key	Accessed key
+	 */
+	public void increment(Object key) {
+		int hash = spread(key.hashCode());
+		for (int row = 0; row < DEPTH; row++) {
+			int index = indexOf(hash, row);
+			if (_table[index] < MAX_COUNT) {
+				_table[index]++;
+			}
+		}
+
+		if (++_additions >= _samplePeriod) {
+			age();
+		}
+	}
+
+	/**
+	 * Estimate the recent access frequency of a key
+	 * @param key	Key
+	 * @return		Estimated frequency, never less than the true recent count up to saturation
+	 */
+	public int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int min = MAX_COUNT;
+		for (int row = 0; row < DEPTH; row++) {
+			min = Math.min(min, _table[indexOf(hash, row)]);
+		}
+		return min;
+	}
+
+	/**
+	 * Halve all counters
+	 */
+	private void age() {
+		for (int i = 0; i < _table.length; i++) {
+			_table[i] = (byte) (_table[i] >>> 1);
+		}
+		_additions /= 2;
+	}
+
+	/**
+	 * Counter index of a hash in a row
+	 */
+	private int indexOf(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+		h ^= h >>> 16;
+		return row * (_mask + 1) + (h & _mask);
+	}
+
+	/**
+	 * Spread bits of a hash code
+	 */
+	private static int spread(int h) {
+		h ^= h >>> 17;
+		h *= 0xed5ad4bb;
+		h ^= h >>> 11;
+		return h;
+	}
+}
@@ -0,0 +1,176 @@
+package org.linter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, e.g. latencies in nanoseconds
+ *
+ * Values fall into log-linear buckets, 8 per power of two, so percentiles are accurate
+ * to within 12.5% whatever the range. Recording is a few atomic increments and never
+ * blocks; reads are not atomic across buckets and may miss concurrent recordings.
+ */
+public class Histogram implements HistogramMXBean {
+
+	/**
+	 * Sub-buckets per power of two, as a power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Enough buckets for any non-negative long
+	 */
+	private static final int BUCKET_COUNT = getBucketIndex(Long.MAX_VALUE) + 1;
+
+	private final AtomicLongArray _buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder _count = new LongAdder();
+	private final LongAdder _sum = new LongAdder();
+	private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Unit of reported values and the recorded values per unit
+	 */
+	private final String _unit;
+	private final double _scale;
+
+
+
+	/**
+	 * Constructor
+	 * @param unit	Unit of reported values, e.g. "ms"
+	 * @param scale	Recorded values per reported unit, e.g. 1e6 for nanoseconds reported in ms
+	 */
+	public Histogram(String unit, double scale) {
+		_unit = unit;
+		_scale = scale;
+	}
+
+	/**
+	 * Record a value, negative values count as 0
+	 * @param value	Value in recorded units
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		_buckets.incrementAndGet(getBucketIndex(value));
+		_count.increment();
+		_sum.add(value);
+		_max.accumulate(value);
+	}
+
+	/**
+	 * Get the unit of reported values
+	 * @return Unit, e.g. "ms"
+	 */
+	public String getUnit() {
+		return _unit;
+	}
+
+	/**
+	 * Get the number of recorded values
+	 * @return Count
+	 */
+	public long getCount() {
+		return _count.sum();
+	}
+
+	/**
+	 * Get the sum of all values
+	 * @return Sum in reported units
+	 */
+	public double getSum() {
+		return _sum.sum() / _scale;
+	}
+
+	/**
+	 * Get the mean of recorded values
+	 * @return Mean in reported units, 0 if none were recorded
+	 */
+	public double getMean() {
+		long count = _count.sum();
+		return (count == 0) ? 0 : _sum.sum() / _scale / count;
+	}
+
+	/**
+	 * Get the largest recorded value
+	 * @return Maximum in reported units, 0 if none were recorded
+	 */
+	public double getMax() {
+		return _max.get() / _scale;
+	}
+
+	/**
+	 * Get the median of recorded values
+	 * @return 50th percentile in reported units
+	 */
+	public double get50thPercentile() {
+		return getPercentile(0.50);
+	}
+
+	/**
+	 * Get the 95th percentile of recorded values
+	 * @return 95th percentile in reported units
+	 */
+	public double get95thPercentile() {
+		return getPercentile(0.95);
+	}
+
+	/**
+	 * Get the 99th percentile of recorded values
+	 * @return 99th percentile in reported units
+	 */
+	public double get99thPercentile() {
+		return getPercentile(0.99);
+	}
+
+	/**
+	 * Get a percentile, the upper bound of the bucket holding it
+	 * @param fraction	Percentile as a fraction, e.g. 0.99
+	 * @return			Value in reported units, 0 if nothing was recorded
+	 */
+	public double getPercentile(double fraction) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = _buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(getBucketUpperBound(i), _max.get()) / _scale;
+		}
+		return _max.get() / _scale;
+	}
+
+	/**
+	 * Bucket of a value, values below SUB_BUCKETS get one bucket each
+	 */
+	private static int getBucketIndex(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	/**
+	 * Largest value falling into a bucket
+	 */
+	private static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = index & (SUB_BUCKETS - 1);
+		long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (lower > Long.MAX_VALUE - width) ? Long.MAX_VALUE : lower + width - 1;
+	}
+}
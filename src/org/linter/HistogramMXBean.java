@@ -0,0 +1,49 @@
+package org.linter;
+
+/**
+ * JMX view of a {@link Histogram}, values are in the reported unit
+ */
+public interface HistogramMXBean {
+
+	/**
+	 * Get the unit of reported values
+	 * @return Unit, e.g. "ms"
+	 */
+	String getUnit();
+
+	/**
+	 * Get the number of recorded values
+	 * @return Count
+	 */
+	long getCount();
+
+	/**
+	 * Get the mean of recorded values
+	 * @return Mean, 0 if none were recorded
+	 */
+	double getMean();
+
+	/**
+	 * Get the largest recorded value
+	 * @return Maximum, 0 if none were recorded
+	 */
+	double getMax();
+
+	/**
+	 * Get the median of recorded values
+	 * @return 50th percentile, accurate to within 12.5%
+	 */
+	double get50thPercentile();
+
+	/**
+	 * Get the 95th percentile of recorded values
+	 * @return 95th percentile, accurate to within 12.5%
+	 */
+	double get95thPercentile();
+
+	/**
+	 * Get the 99th percentile of recorded values
+	 * @return 99th percentile, accurate to within 12.5%
+	 */
+	double get99thPercentile();
+}
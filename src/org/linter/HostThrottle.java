@@ -0,0 +1,143 @@
+package org.linter;
+
+import java.util.HashMap;
+
+/**
+ * Caps the number of in-flight HTTP requests per destination host
+ *
+ * Callers block in {@link #acquire(String)} until a slot for the host is free and
+ * must always pair it with {@link #release(String)}. Hosts without any holders or
+ * waiters are forgotten, so the throttle does not grow with the number of hosts seen.
+ */
+public class HostThrottle {
+
+	/**
+	 * Maximum concurrent requests per host
+	 */
+	private final int _maxPerHost;
+
+	/**
+	 * Slots of all hosts currently in use or waited on
+	 */
+	private final HashMap<String, Slot> _slots;
+
+
+
+	/**
+	 * Constructor
+	 * @param maxPerHost	Maximum in-flight requests per host, must be at least 1
+	 */
+	public HostThrottle(int maxPerHost) {
+		if (maxPerHost < 1)
+			throw new IllegalArgumentException("maxPerHost must be at least 1: " + maxPerHost);
+		_maxPerHost = maxPerHost;
+		_slots = new HashMap<String, Slot>();
+	}
+
+	/**
+	 * Block until a request slot for the host is available
+	 * @param host	Destination host, null or empty is never throttled
+	 * @throws InterruptedException	If interrupted while waiting; no slot is held in that case
+	 */
+	public void acquire(String host) throws InterruptedException {
+		if (host == null || host.isEmpty())
+			return;
+
+		String key = host.toLowerCase();
+		Slot slot;
+		synchronized (_slots) {
+			slot = _slots.get(key);
+			if (slot == null) {
+				slot = new Slot();
+				_slots.put(key, slot);
+			}
+			slot.users++;
+		}
+
+		boolean acquired = false;
+		try {
+			synchronized (slot) {
+				while (slot.inFlight >= _maxPerHost) {
+					slot.wait();
+				}
+				slot.inFlight++;
+				acquired = true;
+			}
+		} finally {
+			if (!acquired)
+				unreference(key, slot);
+		}
+	}
+
+	/**
+	 * Release a request slot previously obtained with {@link #acquire(String)}
+	 * @param host	Destination host
+	 */
+	public void release(String host) {
+		if (host == null || host.isEmpty())
+			return;
+
+		String key = host.toLowerCase();
+		Slot slot;
+		synchronized (_slots) {
+			slot = _slots.get(key);
+		}
+		if (slot == null)
+			return;
+
+		synchronized (slot) {
+			slot.inFlight--;
+			slot.notify();
+		}
+		unreference(key, slot);
+	}
+
+	/**
+	 * Get the maximum in-flight requests per host
+	 * @return Maximum requests per host
+	 */
+	public int getMaxPerHost() {
+		return _maxPerHost;
+	}
+
+	/**
+	 * Get the number of requests currently in flight for a host
+	 * @param host	Destination host
+	 * @return		In-flight request count
+	 */
+	public int getInFlight(String host) {
+		if (host == null)
+			return 0;
+		Slot slot;
+		synchronized (_slots) {
+			slot = _slots.get(host.toLowerCase());
+		}
+		if (slot == null)
+			return 0;
+		synchronized (slot) {
+			return slot.inFlight;
+		}
+	}
+
+	/**
+	 * Drop a reference to a slot, forgetting the host once nobody holds or waits on it
+	 */
+	private void unreference(String key, Slot slot) {
+		synchronized (_slots) {
+			if (--slot.users == 0) {
+				_slots.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Per-host slot state
+	 */
+	private static class Slot {
+		// Requests holding a slot, guarded by the slot itself
+		int inFlight = 0;
+
+		// Holders plus waiters, guarded by _slots
+		int users = 0;
+	}
+}
@@ -0,0 +1,203 @@
+package org.linter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads an HTML byte stream incrementally, stopping at the end of the document head
+ *
+ * The head ends at the first "&lt;/head" or "&lt;body" tag outside of scripts and comments.
+ * The caller can then parse just the head and either stop, leaving the rest of the stream
+ * unread, or continue reading the remainder of the document. The read buffer comes from
+ * the shared BufferPool and is returned by {@link #release()}.
+ */
+public class HtmlHeadReader {
+
+	/**
+	 * Bytes read per stream read
+	 */
+	private static final int READ_SIZE = 8 * 1024;
+
+	/**
+	 * Longest token the scanner looks for, "&lt;/script"
+	 */
+	private static final int MAX_TOKEN_LENGTH = 8;
+
+	/**
+	 * Scanner states
+	 */
+	private static final int STATE_TEXT = 0;
+	private static final int STATE_SCRIPT = 1;
+	private static final int STATE_COMMENT = 2;
+
+	/**
+	 * Source stream
+	 */
+	private final InputStream _in;
+
+	/**
+	 * Bytes read so far
+	 */
+	private byte[] _buffer;
+	private int _count = 0;
+
+	/**
+	 * Scanner position and state
+	 */
+	private int _scanPos = 0;
+	private int _state = STATE_TEXT;
+
+	/**
+	 * Length of the head, -1 until found
+	 */
+	private int _headLength = -1;
+
+	/**
+	 * Set once the stream is exhausted
+	 */
+	private boolean _eof = false;
+
+
+
+	/**
+	 * Constructor
+	 * @param in	Decoded HTML stream
+	 */
+	public HtmlHeadReader(InputStream in) {
+		_in = in;
+		_buffer = BufferPool.getInstance().acquire(BufferPool.MIN_BUFFER_SIZE);
+	}
+
+	/**
+	 * Read until the end of the head or of the stream
+	 * @return	True if the end of the head was found
+	 * @throws IOException	On read failure
+	 */
+	public boolean readHead() throws IOException {
+		while (_headLength < 0 && !_eof) {
+			fill();
+			scan();
+		}
+		return _headLength >= 0;
+	}
+
+	/**
+	 * Read the remainder of the stream
+	 * @throws IOException	On read failure
+	 */
+	public void readRemaining() throws IOException {
+		while (!_eof) {
+			fill();
+		}
+	}
+
+	/**
+	 * Get the head bytes, only valid after {@link #readHead()} returned true
+	 * @return Stream over the document up to the end of its head
+	 */
+	public InputStream getHeadStream() {
+		return new ByteArrayInputStream(_buffer, 0, Math.max(_headLength, 0));
+	}
+
+	/**
+	 * Get all bytes read so far
+	 * @return Stream over the document as read
+	 */
+	public InputStream getContentStream() {
+		return new ByteArrayInputStream(_buffer, 0, _count);
+	}
+
+	/**
+	 * Get the number of bytes read so far
+	 * @return Byte count
+	 */
+	public int getBytesRead() {
+		return _count;
+	}
+
+	/**
+	 * Whether the whole stream has been read
+	 * @return True at end of stream
+	 */
+	public boolean isComplete() {
+		return _eof;
+	}
+
+	/**
+	 * Return the read buffer to the pool, streams obtained from this reader must no longer be read
+	 */
+	public void release() {
+		BufferPool.getInstance().release(_buffer);
+		_buffer = null;
+	}
+
+	/**
+	 * Read one chunk into the buffer
+	 */
+	private void fill() throws IOException {
+		if (_buffer.length - _count < READ_SIZE) {
+			byte[] grown = BufferPool.getInstance().acquire(Math.max(_buffer.length * 2, _count + READ_SIZE));
+			System.arraycopy(_buffer, 0, grown, 0, _count);
+			BufferPool.getInstance().release(_buffer);
+			_buffer = grown;
+		}
+		int read = _in.read(_buffer, _count, READ_SIZE);
+		if (read < 0) {
+			_eof = true;
+		} else {
+			_count += read;
+		}
+	}
+
+	/**
+	 * Scan newly read bytes for the end of the head, leaving a partial token at the end for the next pass
+	 */
+	private void scan() {
+		int limit = _eof ? _count : _count - MAX_TOKEN_LENGTH;
+		while (_scanPos < limit) {
+			int i = _scanPos;
+			if (_buffer[i] == '<' || _buffer[i] == '-') {
+				switch (_state) {
+				case STATE_TEXT:
+					if (matches(i, "<!--")) {
+						_state = STATE_COMMENT;
+					} else if (matches(i, "<script")) {
+						_state = STATE_SCRIPT;
+					} else if (matches(i, "</head") || matches(i, "<body")) {
+						_headLength = i;
+						return;
+					}
+					break;
+				case STATE_SCRIPT:
+					if (matches(i, "</script")) {
+						_state = STATE_TEXT;
+					}
+					break;
+				case STATE_COMMENT:
+					if (matches(i, "-->")) {
+						_state = STATE_TEXT;
+					}
+					break;
+				}
+			}
+			_scanPos++;
+		}
+	}
+
+	/**
+	 * Case-insensitive match of an ASCII token at a buffer position
+	 */
+	private boolean matches(int pos, String token) {
+		if (pos + token.length() > _count)
+			return false;
+		for (int i = 0; i < token.length(); i++) {
+			int b = _buffer[pos + i];
+			if (b >= 'A' && b <= 'Z')
+				b += 'a' - 'A';
+			if (b != token.charAt(i))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,160 @@
+package org.linter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
+import net.htmlparser.jericho.Element;
+import net.htmlparser.jericho.HTMLElementName;
+import net.htmlparser.jericho.Source;
+import net.htmlparser.jericho.StartTag;
+
+/**
+ * Index of the meta data carrying elements of a document, built in one pass
+ *
+ * Elements carrying a name, property, rel or content attribute are indexed by attribute
+ * and value, as are the title and all img elements. Lookups behave like the Jericho
+ * Source searches they replace, e.g. {@link #getFirstElement(String, String)} like
+ * source.getFirstElement( name, value, false ), without scanning the document again.
+ * Built once per page by the head of the ServiceParser chain and passed to all successors.
+ */
+public class HtmlMetaIndex {
+
+	/**
+	 * Attributes indexed by value
+	 */
+	private static final String[] INDEXED_ATTRIBUTES = { "name", "property", "rel", "content" };
+
+	/**
+	 * Source the index was built from, used for searches on other attributes
+	 */
+	private final Source _source;
+
+	/**
+	 * Elements in document order by attribute name and lower case value
+	 */
+	private final HashMap<String, List<Element>> _byAttribute = new HashMap<String, List<Element>>();
+
+	/**
+	 * First title element, null if none
+	 */
+	private Element _title = null;
+
+	/**
+	 * All img elements in document order
+	 */
+	private final ArrayList<Element> _images = new ArrayList<Element>();
+
+
+
+	/**
+	 * Build the index in a single pass over the document
+	 * @param source	Jericho source
+	 */
+	public HtmlMetaIndex(Source source) {
+		_source = source;
+		source.fullSequentialParse();
+
+		for (StartTag tag : source.getAllStartTags()) {
+			Attributes attributes = tag.getAttributes();
+			if (attributes == null)
+				continue;
+
+			String name = tag.getName();
+			if (HTMLElementName.IMG.equals(name)) {
+				_images.add(tag.getElement());
+			} else if (HTMLElementName.TITLE.equals(name) && _title == null) {
+				_title = tag.getElement();
+			}
+
+			Element element = null;
+			for (Attribute attribute : attributes) {
+				String key = attribute.getKey();
+				if (!isIndexed(key) || attribute.getValue() == null)
+					continue;
+
+				// Jericho reports duplicate attributes, the first one wins as in a search
+				if (attributes.get(key) != attribute)
+					continue;
+
+				if (element == null)
+					element = tag.getElement();
+				String indexKey = indexKey(key, attribute.getValue());
+				List<Element> elements = _byAttribute.get(indexKey);
+				if (elements == null) {
+					elements = new ArrayList<Element>(1);
+					_byAttribute.put(indexKey, elements);
+				}
+				elements.add(element);
+			}
+		}
+	}
+
+	/**
+	 * Get the first element with an attribute value, compared case-insensitively
+	 * @param attributeName	Attribute name
+	 * @param value			Attribute value
+	 * @return				First element, null if none
+	 */
+	public Element getFirstElement(String attributeName, String value) {
+		if (!isIndexed(attributeName))
+			return _source.getFirstElement(attributeName, value, false);
+
+		List<Element> elements = _byAttribute.get(indexKey(attributeName, value));
+		return (elements == null) ? null : elements.get(0);
+	}
+
+	/**
+	 * Get all elements with an attribute value, compared case-insensitively
+	 * @param attributeName	Attribute name
+	 * @param value			Attribute value
+	 * @return				Elements in document order, empty if none
+	 */
+	public List<Element> getAllElements(String attributeName, String value) {
+		if (!isIndexed(attributeName))
+			return _source.getAllElements(attributeName, value, false);
+
+		List<Element> elements = _byAttribute.get(indexKey(attributeName, value));
+		return (elements == null) ? Collections.<Element>emptyList() : Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * Get the first title element
+	 * @return Title element, null if none
+	 */
+	public Element getTitleElement() {
+		return _title;
+	}
+
+	/**
+	 * Get all img elements
+	 * @return Image elements in document order
+	 */
+	public List<Element> getImageElements() {
+		return Collections.unmodifiableList(_images);
+	}
+
+	/**
+	 * Get the source the index was built from
+	 * @return Jericho source
+	 */
+	public Source getSource() {
+		return _source;
+	}
+
+	private static boolean isIndexed(String attributeName) {
+		for (String indexed : INDEXED_ATTRIBUTES) {
+			if (indexed.equalsIgnoreCase(attributeName))
+				return true;
+		}
+		return false;
+	}
+
+	private static String indexKey(String attributeName, String value) {
+		return attributeName.toLowerCase(Locale.ROOT) + '\u0000' + value.toLowerCase(Locale.ROOT);
+	}
+}
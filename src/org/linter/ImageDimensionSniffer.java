@@ -0,0 +1,275 @@
+package org.linter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * Reads image dimensions from the file header without decoding the image
+ *
+ * Recognizes PNG, GIF, BMP, WebP and JPEG. All but JPEG keep their dimensions in the
+ * first 30 bytes; for JPEG the segments are skipped up to the first start of frame
+ * marker. Reading stops as soon as the dimensions are known. The bytes read are kept,
+ * so an image of unknown format can still be decoded from {@link #getReplayStream()}.
+ */
+public class ImageDimensionSniffer {
+
+	/**
+	 * Maximum number of bytes read while looking for the dimensions, 64KB
+	 */
+	public static final int MAX_SNIFF_BYTES = 64 * 1024;
+
+	/**
+	 * Image formats
+	 */
+	public static final String FORMAT_PNG = "png";
+	public static final String FORMAT_GIF = "gif";
+	public static final String FORMAT_BMP = "bmp";
+	public static final String FORMAT_WEBP = "webp";
+	public static final String FORMAT_JPEG = "jpeg";
+
+	/**
+	 * Bytes read per call to the underlying stream
+	 */
+	private static final int READ_SIZE = 512;
+
+	/**
+	 * Underlying stream
+	 */
+	private final InputStream _in;
+
+	/**
+	 * Bytes read so far
+	 */
+	private byte[] _buffer = new byte[READ_SIZE];
+	private int _length = 0;
+
+	/**
+	 * Set once the underlying stream ended
+	 */
+	private boolean _eof = false;
+
+	/**
+	 * Detected format, null if unknown
+	 */
+	private String _format = null;
+
+	/**
+	 * Dimensions, -1 if unknown
+	 */
+	private int _width = -1;
+	private int _height = -1;
+
+
+
+	/**
+	 * Constructor
+	 * @param in	Image stream, positioned at its first byte
+	 */
+	public ImageDimensionSniffer(InputStream in) {
+		_in = in;
+	}
+
+	/**
+	 * Read the format and dimensions from the image header
+	 * @return True if the dimensions were found
+	 * @throws IOException	If reading fails
+	 */
+	public boolean sniff() throws IOException {
+		fill(12);
+
+		if (startsWith(0, 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a)) {
+			_format = FORMAT_PNG;
+			// Width and height follow the IHDR chunk header
+			if (fill(24) && startsWith(12, 'I', 'H', 'D', 'R'))
+				setDimensions(int32BE(16), int32BE(20));
+		} else if (startsWith(0, 'G', 'I', 'F', '8')) {
+			_format = FORMAT_GIF;
+			if (fill(10))
+				setDimensions(int16LE(6), int16LE(8));
+		} else if (startsWith(0, 'B', 'M')) {
+			_format = FORMAT_BMP;
+			sniffBmp();
+		} else if (startsWith(0, 'R', 'I', 'F', 'F') && startsWith(8, 'W', 'E', 'B', 'P')) {
+			_format = FORMAT_WEBP;
+			sniffWebp();
+		} else if (startsWith(0, 0xff, 0xd8)) {
+			_format = FORMAT_JPEG;
+			sniffJpeg();
+		}
+
+		return _width >= 0 && _height >= 0;
+	}
+
+	/**
+	 * Get the detected format
+	 * @return Format name, null if unknown
+	 */
+	public String getFormat() {
+		return _format;
+	}
+
+	/**
+	 * Get the sniffed width
+	 * @return Width in pixels, -1 if not found
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Get the sniffed height
+	 * @return Height in pixels, -1 if not found
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Get the whole image, the bytes read while sniffing followed by the rest of the stream
+	 * @return Image stream
+	 */
+	public InputStream getReplayStream() {
+		return new SequenceInputStream(new ByteArrayInputStream(_buffer, 0, _length), _in);
+	}
+
+	/**
+	 * BMP, the info header size tells the old OS/2 16 bit layout from the 32 bit one
+	 */
+	private void sniffBmp() throws IOException {
+		if (!fill(26))
+			return;
+		if (int32LE(14) == 12) {
+			setDimensions(int16LE(18), int16LE(20));
+		} else {
+			// Negative heights denote top-down bitmaps
+			setDimensions(int32LE(18), Math.abs(int32LE(22)));
+		}
+	}
+
+	/**
+	 * WebP, lossy, lossless and extended variants
+	 */
+	private void sniffWebp() throws IOException {
+		if (!fill(30))
+			return;
+		if (startsWith(12, 'V', 'P', '8', ' ')) {
+			// Frame tag then start code 9d 01 2a, 14 bit dimensions
+			if (startsWith(23, 0x9d, 0x01, 0x2a))
+				setDimensions(int16LE(26) & 0x3fff, int16LE(28) & 0x3fff);
+		} else if (startsWith(12, 'V', 'P', '8', 'L')) {
+			// Signature 2f then 14 bit width - 1 and height - 1
+			if (startsWith(20, 0x2f)) {
+				int bits = int32LE(21);
+				setDimensions((bits & 0x3fff) + 1, ((bits >> 14) & 0x3fff) + 1);
+			}
+		} else if (startsWith(12, 'V', 'P', '8', 'X')) {
+			// 24 bit canvas width - 1 and height - 1
+			setDimensions(int24LE(24) + 1, int24LE(27) + 1);
+		}
+	}
+
+	/**
+	 * JPEG, skip segments up to the first start of frame marker
+	 */
+	private void sniffJpeg() throws IOException {
+		int pos = 2;
+		while (fill(pos + 2)) {
+			if (u8(pos) != 0xff)
+				return;
+
+			// Markers may be padded with any number of 0xff
+			int marker = u8(pos + 1);
+			if (marker == 0xff) {
+				pos++;
+				continue;
+			}
+			pos += 2;
+
+			// Standalone markers have no length
+			if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd8))
+				continue;
+
+			// Image data or end of image before any frame
+			if (marker == 0xd9 || marker == 0xda)
+				return;
+
+			if (!fill(pos + 2))
+				return;
+			int length = int16BE(pos);
+			if (length < 2)
+				return;
+
+			// SOF0-SOF15 except DHT, JPG and DAC: precision, height, width
+			if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+				if (fill(pos + 7))
+					setDimensions(int16BE(pos + 5), int16BE(pos + 3));
+				return;
+			}
+			pos += length;
+		}
+	}
+
+	private void setDimensions(int width, int height) {
+		if (width > 0 && height > 0) {
+			_width = width;
+			_height = height;
+		}
+	}
+
+	/**
+	 * Read until at least the given number of bytes is buffered
+	 * @return False if the stream ends or the sniff limit is reached before
+	 */
+	private boolean fill(int length) throws IOException {
+		if (length > MAX_SNIFF_BYTES)
+			return false;
+		while (_length < length && !_eof) {
+			if (_length + READ_SIZE > _buffer.length)
+				_buffer = Arrays.copyOf(_buffer, Math.min(Math.max(_buffer.length * 2, _length + READ_SIZE), MAX_SNIFF_BYTES + READ_SIZE));
+			int read = _in.read(_buffer, _length, READ_SIZE);
+			if (read < 0) {
+				_eof = true;
+			} else {
+				_length += read;
+			}
+		}
+		return _length >= length;
+	}
+
+	private boolean startsWith(int offset, int... bytes) {
+		if (offset + bytes.length > _length)
+			return false;
+		for (int i = 0; i < bytes.length; i++) {
+			if (u8(offset + i) != bytes[i])
+				return false;
+		}
+		return true;
+	}
+
+	private int u8(int offset) {
+		return _buffer[offset] & 0xff;
+	}
+
+	private int int16BE(int offset) {
+		return (u8(offset) << 8) | u8(offset + 1);
+	}
+
+	private int int32BE(int offset) {
+		return (int16BE(offset) << 16) | int16BE(offset + 2);
+	}
+
+	private int int16LE(int offset) {
+		return u8(offset) | (u8(offset + 1) << 8);
+	}
+
+	private int int24LE(int offset) {
+		return int16LE(offset) | (u8(offset + 2) << 16);
+	}
+
+	private int int32LE(int offset) {
+		return int16LE(offset) | (int16LE(offset + 2) << 16);
+	}
+}
@@ -0,0 +1,220 @@
+package org.linter;
+
+/**
+ * Process-wide cache of image probe results, keyed by image URL
+ *
+ * Logos, avatars and thumbnails recur on many pages of a provider, so AlgorithmicImageSelector
+ * consults this cache before downloading a candidate. Failed probes, i.e. images without
+ * known dimensions, are cached too, with a shorter time to live.
+ */
+public class ImageProbeCache {
+
+	/**
+	 * Default maximum number of cached probes
+	 */
+	public static final int DEFAULT_MAX_SIZE = 50000;
+
+	/**
+	 * Default time to live of a probe with dimensions, 6 hours
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 6 * 60 * 60 * 1000;
+
+	/**
+	 * Default time to live of a failed probe, 10 minutes
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 10 * 60 * 1000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static final ImageProbeCache INSTANCE = new ImageProbeCache();
+
+	/**
+	 * Probes by image URL
+	 */
+	private final ExpiringLruCache<String, Probe> _cache;
+
+	/**
+	 * Time to live of failed probes
+	 */
+	private volatile long _negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+
+	/**
+	 * Whether the cache is consulted at all
+	 */
+	private volatile boolean _enabled = true;
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Image probe cache
+	 */
+	public static ImageProbeCache getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private ImageProbeCache() {
+		_cache = new ExpiringLruCache<String, Probe>(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+	}
+
+	/**
+	 * Look up a probe
+	 * @param imageUrl	Image URL
+	 * @return			Probe, null if not cached or disabled
+	 */
+	public Probe get(String imageUrl) {
+		if (!_enabled || imageUrl == null || imageUrl.isEmpty())
+			return null;
+		return _cache.get(imageUrl);
+	}
+
+	/**
+	 * Cache the result of a probe
+	 * @param imageUrl	Image URL
+	 * @param width		Width, AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM if unknown
+	 * @param height	Height, AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM if unknown
+	 * @param fileSize	File size in bytes, as reported by the server
+	 */
+	public void put(String imageUrl, int width, int height, int fileSize) {
+		if (!_enabled || imageUrl == null || imageUrl.isEmpty())
+			return;
+		Probe probe = new Probe(width, height, fileSize);
+		if (probe.isFailed()) {
+			_cache.put(imageUrl, probe, _negativeTtlMillis);
+		} else {
+			_cache.put(imageUrl, probe);
+		}
+	}
+
+	/**
+	 * Drop all cached probes
+	 */
+	public void clear() {
+		_cache.clear();
+	}
+
+	/**
+	 * Enable or disable the cache, disabling also clears it
+	 * @param enabled	True to enable
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		if (!enabled)
+			_cache.clear();
+	}
+
+	/**
+	 * Whether the cache is consulted
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * Set the maximum number of cached probes, evicting the least recently used above it
+	 * @param maxSize	Maximum number of entries
+	 */
+	public void setMaxSize(int maxSize) {
+		_cache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Set the time to live of successful probes cached from now on
+	 * @param ttlMillis	Time to live in milliseconds
+	 */
+	public void setTtlMillis(long ttlMillis) {
+		_cache.setTtlMillis(ttlMillis);
+	}
+
+	/**
+	 * Set the time to live of failed probes cached from now on
+	 * @param negativeTtlMillis	Time to live in milliseconds
+	 */
+	public void setNegativeTtlMillis(long negativeTtlMillis) {
+		_negativeTtlMillis = negativeTtlMillis;
+	}
+
+	/**
+	 * Get the number of cached probes
+	 * @return Entry count
+	 */
+	public int size() {
+		return _cache.size();
+	}
+
+	/**
+	 * Get the number of lookups that found a probe
+	 * @return Hit count
+	 */
+	public long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	/**
+	 * Get the number of lookups that found no probe
+	 * @return Miss count
+	 */
+	public long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	/**
+	 * Get the ratio of hits to lookups
+	 * @return Hit rate between 0 and 1, 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		return _cache.getHitRate();
+	}
+
+	/**
+	 * Immutable probe result
+	 */
+	public static class Probe {
+		private final int _width;
+		private final int _height;
+		private final int _fileSize;
+
+		Probe(int width, int height, int fileSize) {
+			_width = width;
+			_height = height;
+			_fileSize = fileSize;
+		}
+
+		/**
+		 * Get the probed width
+		 * @return Width in pixels, negative if the probe failed
+		 */
+		public int getWidth() {
+			return _width;
+		}
+
+		/**
+		 * Get the probed height
+		 * @return Height in pixels, negative if the probe failed
+		 */
+		public int getHeight() {
+			return _height;
+		}
+
+		/**
+		 * Get the probed file size
+		 * @return Size in bytes, -1 or 0 if unknown
+		 */
+		public int getFileSize() {
+			return _fileSize;
+		}
+
+		/**
+		 * Whether the probe found no dimensions, e.g. dead, oversized or undecodable images
+		 * @return True if failed
+		 */
+		public boolean isFailed() {
+			return _width < 0 || _height < 0;
+		}
+	}
+}
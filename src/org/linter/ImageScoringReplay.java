@@ -0,0 +1,121 @@
+package org.linter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.htmlparser.jericho.Source;
+
+/**
+ * Replays a corpus of saved pages through AlgorithmicImageSelector, reporting the
+ * selection time of each page and how often the expected preview image was selected
+ *
+ * The corpus file holds one page per line, tab separated: the saved HTML file, relative
+ * to the corpus file, the page URL, and the expected preview image URL, empty if none.
+ * Lines starting with # are ignored.
+ *
+ * Usage: ImageScoringReplay [-offline] corpus.tsv [rules.properties]
+ * With -offline no image is downloaded, candidates without dimensions in the markup are
+ * skipped. The image probe cache is disabled, so every page is scored on its own.
+ */
+public class ImageScoringReplay {
+
+	/**
+	 * Run the replay
+	 * @param args	Options, corpus file and optional rules file
+	 */
+	public static void main(String[] args) throws Exception {
+		int arg = 0;
+		if (arg < args.length && args[arg].equals("-offline")) {
+			AlgorithmicImageSelector.setProbeImages(false);
+			arg++;
+		}
+		if (arg >= args.length) {
+			System.out.println("Usage: ImageScoringReplay [-offline] corpus.tsv [rules.properties]");
+			System.exit(1);
+		}
+
+		ImageProbeCache.getInstance().setEnabled(false);
+
+		File corpus = new File(args[arg++]);
+		if (arg < args.length) {
+			AlgorithmicImageSelector.setScoringRules(ImageScoringRules.load(new File(args[arg])));
+		}
+
+		List<Long> times = new ArrayList<Long>();
+		int correct = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(corpus));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty() || line.startsWith("#"))
+					continue;
+
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 2) {
+					System.out.println("Skipping malformed line: " + line);
+					continue;
+				}
+				String pageUrl = fields[1].trim();
+				String expected = (fields.length > 2) ? fields[2].trim() : "";
+
+				Source source;
+				InputStream in = new FileInputStream(new File(corpus.getAbsoluteFile().getParentFile(), fields[0].trim()));
+				try {
+					source = new Source(in);
+				} finally {
+					in.close();
+				}
+				HtmlMetaIndex index = new HtmlMetaIndex(source);
+
+				long start = System.nanoTime();
+				String selected = new AlgorithmicImageSelector(index, getProviderUrl(pageUrl), "[" + pageUrl + "] ").getPreviewUrl();
+				long elapsed = System.nanoTime() - start;
+
+				boolean match = expected.equals(selected);
+				if (match)
+					correct++;
+				times.add(elapsed);
+				System.out.println(String.format("%8.3f ms\t%s\t%s\t%s", elapsed / 1e6, match ? "OK" : "MISS", pageUrl, selected));
+			}
+		} finally {
+			reader.close();
+		}
+
+		if (times.isEmpty()) {
+			System.out.println("No pages replayed");
+			return;
+		}
+
+		long total = 0;
+		for (long time : times) {
+			total += time;
+		}
+		Collections.sort(times);
+		System.out.println(String.format("Pages: %d  Accuracy: %.1f%% (%d)  Mean: %.3f ms  p50: %.3f ms  p95: %.3f ms  Max: %.3f ms",
+				times.size(), 100.0 * correct / times.size(), correct, total / 1e6 / times.size(),
+				percentile(times, 0.50) / 1e6, percentile(times, 0.95) / 1e6, times.get(times.size() - 1) / 1e6));
+	}
+
+	/**
+	 * Provider URL of a page, scheme and authority
+	 */
+	private static String getProviderUrl(String pageUrl) {
+		URI uri = URI.create(pageUrl);
+		return uri.getScheme() + "://" + uri.getRawAuthority();
+	}
+
+	/**
+	 * Nearest rank percentile of sorted times
+	 */
+	private static long percentile(List<Long> sorted, double fraction) {
+		int rank = (int) Math.ceil(fraction * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+}
@@ -0,0 +1,365 @@
+package org.linter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compiled rules scoring the candidate images of AlgorithmicImageSelector
+ *
+ * Rules are read from properties and compiled into matchers and weight tables once;
+ * instances are immutable and shared by all selections. Keys not given keep their
+ * default, the rules the selector always used:
+ *
+ * <pre>
+ * url.blacklist		Image URL parts excluding an image, case-sensitive
+ * duplicate.threshold	Images whose dimensions occur this often are removed
+ * size.ads				Advertisement sizes as widthxheight, scored size.ads.weight
+ * size.small.below		Images smaller in both dimensions score size.small.weight once
+ * 						for every advertisement size they do not match
+ * name.terms			Id and Class terms as term:weight, each scored once per image,
+ * 						at most 64 terms
+ * extension.preferred	Preferred URL extensions, scored extension.weight once
+ * largest.weight		Score of the first of the largest images
+ * </pre>
+ *
+ * Lists are comma separated. The rules of the file named by the linter.imageScoringRules
+ * system property, if any, are used from startup.
+ */
+public class ImageScoringRules {
+
+	/**
+	 * Log4J Logger
+	 */
+	static private Logger logger = Logger.getLogger(ImageScoringRules.class);
+
+	/**
+	 * System property naming the rules file used from startup
+	 */
+	public static final String RULES_PROPERTY = "linter.imageScoringRules";
+
+	/**
+	 * Default blacklist, a few choices from massive list on http://someonewhocares.org/hosts/
+	 */
+	private static final String[] DEFAULT_URL_BLACKLIST = {
+		"adfarm.mediaplex.com",
+		"adserver.com",
+		"ak.imgfarm.com",
+		"apmebf.com",
+		"click.linksynergy.com",
+		"doubleclick.net",
+		"fastclick.net",
+		"global.msads.net",
+		"intellitxt.com",
+		"lads.myspace.com",
+		"refer.ccbill.com",
+		"rmads.msn.com",
+		"tkqlhce.com",
+		"transfer.go.com",
+
+		"http://ad.",
+		"http://ads.",
+		"http://banner.",
+		"http://banners."
+	};
+
+	/**
+	 * Default standard advertisement sizes, http://en.wikipedia.org/wiki/Web_banner
+	 */
+	private static final String[] DEFAULT_AD_SIZES = {
+		// Rectangles, Pop-Ups
+		"300x250",	// Medium Rectangle
+		"250x250",	// Square Pop-Up
+		"240x400",	// Vertical Rectangle
+		"336x280",	// Large Rectangle
+		"180x150",	// Rectangle
+		"300x100",	// 3:1 Rectangle
+		"720x300",	// Pop-Under
+
+		// Banners and Buttons
+		"468x60",	// Full Banner
+		"234x60",	// Half Banner
+		"88x31",	// Micro Bar
+		"120x90",	// Button 1
+		"120x60",	// Button 2
+		"120x240",	// Vertical Banner
+		"125x125",	// Square Button
+		"728x90",	// Leaderboard
+
+		// Skyscrapers
+		"160x600",	// Wide Skyscraper
+		"120x600",	// Skyscraper
+		"300x600"	// Half-Page Ad
+	};
+
+	/**
+	 * Default Id and Class terms, commonly associated with non-preview images (e.g. buttons,
+	 * banners) and with preview images
+	 */
+	private static final String[] DEFAULT_NAME_TERMS = {
+		"button:-0.1",
+		"icon:-0.1",
+		"yt:-0.1",
+		"uix:-0.1",
+		"avatar:-0.1",
+		"arrow:-0.1",
+		"addto:-0.1",
+		"comment:-0.1",
+		"img:-0.1",
+		"author:-0.1",
+		"post:-0.1",
+		"uloaded:-0.1",
+		"imagecache:-0.1",
+		"watch:-0.1",
+		"border:-0.1",
+		"thumbnail:-0.1",
+		"sidebarimage:-0.1",
+		"attachment:-0.1",
+		"trail:-0.1",
+		"logo:-0.1",
+
+		"photo:0.1",
+		"full:0.1",
+		"main:0.1"
+	};
+
+	/**
+	 * Default rules
+	 */
+	private static final ImageScoringRules DEFAULT = compile(new Properties());
+
+	/**
+	 * Image URL parts excluding an image
+	 */
+	private final AhoCorasickMatcher _urlBlacklist;
+
+	/**
+	 * Minimum occurrences of the same dimensions for removal
+	 */
+	private final int _duplicateThreshold;
+
+	/**
+	 * Sorted dimension keys of advertisement sizes
+	 */
+	private final long[] _adSizes;
+	private final float _adSizeWeight;
+
+	/**
+	 * Small images, smaller than _smallBelow in both dimensions
+	 */
+	private final int _smallBelow;
+	private final float _smallWeight;
+
+	/**
+	 * Id and Class terms and their weights by term index
+	 */
+	private final AhoCorasickMatcher _nameTerms;
+	private final float[] _nameWeights;
+
+	/**
+	 * Preferred extensions
+	 */
+	private final String[] _preferredExtensions;
+	private final float _extensionWeight;
+
+	/**
+	 * Score of the largest image
+	 */
+	private final float _largestWeight;
+
+
+
+	/**
+	 * Get the default rules
+	 * @return Default rules
+	 */
+	public static ImageScoringRules getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Load rules from a properties file
+	 * @param file	Rules file
+	 * @return		Compiled rules
+	 * @throws IOException	If the file cannot be read
+	 * @throws IllegalArgumentException	If a rule is malformed
+	 */
+	public static ImageScoringRules load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return compile(properties);
+	}
+
+	/**
+	 * Load the rules named by the linter.imageScoringRules system property
+	 * @return Compiled rules, the defaults if none are named or they cannot be loaded
+	 */
+	public static ImageScoringRules loadConfigured() {
+		String path = System.getProperty(RULES_PROPERTY);
+		if (path == null)
+			return getDefault();
+
+		try {
+			ImageScoringRules rules = load(new File(path));
+			logger.info("Loaded image scoring rules from " + path);
+			return rules;
+		} catch (Exception e) {
+			logger.error("Unable to load image scoring rules from " + path + ", using defaults: " + e);
+			return getDefault();
+		}
+	}
+
+	/**
+	 * Compile rules, keys not given keep their default
+	 * @param properties	Rules
+	 * @return				Compiled rules
+	 * @throws IllegalArgumentException	If a rule is malformed
+	 */
+	public static ImageScoringRules compile(Properties properties) {
+		return new ImageScoringRules(properties);
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private ImageScoringRules(Properties properties) {
+		_urlBlacklist = new AhoCorasickMatcher(getList(properties, "url.blacklist", DEFAULT_URL_BLACKLIST));
+		_duplicateThreshold = Integer.parseInt(properties.getProperty("duplicate.threshold", "3").trim());
+
+		String[] adSizes = getList(properties, "size.ads", DEFAULT_AD_SIZES);
+		_adSizes = new long[adSizes.length];
+		for (int i = 0; i < adSizes.length; i++) {
+			int x = adSizes[i].indexOf('x');
+			if (x < 0)
+				throw new IllegalArgumentException("Invalid size, expected widthxheight: " + adSizes[i]);
+			_adSizes[i] = getDimensionKey(Integer.parseInt(adSizes[i].substring(0, x).trim()), Integer.parseInt(adSizes[i].substring(x + 1).trim()));
+		}
+		Arrays.sort(_adSizes);
+		_adSizeWeight = getWeight(properties, "size.ads.weight", "-0.1");
+
+		_smallBelow = Integer.parseInt(properties.getProperty("size.small.below", "75").trim());
+		_smallWeight = getWeight(properties, "size.small.weight", "-0.1");
+
+		String[] nameTerms = getList(properties, "name.terms", DEFAULT_NAME_TERMS);
+		if (nameTerms.length > AhoCorasickMatcher.MAX_STRINGS)
+			throw new IllegalArgumentException("At most " + AhoCorasickMatcher.MAX_STRINGS + " name terms: " + nameTerms.length);
+		String[] terms = new String[nameTerms.length];
+		_nameWeights = new float[nameTerms.length];
+		for (int i = 0; i < nameTerms.length; i++) {
+			int colon = nameTerms[i].lastIndexOf(':');
+			if (colon < 0)
+				throw new IllegalArgumentException("Invalid name term, expected term:weight: " + nameTerms[i]);
+			// Attributes are lowercased before matching
+			terms[i] = nameTerms[i].substring(0, colon).trim().toLowerCase();
+			_nameWeights[i] = Float.parseFloat(nameTerms[i].substring(colon + 1).trim());
+		}
+		_nameTerms = new AhoCorasickMatcher(terms);
+
+		_preferredExtensions = getList(properties, "extension.preferred", new String[] { ".jpg" });
+		_extensionWeight = getWeight(properties, "extension.weight", "0.1");
+		_largestWeight = getWeight(properties, "largest.weight", "0.1");
+	}
+
+	/**
+	 * Determine if an image URL is blacklisted
+	 * @param url	Image URL
+	 * @return		True if the image must not be used
+	 */
+	public boolean isBlacklisted(String url) {
+		return _urlBlacklist.matchesAny(url);
+	}
+
+	/**
+	 * Get the minimum occurrences of the same dimensions for removal
+	 * @return Image count
+	 */
+	public int getDuplicateThreshold() {
+		return _duplicateThreshold;
+	}
+
+	/**
+	 * Score an image by size, names and extension, in this order
+	 * @param image	Candidate image
+	 */
+	public void score(AlgorithmicImageItem image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean small = width > 0 && height > 0 && width < _smallBelow && height < _smallBelow;
+
+		if (Arrays.binarySearch(_adSizes, getDimensionKey(width, height)) >= 0) {
+			image.addToScore(_adSizeWeight);
+			if (small)
+				addToScore(image, _smallWeight, _adSizes.length - 1);
+		} else if (small) {
+			addToScore(image, _smallWeight, _adSizes.length);
+		}
+
+		// Each term counts once, whether found in the Id, the Class or both
+		long terms = _nameTerms.match(image.getId().toLowerCase()) | _nameTerms.match(image.getClassName().toLowerCase());
+		for (; terms != 0; terms &= terms - 1) {
+			image.addToScore(_nameWeights[Long.numberOfTrailingZeros(terms)]);
+		}
+
+		String url = image.getUrl();
+		for (String extension : _preferredExtensions) {
+			if (url.endsWith(extension) && url.lastIndexOf('.') == url.length() - extension.length()) {
+				image.addToScore(_extensionWeight);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Score the first of the largest images, after all images were scored
+	 * @param image	Largest image
+	 */
+	public void scoreLargest(AlgorithmicImageItem image) {
+		image.addToScore(_largestWeight);
+	}
+
+	/**
+	 * Key used for matching images with like dimensions
+	 * @return Width in the high and height in the low 32 bits
+	 */
+	static long getDimensionKey(int width, int height) {
+		return ((long) width << 32) | (height & 0xffffffffL);
+	}
+
+	/**
+	 * Add to the score of an image repeatedly, rounding as the same number of single additions
+	 */
+	private static void addToScore(AlgorithmicImageItem image, float weight, int times) {
+		for (int i = 0; i < times; i++) {
+			image.addToScore(weight);
+		}
+	}
+
+	private static String[] getList(Properties properties, String key, String[] defaults) {
+		String value = properties.getProperty(key);
+		if (value == null)
+			return defaults;
+
+		List<String> list = new ArrayList<String>();
+		for (String item : value.split(",")) {
+			if (!item.trim().isEmpty())
+				list.add(item.trim());
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	private static float getWeight(Properties properties, String key, String defaultValue) {
+		return Float.parseFloat(properties.getProperty(key, defaultValue).trim());
+	}
+}
@@ -27,6 +27,22 @@ public class LintedData {
 		_data = new HashMap<String, Object>();
 	}
 
+	/**
+	 * Copy constructor
+	 * @param source	LintedData to copy, values are shared
+	 */
+	public LintedData( LintedData source ) {
+		_data = new HashMap<String, Object>( source.getData() );
+	}
+	
+	/**
+	 * Create a copy whose map can be modified independently, values are shared
+	 * @return Copy of this object
+	 */
+	public LintedData copy() {
+		return new LintedData( this );
+	}
+
 	/**
 	 * Get the meta data hash map
 	 * @return HashMap<String,Object> meta data
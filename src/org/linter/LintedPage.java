@@ -1,16 +1,17 @@
 package org.linter;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.Proxy;
 import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +24,8 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import net.htmlparser.jericho.Source;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -36,6 +39,11 @@ public class LintedPage {
 	 */
 	static private Logger logger = Logger.getLogger(LintedPage.class);
 	
+	/**
+	 * Log4J Logger of the slow request log, can be routed apart from the rest
+	 */
+	static private Logger slowLogger = Logger.getLogger(LintedPage.class.getName() + ".slow");
+	
 	/**
 	 * Pattern for matching specific parts of URLs
 	 */
@@ -75,10 +83,65 @@ public class LintedPage {
 	 */
 	public static final int HTTP_MAX_CONTENT_LENGTH = 1048576; 	// 1 MB in bytes 
 	
+	/**
+	 * Maximum number of decoded bytes read from a page, larger pages are truncated
+	 */
+	private static volatile long _maxContentLength = HTTP_MAX_CONTENT_LENGTH;
+	
 	/*
-	 * Trust manager for SSL
+	 * SSL context accepting all certificates
+	 */
+	private static SSLContext SSL_CONTEXT = null;
+	
+	/**
+	 * Persistent store consulted before processing, null if none
+	 */
+	private static volatile LintedPageStore _resultStore = null;
+	
+	/**
+	 * Whether redirects of all URLs are resolved with HEAD requests, not only of URL shorteners
+	 */
+	private static volatile boolean _headRedirects = false;
+	
+	/**
+	 * Pages processed slower than this are logged with their profile, 0 to disable
+	 */
+	private static volatile long _slowRequestThresholdMillis = 0;
+	
+	/**
+	 * Characters of the raw page kept for the slow request log
+	 */
+	public static final int SLOW_REQUEST_HEAD_CHARS = 2048;
+	
+	/**
+	 * Whether concurrent requests for the same URL are coalesced into one
+	 */
+	private static volatile boolean _coalesceRequests = true;
+	
+	/**
+	 * Pages being processed, by canonical original URL
 	 */
-	private static TrustManager[] TRUST_MANAGER = null;
+	private static final SingleFlight<LintedPage> PROCESSING = new SingleFlight<LintedPage>();
+	
+	/**
+	 * Pages being scraped, by canonical destination URL
+	 */
+	private static final SingleFlight<LintedPage> SCRAPING = new SingleFlight<LintedPage>();
+	
+	/**
+	 * Known URL shortener hosts, their redirects are resolved with HEAD requests
+	 */
+	private static final Set<String> SHORTENER_HOSTS = ConcurrentHashMap.newKeySet();
+	static {
+		SHORTENER_HOSTS.addAll(Arrays.asList(
+				"bit.ly", "j.mp", "t.co", "goo.gl", "tinyurl.com", "ow.ly", "is.gd", "buff.ly", "dlvr.it",
+				"fb.me", "lnkd.in", "amzn.to", "wp.me", "su.pr", "tr.im", "youtu.be", "tiny.cc", "cli.gs"));
+	}
+	
+	/**
+	 * Fetcher used by pages without their own
+	 */
+	private static PageFetcher _defaultFetcher = null;
 	
 	/**
 	 * Parse OK State
@@ -120,6 +183,20 @@ public class LintedPage {
 	 */
 	private long _processingTime;
 	
+	/**
+	 * Timing and cost of each processing step
+	 */
+	private final PageProfile _profile = new PageProfile();
+	
+	/**
+	 * Optional per-host request limit, shared with other pages
+	 */
+	private HostThrottle _hostThrottle;
+	
+	/**
+	 * Fetcher for this page, null to use the default
+	 */
+	private PageFetcher _fetcher;
 	 
 		
 	/**
@@ -139,12 +216,52 @@ public class LintedPage {
 	public void process() {
 		final long startTime = System.nanoTime();
 		final long endTime;
+		PageProfile.setCurrent(_profile);
 		try {
 			processRunner();
 		} finally {
 		  endTime = System.nanoTime();
+		  PageProfile.setCurrent(null);
 		}
 		_processingTime = endTime - startTime;
+		_profile.setTotalTime(_processingTime);
+		LinterMetrics.getInstance().recordProcess(_processingTime, _parseOk);
+		
+		long threshold = _slowRequestThresholdMillis;
+		if (threshold > 0 && _processingTime >= TimeUnit.MILLISECONDS.toNanos(threshold)) {
+			logSlowRequest();
+		}
+	}
+	
+	/**
+	 * Log the profile and the beginning of the raw page
+	 */
+	private void logSlowRequest() {
+		StringBuilder sb = new StringBuilder("Slow request: ");
+		sb.append(_originalUrl).append(" in ").append(getProcessingTimeMillis()).append(" ms\n");
+		sb.append(_profile.toDebugString());
+		String rawHead = _profile.getRawHead();
+		if (rawHead != null) {
+			sb.append("\tRAW HEAD:\n").append(rawHead).append('\n');
+		}
+		slowLogger.warn(sb.toString());
+	}
+	
+	/**
+	 * Set the processing time above which pages are logged with their profile and the
+	 * beginning of the raw page, to the logger org.linter.LintedPage.slow
+	 * @param thresholdMillis	Threshold in ms, 0 to disable, the default
+	 */
+	public static void setSlowRequestThreshold(long thresholdMillis) {
+		_slowRequestThresholdMillis = thresholdMillis;
+	}
+	
+	/**
+	 * Get the processing time above which pages are logged with their profile
+	 * @return Threshold in ms, 0 if disabled
+	 */
+	public static long getSlowRequestThreshold() {
+		return _slowRequestThresholdMillis;
 	}
 	
 	/***
@@ -153,49 +270,268 @@ public class LintedPage {
 	private void processRunner() {
 		logger.info("Processing URL: " + _originalUrl);
 		
-		logger.debug("Expanding any shortened URLs...");
-		if (followUrlRedirects()) {
+		// Serve a result persisted by this or a previous process
+		LintedPageStore store = _resultStore;
+		if (store != null) {
+			LintedPage stored = store.get(_originalUrl);
+			if (stored != null) {
+				logger.debug("Serving stored result");
+				copyResultFrom(stored);
+				replaceOriginalUrlVariant();
+				return;
+			}
+		}
+		
+		// Another request may already be processing this URL
+		String key = getCoalesceKey(_originalUrl);
+		if (key != null) {
+			SingleFlight.Flight<LintedPage> flight = PROCESSING.join(key);
+			if (flight != null) {
+				logger.debug("Waiting for the result of another request");
+				LinterMetrics.getInstance().recordPageCoalesced();
+				LintedPage result = awaitFlight(flight);
+				if (result != null) {
+					copyResultFrom(result);
+					replaceOriginalUrlVariant();
+				}
+				return;
+			}
+		}
+		
+		LintedPage result = null;
+		try {
+			resolveAndScrape();
+			result = copyResult();
+		} finally {
+			if (key != null) {
+				if (result == null) {
+					// Failed with an exception, waiters only learn that much
+					result = new LintedPage(_originalUrl);
+					result._parseError = "Processing failed";
+				}
+				PROCESSING.complete(key, result);
+			}
+		}
+		
+		if (store != null && getParseOk()) {
+			store.put(this);
+		}
+	}
+	
+	/**
+	 * Resolve the destination of the original URL and scrape it
+	 */
+	private void resolveAndScrape() {
+		if (useHeadRedirects()) {
+			logger.debug("Expanding any shortened URLs...");
+			if (followUrlRedirects()) {
+				logger.debug("Scraping & cleaning HTML...");
+				scrapeMetadata();
+			}
+		} else if (useCachedRedirects()) {
 			logger.debug("Scraping & cleaning HTML...");
 			scrapeMetadata();
+		} else {
+			logger.debug("Following redirects and scraping HTML...");
+			followRedirects(true);
 		}
 	}
 	
+	/**
+	 * Set whether concurrent requests for the same URL are coalesced: while a page is
+	 * processed, pages of the same canonical original URL wait for its result, and pages
+	 * redirected to a destination being scraped wait for that scrape. Enabled by default.
+	 * @param coalesceRequests	True to coalesce requests
+	 */
+	public static void setCoalesceRequests(boolean coalesceRequests) {
+		_coalesceRequests = coalesceRequests;
+	}
+	
+	/**
+	 * Whether concurrent requests for the same URL are coalesced
+	 * @return True if coalesced
+	 */
+	public static boolean getCoalesceRequests() {
+		return _coalesceRequests;
+	}
+	
+	/**
+	 * Get the key coalescing requests for a URL
+	 * @param url	URL
+	 * @return		Canonical URL, null if requests are not coalesced
+	 */
+	private static String getCoalesceKey(String url) {
+		return (_coalesceRequests && url != null) ? URLParser.canonicalize(url) : null;
+	}
+	
+	/**
+	 * Wait for the page processed or scraped by another request
+	 * @param flight	Running flight
+	 * @return			Result of the other page, null if interrupted
+	 */
+	private LintedPage awaitFlight(SingleFlight.Flight<LintedPage> flight) {
+		try {
+			return flight.await();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			_parseError = "Interrupted while waiting for another request";
+			logger.error("[" + _originalUrl + "] " + _parseError);
+			return null;
+		}
+	}
+	
+	/**
+	 * Copy the processing result of this page, safe to share with other threads
+	 * @return Processed page
+	 */
+	private LintedPage copyResult() {
+		LintedPage result = new LintedPage(_originalUrl);
+		result.copyResultFrom(this);
+		return result;
+	}
+	
 	/***
 	 * Follows the originalUrl to its destination, saving any aliases along the way. This is useful to expand
 	 * URL shortening services.
 	 * @return True if successful, false otherwise
 	 */
 	public boolean followUrlRedirects() {
+		return useCachedRedirects() || followRedirects(false);
+	}
+	
+	/**
+	 * Set whether redirects are always resolved with a HEAD request chain before the page
+	 * is requested, instead of only for URL shorteners
+	 * @param headRedirects	True to always resolve redirects with HEAD requests
+	 */
+	public static void setHeadRedirects(boolean headRedirects) {
+		_headRedirects = headRedirects;
+	}
+	
+	/**
+	 * Register a URL shortener host, whose redirects are resolved with HEAD requests
+	 * @param host	Host name, e.g. bit.ly
+	 */
+	public static void addShortenerHost(String host) {
+		SHORTENER_HOSTS.add(host.toLowerCase());
+	}
+	
+	/**
+	 * Whether the original URL is resolved with HEAD requests before scraping
+	 * @return True for URL shorteners or if configured for all URLs
+	 */
+	private boolean useHeadRedirects() {
+		if (_headRedirects)
+			return true;
+		String host = getHost(_originalUrl);
+		return host != null && SHORTENER_HOSTS.contains(host.toLowerCase());
+	}
+	
+	/**
+	 * Take over a recent resolution of the original URL, if any
+	 * @return True if a cached resolution was used
+	 */
+	private boolean useCachedRedirects() {
+		RedirectCache.Resolution cached = RedirectCache.getInstance().get(_originalUrl);
+		if (cached == null)
+			return false;
+		
+		logger.trace("Redirect chain cache hit: " + _originalUrl + " -> " + cached.getDestinationUrl());
+		_redirectUrlList.addAll(cached.getRedirectUrlList());
+		_aliases = new ArrayList<String>(cached.getAliases());
+		_destinationUrl = cached.getDestinationUrl();
+		replaceOriginalUrlVariant();
+		return true;
+	}
+	
+	/**
+	 * Put the original URL in place of another variant of it, e.g. with tracking parameters,
+	 * heading a redirect chain taken over from a cache or another page
+	 */
+	private void replaceOriginalUrlVariant() {
+		String variant = _redirectUrlList.isEmpty() ? null : _redirectUrlList.get(0);
+		if (variant == null || variant.equals(_originalUrl))
+			return;
+		
+		_redirectUrlList.set(0, _originalUrl);
+		if (!_aliases.isEmpty() && _aliases.get(0).equals(variant))
+			_aliases.set(0, _originalUrl);
+		if (variant.equals(_destinationUrl))
+			_destinationUrl = _originalUrl;
+	}
+	
+	/**
+	 * Follow redirects from the original URL to its destination, saving any aliases along the way
+	 * 
+	 * With scrape set every hop is a GET, and the response of the destination is scraped
+	 * right away instead of being requested again.
+	 * 
+	 * @param scrape	True to GET each hop and scrape the destination, false to only resolve it with HEAD
+	 * @return			True if the destination was resolved
+	 */
+	private boolean followRedirects(boolean scrape) {
+		final long startTime = System.nanoTime();
 		ArrayList<String> aliases = new ArrayList<String>();
 		
 		String currentLocation = _originalUrl;
 		String lastLocation = null;
 		
+		// Destination response still to be scraped, holding its host slot
+		FetchResponse destinationResponse = null;
+		MetadataCache.Entry destinationCached = null;
+		LinterEvents.PageFetch destinationFetchEvent = null;
+		
 		while (currentLocation != null) {
+			LinterEvents.RedirectHop hopEvent = new LinterEvents.RedirectHop();
+			hopEvent.begin();
+			String hopMethod = scrape ? FetchRequest.METHOD_GET : FetchRequest.METHOD_HEAD;
+			String hopOutcome = null;
+			String hopLocation = null;
+			int hopStatus = -1;
+			final String hopUrl = currentLocation;
 			try {				
 				URL url = new URL(currentLocation);
 				_redirectUrlList.add( currentLocation );
 				
 				logger.trace("Following " + currentLocation + "...");										
 			    
-				// Lazy initialize the trust manager
-				if( TRUST_MANAGER == null ) {
-					initTrustManager();
+				String nextLocation;
+				FetchResponse response = null;
+				MetadataCache.Entry cached = null;
+				LinterEvents.PageFetch fetchEvent = null;
+				boolean holdForScrape = false;
+				acquireHost(url.getHost());
+				try {
+					if (scrape) {
+						// Redirect hops are never scraped, so only the destination counts as a request
+						cached = MetadataCache.getInstance().peek(currentLocation);
+						// Any GET hop may turn out to be the destination, so each one times its fetch
+						fetchEvent = new LinterEvents.PageFetch();
+						fetchEvent.begin();
+						response = fetchTimed(createPageRequest(currentLocation, lastLocation, cached));
+						int statusCode = response.getStatusCode();
+						hopStatus = statusCode;
+						nextLocation = (statusCode >= 300 && statusCode < 400 && statusCode != HttpURLConnection.HTTP_NOT_MODIFIED) ? response.getHeader("Location") : null;
+						holdForScrape = (nextLocation == null);
+					} else {
+						FetchRequest request = new FetchRequest(currentLocation, FetchRequest.METHOD_HEAD); // only want the headers
+						if (lastLocation != null)
+							request.setHeader("Referer", lastLocation);
+						
+						FetchResponse headResponse = fetchTimed(request);
+						hopStatus = headResponse.getStatusCode();
+						nextLocation = headResponse.getHeader("Location");
+						headResponse.close();
+					}
+				} finally {
+					// The destination response and its host slot are handed to the scrape
+					if (!holdForScrape) {
+						if (response != null)
+							response.close();
+						releaseHost(url.getHost());
+					}
 				}
 				
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection(Proxy.NO_PROXY);
-
-				connection.setInstanceFollowRedirects(false);
-				connection.setRequestMethod("HEAD"); // only want the headers
-				connection.setConnectTimeout(LintedPage.HTTP_CONNECT_TIMEOUT);
-				connection.setReadTimeout(LintedPage.HTTP_READ_TIMEOUT);
-				connection.setRequestProperty("User-Agent", LintedPage.HTTP_USER_AGENT);
-				if (lastLocation != null)
-					connection.setRequestProperty("Referer", lastLocation);
-				connection.connect();
-				
-				
-				String nextLocation = connection.getHeaderField("Location");
 				if (nextLocation != null) {
 					// Did we get a relative redirect?
 					if (!nextLocation.contains(LintedPage.RELATIVE_URL_TEST)) {
@@ -214,22 +550,30 @@ public class LintedPage {
 						nextLocation = prefix + nextLocation;
 					}
 					
+					hopLocation = nextLocation;
 					if (nextLocation.equals(currentLocation) || aliases.contains(nextLocation)) {
+						hopOutcome = "loop";
 						logger.trace("Discovered loop redirect. Not following redirect to " + nextLocation);
 						_destinationUrl = currentLocation;
 						currentLocation = null;
 					} else {
+						hopOutcome = "redirect";
 						logger.trace("Discovered redirect to " + nextLocation);
 						aliases.add(currentLocation);
 						lastLocation = currentLocation;
 						currentLocation = nextLocation;
 					}
 				} else {
+					hopOutcome = "destination";
 					logger.trace("URL resolved to its destination: " + currentLocation);
 					_destinationUrl = currentLocation;
 					currentLocation = null;
+					destinationResponse = response;
+					destinationCached = cached;
+					if (scrape)
+						MetadataCache.getInstance().recordLookup(_destinationUrl, cached != null);
+					destinationFetchEvent = fetchEvent;
 				}
-				connection.disconnect();
 			} catch (MalformedURLException ex) {
 				logger.error("Invalid URL [" + currentLocation + "]: " + ex);
 				_parseError = ex.toString();
@@ -238,14 +582,60 @@ public class LintedPage {
 				logger.error("IO Exception [" + currentLocation + "]: " + ioe);
 				_parseError = ioe.toString();
 				return false;
+			} catch (InterruptedException ie) {
+				// Keep the interrupt visible to the batch shutting down or cancelling this page
+				Thread.currentThread().interrupt();
+				_parseError = "Interrupted while waiting for host " + getHost(currentLocation);
+				logger.error("[" + currentLocation + "] " + _parseError);
+				return false;
 			} catch (Exception ex) {
 				logger.error("Exception [" + currentLocation + "]: " + ex);
 				_parseError = ex.toString();
 				return false;
+			} finally {
+				hopEvent.end();
+				if (hopEvent.shouldCommit()) {
+					hopEvent.url = hopUrl;
+					hopEvent.host = LinterEvents.getHost(hopUrl);
+					hopEvent.outcome = (hopOutcome != null) ? hopOutcome : _parseError;
+					hopEvent.method = hopMethod;
+					hopEvent.statusCode = hopStatus;
+					hopEvent.location = hopLocation;
+					hopEvent.commit();
+				}
 			}
 		}
 		
 		_aliases = aliases;
+		RedirectCache.getInstance().put(_originalUrl, _aliases, _redirectUrlList, _destinationUrl);
+		LinterMetrics.getInstance().recordRedirects(System.nanoTime() - startTime, aliases.size());
+		
+		if (scrape) {
+			if (destinationResponse != null) {
+				final String logPrefix = "[" + _destinationUrl + "] ";
+				final String host = getHost(_destinationUrl);
+				
+				// Another page may already be scraping this destination
+				String scrapeKey = getCoalesceKey(_destinationUrl);
+				SingleFlight.Flight<LintedPage> flight = (scrapeKey != null) ? SCRAPING.join(scrapeKey) : null;
+				if (flight != null) {
+					destinationResponse.close();
+					releaseHost(host);
+					takeOverScrape(logPrefix, flight);
+					return true;
+				}
+				
+				try {
+					scrapeResponse(logPrefix, host, checkPageResponse(logPrefix, destinationResponse, destinationCached), destinationCached, destinationFetchEvent);
+				} finally {
+					if (scrapeKey != null)
+						SCRAPING.complete(scrapeKey, copyResult());
+				}
+			} else {
+				// Redirect loop, scrape the last location like the HEAD resolution does
+				scrapeMetadata();
+			}
+		}
 
 		return true;
 	}
@@ -256,72 +646,148 @@ public class LintedPage {
 	public void scrapeMetadata() {		
 		final String logPrefix = "[" + this.getDestinationUrl() + "] ";
 		
-		logger.trace(logPrefix + "Downloading and scraping page contents...");
+		// Another page may already be scraping this destination
+		String scrapeKey = getCoalesceKey(this.getDestinationUrl());
+		if (scrapeKey != null) {
+			SingleFlight.Flight<LintedPage> flight = SCRAPING.join(scrapeKey);
+			if (flight != null) {
+				takeOverScrape(logPrefix, flight);
+				return;
+			}
+		}
 		
-		InputStream inStr = null;
-		HttpURLConnection connection = null;
 		try {
-			URL url = new URL(this.getDestinationUrl());
-			connection = (HttpURLConnection) url.openConnection(Proxy.NO_PROXY);
-			connection.setConnectTimeout(LintedPage.HTTP_CONNECT_TIMEOUT);
-			connection.setReadTimeout(LintedPage.HTTP_READ_TIMEOUT);
-			connection.setRequestProperty("User-Agent", LintedPage.HTTP_USER_AGENT);
-			connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-			connection.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+			logger.trace(logPrefix + "Downloading and scraping page contents...");
 			
-			String contentType = connection.getContentType();
-			if (contentType == null)
-				contentType = "unknown";
-			if (!contentType.toLowerCase().contains("text/html") && !contentType.toLowerCase().contains("text/plain")) {
-								
-				if( contentType.toLowerCase().contains("image/png") || contentType.toLowerCase().contains("image/jpeg") ) {
-					getMetaData().put( "preview_image_url", this.getDestinationUrl() );
-					_parseOk = true;
-				}
-				
-				logger.warn(logPrefix + "Not downloading or scraping page because content-type was: " + contentType);
+			final String host = getHost(this.getDestinationUrl());
+			try {
+				acquireHost(host);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				_parseError = "Interrupted while waiting for host " + host;
+				logger.error(logPrefix + _parseError);
 				return;
 			}
 			
-			int contentLength = connection.getContentLength();
-			if (contentLength > LintedPage.HTTP_MAX_CONTENT_LENGTH) {
-				logger.warn(logPrefix + "Not downloading or scraping page because content-length was too large: " + Integer.toString(contentLength) + " (max: " + Integer.toString(LintedPage.HTTP_MAX_CONTENT_LENGTH) + ")");
+			// A previous result for this destination can be revalidated instead of re-scraped
+			MetadataCache.Entry cached = MetadataCache.getInstance().get(this.getDestinationUrl());
+			
+			LinterEvents.PageFetch fetchEvent = new LinterEvents.PageFetch();
+			fetchEvent.begin();
+			scrapeResponse(logPrefix, host, downloadPage(logPrefix, cached), cached, fetchEvent);
+		} finally {
+			if (scrapeKey != null)
+				SCRAPING.complete(scrapeKey, copyResult());
+		}
+	}
+	
+	/**
+	 * Take over the scrape result of another page with the same destination, keeping the
+	 * redirect chain of this page
+	 * @param logPrefix	Logging prefix
+	 * @param flight	Running scrape of the other page
+	 */
+	private void takeOverScrape(String logPrefix, SingleFlight.Flight<LintedPage> flight) {
+		logger.trace(logPrefix + "Waiting for the scrape of another page");
+		LinterMetrics.getInstance().recordScrapeCoalesced();
+		LintedPage result = awaitFlight(flight);
+		if (result != null)
+			applyParseResult(result._metaData.copy(), result._parseOk, result._parseError);
+	}
+	
+	/**
+	 * Scrape a checked destination response, then release it and its host slot
+	 * @param logPrefix	Logging prefix
+	 * @param host		Host whose slot is held
+	 * @param response	Response from {@link #checkPageResponse}, null if there is nothing to scrape
+	 * @param cached		Cached result the request revalidated, may be null
+	 * @param fetchEvent	Begun flight recorder event of the fetch, committed once the body is read
+	 */
+	private void scrapeResponse(String logPrefix, String host, FetchResponse response, MetadataCache.Entry cached, LinterEvents.PageFetch fetchEvent) {
+		final String scrapeUrl = this.getDestinationUrl();
+		
+		// Hold the host slot until the parser has read the whole page
+		ServiceParser parser;
+		String etag;
+		String lastModified;
+		String fetchOutcome = null;
+		BoundedInputStream wireStr = null;
+		BoundedInputStream inStr = null;
+		try {
+			if (response == null) {
+				fetchOutcome = "not scraped";
 				return;
 			}
 			
-			String encoding = connection.getContentEncoding();
-			if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
-			    inStr = new GZIPInputStream(connection.getInputStream());
-			} else if (encoding != null && encoding.equalsIgnoreCase("deflate")) {
-			    inStr = new InflaterInputStream(connection.getInputStream(),
-			      new Inflater(true));
-			} else {
-			    inStr = connection.getInputStream();
+			if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				fetchOutcome = "not modified";
+				logger.trace(logPrefix + "Not modified, using cached meta data");
+				MetadataCache.getInstance().recordNotModified();
+				applyParseResult(cached.getMetaData(), cached.getParseOk(), cached.getParseError());
+				return;
 			}
-		} catch (FileNotFoundException fnf) {
-			_parseError = "HTTP ERROR 404";
-			logger.error(logPrefix + " " + _parseError);
-			return;
-		} catch (IOException ioe) {
+			etag = response.getHeader("ETag");
+			lastModified = response.getHeader("Last-Modified");
+			
+			// Counts the bytes received, before decompression
+			wireStr = new BoundedInputStream(response.getBody(), Long.MAX_VALUE);
 			try {
-				_parseError = "Unable to download page [HTTP ERROR " + Integer.toString(connection.getResponseCode()) + "]: " + ioe;
-			} catch (IOException e) {
-				// We'd get an ioexception on the above try{} clause if don't have a response code
-				_parseError = " Unable to download page: " + ioe;
+				inStr = new BoundedInputStream(getContentStream(response.getContentEncoding(), wireStr), _maxContentLength);
+			} catch (IOException ioe) {
+				_parseError = "Unable to decode page: " + ioe;
+				logger.error(logPrefix + " " + _parseError);
+				return;
+			}
+			
+			parser = ServiceParserChainManager.getInstance().getServiceParser( scrapeUrl );
+			final long readStart = System.nanoTime();
+			parser.setRawContent( inStr );
+			final long readTime = System.nanoTime() - readStart;
+			fetchOutcome = "read";
+			LinterMetrics.getInstance().recordSource(parser.getSourceTime());
+			LinterMetrics.getInstance().recordDownload(readTime - parser.getSourceTime(), wireStr.getCount(), inStr.getCount());
+			_profile.setDownload(readTime - parser.getSourceTime(), parser.getSourceTime(), wireStr.getCount(), inStr.getCount());
+			if (_slowRequestThresholdMillis > 0 && parser.getJerichoSource() != null) {
+				Source source = parser.getJerichoSource();
+				_profile.setRawHead(source.subSequence(0, Math.min(source.length(), SLOW_REQUEST_HEAD_CHARS)).toString());
+			}
+			if (inStr.isTruncated()) {
+				logger.warn(logPrefix + "Page truncated at " + Long.toString(inStr.getLimit()) + " bytes, scraping what was read");
+			}
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+			releaseHost(host);
+			
+			fetchEvent.end();
+			if (fetchEvent.shouldCommit()) {
+				fetchEvent.url = scrapeUrl;
+				fetchEvent.host = host;
+				fetchEvent.outcome = (fetchOutcome != null && _parseError == null) ? fetchOutcome : _parseError;
+				fetchEvent.statusCode = (response != null) ? response.getStatusCode() : -1;
+				fetchEvent.bytesRead = (wireStr != null) ? wireStr.getCount() : 0;
+				fetchEvent.bytesDecoded = (inStr != null) ? inStr.getCount() : 0;
+				fetchEvent.commit();
 			}
-			logger.error(logPrefix + " " + _parseError);
-			return;
-		} catch (Exception ex) {
-			logger.error(logPrefix + "Unable to download page: " + ex);
-			_parseError = ex.toString();
-			return;
 		}
 		
-		ServiceParser parser = ServiceParserChainManager.getInstance().getServiceParser( this.getDestinationUrl() );
-		parser.setRawContent( inStr );
 		parser.setRedirectUrlList( _redirectUrlList );
-		_parseOk = parser.parse();
-		_metaData = parser.getMetaData();
+		parser.setFetcher( getFetcher() );
+		boolean parseOk = parser.parseTimed();
+		MetadataCache.getInstance().put(scrapeUrl, parser.getMetaData(), parseOk, parser.getParseError(), etag, lastModified);
+		applyParseResult(parser.getMetaData(), parseOk, parser.getParseError());
+	}
+	
+	/**
+	 * Take over the result of a ServiceParser chain, fresh or cached
+	 * @param metaData		Scraped meta data
+	 * @param parseOk		Parse success
+	 * @param parseError	Parse error reported by the chain, may be null
+	 */
+	private void applyParseResult(LintedData metaData, boolean parseOk, String parseError) {
+		_parseOk = parseOk;
+		_metaData = metaData;
 
 		// Update the URL, if modified by the ServiceParser
 		String url = _metaData.getString( "url" );
@@ -336,12 +802,165 @@ public class LintedPage {
 		}
 		
 		// Get any parse error from the ServiceParser
-		String parseError = parser.getParseError();
 		if( parseError != null && !parseError.isEmpty() ) {
 			_parseError = parseError;
 		}
 	}
 	
+	/**
+	 * Request the destination URL and check that its content can be scraped
+	 * @param logPrefix	Logging prefix
+	 * @param cached	Cached result to revalidate, may be null
+	 * @return			Open response, 304 Not Modified for a valid cached result, null if the 
+	 * 					page should not or could not be scraped
+	 */
+	private FetchResponse downloadPage(String logPrefix, MetadataCache.Entry cached) {
+		FetchResponse response;
+		try {
+			response = fetchTimed(createPageRequest(this.getDestinationUrl(), null, cached));
+		} catch (IOException ioe) {
+			_parseError = " Unable to download page: " + ioe;
+			logger.error(logPrefix + " " + _parseError);
+			return null;
+		} catch (Exception ex) {
+			logger.error(logPrefix + "Unable to download page: " + ex);
+			_parseError = ex.toString();
+			return null;
+		}
+		
+		return checkPageResponse(logPrefix, response, cached);
+	}
+	
+	/**
+	 * Execute a page request, recording the time until its response headers
+	 * @param request	Request
+	 * @return			Open response
+	 */
+	private FetchResponse fetchTimed(FetchRequest request) throws IOException {
+		final long startTime = System.nanoTime();
+		int statusCode = -1;
+		try {
+			FetchResponse response = getFetcher().fetch(request);
+			statusCode = response.getStatusCode();
+			return response;
+		} finally {
+			final long time = System.nanoTime() - startTime;
+			LinterMetrics.getInstance().recordFetch(time);
+			_profile.addRequest(request.getUrl(), request.getMethod(), statusCode, time);
+		}
+	}
+	
+	/**
+	 * Create the GET request of a page to scrape
+	 * @param url		Page URL
+	 * @param referer	Referring URL, may be null
+	 * @param cached	Cached result to revalidate, may be null
+	 * @return			Request
+	 */
+	private static FetchRequest createPageRequest(String url, String referer, MetadataCache.Entry cached) {
+		FetchRequest request = new FetchRequest(url, FetchRequest.METHOD_GET);
+		request.setHeader("Accept-Encoding", "gzip, deflate");
+		request.setHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+		if (referer != null) {
+			request.setHeader("Referer", referer);
+		}
+		if (cached != null) {
+			request.setHeader("If-None-Match", cached.getEtag());
+			request.setHeader("If-Modified-Since", cached.getLastModified());
+		}
+		return request;
+	}
+	
+	/**
+	 * Check that the response of the destination URL can be scraped, closing it otherwise
+	 * @param logPrefix	Logging prefix
+	 * @param response	Open response
+	 * @param cached	Cached result the request revalidated, may be null
+	 * @return			The response, 304 Not Modified for a valid cached result, null if the 
+	 * 					page should not or could not be scraped
+	 */
+	private FetchResponse checkPageResponse(String logPrefix, FetchResponse response, MetadataCache.Entry cached) {
+		try {
+			if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				return response;
+			}
+			
+			String contentType = response.getContentType();
+			if (contentType == null)
+				contentType = "unknown";
+			if (!contentType.toLowerCase().contains("text/html") && !contentType.toLowerCase().contains("text/plain")) {
+								
+				if( contentType.toLowerCase().contains("image/png") || contentType.toLowerCase().contains("image/jpeg") ) {
+					getMetaData().put( "preview_image_url", this.getDestinationUrl() );
+					_parseOk = true;
+				}
+				
+				logger.warn(logPrefix + "Not downloading or scraping page because content-type was: " + contentType);
+				response.close();
+				return null;
+			}
+			
+			int statusCode = response.getStatusCode();
+			if (statusCode == HttpURLConnection.HTTP_NOT_FOUND) {
+				_parseError = "HTTP ERROR 404";
+				logger.error(logPrefix + " " + _parseError);
+				response.close();
+				return null;
+			} else if (statusCode >= 400) {
+				_parseError = "Unable to download page [HTTP ERROR " + Integer.toString(statusCode) + "]";
+				logger.error(logPrefix + " " + _parseError);
+				response.close();
+				return null;
+			}
+			
+			long contentLength = response.getContentLength();
+			if (contentLength > _maxContentLength) {
+				logger.trace(logPrefix + "Content-length " + Long.toString(contentLength) + " exceeds " + Long.toString(_maxContentLength) + ", only the beginning will be scraped");
+			}
+		} catch (Exception ex) {
+			logger.error(logPrefix + "Unable to download page: " + ex);
+			_parseError = ex.toString();
+			response.close();
+			return null;
+		}
+		
+		return response;
+	}
+	
+	/**
+	 * Set the maximum number of decoded bytes read from each page, counted after
+	 * decompression; the meta data of larger pages is scraped from their beginning
+	 * @param maxContentLength	Byte budget, HTTP_MAX_CONTENT_LENGTH by default
+	 */
+	public static void setMaxContentLength(long maxContentLength) {
+		_maxContentLength = maxContentLength;
+	}
+	
+	/**
+	 * Get the maximum number of decoded bytes read from each page
+	 * @return Byte budget
+	 */
+	public static long getMaxContentLength() {
+		return _maxContentLength;
+	}
+	
+	/**
+	 * Get a response body, decompressed according to its content encoding
+	 * @param encoding	Content-Encoding of the response, may be null
+	 * @param body		Response body
+	 * @return			Decoded page content
+	 */
+	private static InputStream getContentStream(String encoding, InputStream body) throws IOException {
+		if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
+		    return new GZIPInputStream(body);
+		} else if (encoding != null && encoding.equalsIgnoreCase("deflate")) {
+		    return new InflaterInputStream(body,
+		      new Inflater(true));
+		} else {
+		    return body;
+		}
+	}
+	
 	/**
 	 * Whether or not the parse completed successfully
 	 * @return True if successful
@@ -438,6 +1057,8 @@ public class LintedPage {
 			sb.append( "\tNo meta data parsed.\n" );
 		}
 		
+		sb.append("\tPROFILE:\n"); sb.append(_profile.toDebugString());
+		
 		sb.append("} in "); sb.append(this.getProcessingTimeForHumans()); sb.append(" s\n");
 		
 		return sb.toString();
@@ -452,12 +1073,55 @@ public class LintedPage {
 	}
 
 	/**
-	 * Initialize trust manager- does no checking, accepts all certificates
+	 * Set a per-host request limit shared with other pages, null to disable
+	 * @param hostThrottle	Host throttle
+	 */
+	public void setHostThrottle(HostThrottle hostThrottle) {
+		_hostThrottle = hostThrottle;
+	}
+	
+	/**
+	 * Wait for a request slot to the host, if throttled
+	 * @param host	Destination host
 	 */
-	private void initTrustManager() throws KeyManagementException {
+	private void acquireHost(String host) throws InterruptedException {
+		if (_hostThrottle != null)
+			_hostThrottle.acquire(host);
+	}
+	
+	/**
+	 * Release a request slot to the host, if throttled
+	 * @param host	Destination host
+	 */
+	private void releaseHost(String host) {
+		if (_hostThrottle != null)
+			_hostThrottle.release(host);
+	}
+	
+	/**
+	 * Get the host of a URL
+	 * @param url	URL
+	 * @return		Host, null if the URL is invalid
+	 */
+	private static String getHost(String url) {
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the SSL context used for all Linter connections- does no checking, accepts all certificates.
+	 * Also installed as the default for HttpsURLConnection.
+	 * @return SSL context, null if it could not be created
+	 */
+	static synchronized SSLContext getSslContext() {
+		if (SSL_CONTEXT != null)
+			return SSL_CONTEXT;
 
 		// Create a new TrustManager that accepts all certificates
-		TRUST_MANAGER = new TrustManager[]{
+		TrustManager[] trustManager = new TrustManager[]{
 				new X509TrustManager() {
 					public java.security.cert.X509Certificate[] getAcceptedIssuers() {
 						return null;
@@ -471,14 +1135,112 @@ public class LintedPage {
 				}
 		};
 
-		SSLContext sc;
 		try {
-			sc = SSLContext.getInstance("SSL");
-			sc.init(null, TRUST_MANAGER, new java.security.SecureRandom());
+			SSLContext sc = SSLContext.getInstance("SSL");
+			sc.init(null, trustManager, new java.security.SecureRandom());
 			HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+			SSL_CONTEXT = sc;
 		} catch (NoSuchAlgorithmException e) {
 			logger.error( "Error configuring SSL", e);
-		}			    	    
+		} catch (KeyManagementException e) {
+			logger.error( "Error configuring SSL", e);
+		}
+		return SSL_CONTEXT;
+	}
+	
+	/**
+	 * Set the persistent store used by all pages: processed pages are served from it when
+	 * present and saved to it after a successful parse
+	 * @param store	Result store, null to disable
+	 */
+	public static void setResultStore(LintedPageStore store) {
+		_resultStore = store;
+	}
+	
+	/**
+	 * Get the persistent store used by all pages
+	 * @return Result store, null if none
+	 */
+	public static LintedPageStore getResultStore() {
+		return _resultStore;
+	}
+	
+	/**
+	 * Set the processing result of this page, used when restoring a stored page
+	 * @param parseOk			Parse success
+	 * @param parseError		Parse error, may be null
+	 * @param destinationUrl	Destination URL
+	 * @param aliases			Alias URLs
+	 * @param redirectUrlList	Every URL requested while resolving the destination
+	 * @param metaData			Scraped meta data
+	 */
+	void restoreResult(boolean parseOk, String parseError, String destinationUrl, List<String> aliases, List<String> redirectUrlList, LintedData metaData) {
+		_parseOk = parseOk;
+		_parseError = parseError;
+		_destinationUrl = destinationUrl;
+		_aliases = new ArrayList<String>(aliases);
+		_redirectUrlList = new ArrayList<String>(redirectUrlList);
+		_metaData = metaData;
+	}
+	
+	/**
+	 * Take over the processing result of another page of the same URL
+	 * @param other	Processed page
+	 */
+	void copyResultFrom(LintedPage other) {
+		restoreResult(other._parseOk, other._parseError, other._destinationUrl, other._aliases, other._redirectUrlList, other._metaData.copy());
+	}
+	
+	/**
+	 * Get every URL requested while resolving the destination, including the destination
+	 * @return Redirect URL list
+	 */
+	List<String> getRedirectUrlList() {
+		return _redirectUrlList;
+	}
+	
+	/**
+	 * Get the fetcher used by pages without their own, created on first use
+	 * @return Default page fetcher
+	 */
+	public static synchronized PageFetcher getDefaultFetcher() {
+		if (_defaultFetcher == null) {
+			_defaultFetcher = new AsyncPageFetcher();
+		}
+		return _defaultFetcher;
+	}
+	
+	/**
+	 * Set the fetcher used by pages without their own, e.g. a {@link BlockingPageFetcher}
+	 * to fall back to HttpURLConnection
+	 * @param fetcher	Default page fetcher
+	 */
+	public static synchronized void setDefaultFetcher(PageFetcher fetcher) {
+		_defaultFetcher = fetcher;
+	}
+	
+	/**
+	 * Set the fetcher for this page only, null to use the default
+	 * @param fetcher	Page fetcher
+	 */
+	public void setFetcher(PageFetcher fetcher) {
+		_fetcher = fetcher;
+	}
+	
+	/**
+	 * Get the fetcher for this page
+	 * @return Page fetcher
+	 */
+	private PageFetcher getFetcher() {
+		return (_fetcher != null) ? _fetcher : getDefaultFetcher();
+	}
+	
+	/**
+	 * Get the timing and cost of each processing step of this page
+	 * @return Profile, empty for results served from a store or taken over from another request
+	 */
+	public PageProfile getProfile() {
+		return _profile;
 	}
 	
 	/**
@@ -0,0 +1,832 @@
+package org.linter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Persistent store of processed LintedPages, survives process restarts
+ *
+ * Results are appended to a single log file and read back through a memory mapping, so a
+ * lookup is a hash probe plus a read from the page cache. The index is an open-addressing
+ * table from a 64-bit key hash to the record offset, rebuilt by scanning the log on open.
+ *
+ * Record layout: magic (int), payload length (int), CRC32 of payload (int), payload.
+ * Recovery stops at the first record that is truncated or fails its checksum and cuts the
+ * log there, so a crash mid-append loses at most the record being written. Superseded
+ * records are reclaimed by a background compaction that copies live records to a new file
+ * and atomically renames it over the log.
+ *
+ * Records are keyed by the canonical original URL, see {@link URLParser#canonicalize(String)},
+ * so variants of a link share one result. The log is mapped as a single region and is
+ * therefore limited to 2 GB.
+ */
+public class LintedPageStore implements Closeable {
+
+	/**
+	 * Log4J Logger
+	 */
+	static private Logger logger = Logger.getLogger(LintedPageStore.class);
+
+	/**
+	 * Log file name inside the store directory
+	 */
+	public static final String LOG_FILE_NAME = "linted-pages.log";
+
+	/**
+	 * Default maximum age of a served result, 1 day
+	 */
+	public static final long DEFAULT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Record marker
+	 */
+	private static final int RECORD_MAGIC = 0x4C4E5452;
+
+	/**
+	 * Record header size: magic, payload length, checksum
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * Payload record types
+	 */
+	private static final byte TYPE_PUT = 1;
+	private static final byte TYPE_DELETE = 2;
+
+	/**
+	 * Meta data value types
+	 */
+	private static final byte VALUE_STRING = 0;
+	private static final byte VALUE_STRING_ARRAY = 1;
+	private static final byte VALUE_INTEGER = 2;
+	private static final byte VALUE_LONG = 3;
+	private static final byte VALUE_BOOLEAN = 4;
+	private static final byte VALUE_DOUBLE = 5;
+
+	/**
+	 * Empty index slot marker, offsets are never negative
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * Compaction is considered once the log has at least this many bytes
+	 */
+	private static final long COMPACTION_MIN_BYTES = 1024 * 1024;
+
+	/**
+	 * Growth step of the mapping, the log file is extended ahead of appends by up to this much
+	 */
+	private static final long MAPPING_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Runs compactions
+	 */
+	private static final ScheduledExecutorService COMPACTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "linter-store-compactor");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Log file
+	 */
+	private final File _file;
+
+	/**
+	 * Guards the channel, mapping and index. Readers share, appends and file swaps are exclusive
+	 */
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Serializes compactions
+	 */
+	private final Object _compactionLock = new Object();
+
+	/**
+	 * Open log channel
+	 */
+	private FileChannel _channel;
+
+	/**
+	 * Read-only mapping of the log, grown in chunks by appends so readers never remap
+	 */
+	private volatile MappedByteBuffer _mapping;
+
+	/**
+	 * End of the last valid record
+	 */
+	private long _end;
+
+	/**
+	 * Bytes of records that were superseded or deleted
+	 */
+	private long _garbage;
+
+	/**
+	 * Index: key hashes and record offsets, open addressing with linear probing
+	 */
+	private long[] _hashes;
+	private long[] _offsets;
+	private int _count;
+
+	/**
+	 * Maximum age of served results
+	 */
+	private volatile long _maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+	/**
+	 * Set while a compaction is scheduled or running
+	 */
+	private boolean _compacting = false;
+
+	/**
+	 * Set once closed
+	 */
+	private boolean _closed = false;
+
+
+
+	/**
+	 * Open or create a store, recovering the log after a crash
+	 * @param directory	Store directory, created if needed
+	 * @throws IOException	If the log cannot be opened
+	 */
+	public LintedPageStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create store directory: " + directory);
+		_file = new File(directory, LOG_FILE_NAME);
+		open();
+	}
+
+	/**
+	 * Look up a stored result
+	 * @param originalUrl	Original URL of the page
+	 * @return				Processed page, null if not stored or older than the maximum age
+	 */
+	public LintedPage get(String originalUrl) {
+		if (originalUrl == null)
+			return null;
+
+		String key = URLParser.canonicalize(originalUrl);
+		long hash = hash(key);
+		_lock.readLock().lock();
+		try {
+			if (_closed)
+				return null;
+			int slot = find(hash);
+			if (_offsets[slot] == EMPTY)
+				return null;
+
+			ByteBuffer payload = readPayload(_offsets[slot]);
+			if (payload == null || payload.get() != TYPE_PUT)
+				return null;
+			if (!key.equals(readString(payload)))
+				return null;	// 64-bit hash collision
+
+			long storedAt = payload.getLong();
+			if (System.currentTimeMillis() - storedAt > _maxAgeMillis)
+				return null;
+
+			return readPage(originalUrl, payload);
+		} catch (IOException e) {
+			logger.error("Unable to read stored page [" + originalUrl + "]: " + e);
+			return null;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Store a processed page under its canonical original URL, replacing any previous result
+	 * @param page	Processed page
+	 */
+	public void put(LintedPage page) {
+		try {
+			String key = URLParser.canonicalize(page.getOriginalUrl());
+			append(key, encodePage(key, page));
+		} catch (IOException e) {
+			logger.error("Unable to store page [" + page.getOriginalUrl() + "]: " + e);
+		}
+	}
+
+	/**
+	 * Remove a stored result
+	 * @param originalUrl	Original URL of the page
+	 */
+	public void remove(String originalUrl) {
+		try {
+			String key = URLParser.canonicalize(originalUrl);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(TYPE_DELETE);
+			writeString(out, key);
+			append(key, bytes.toByteArray());
+		} catch (IOException e) {
+			logger.error("Unable to remove stored page [" + originalUrl + "]: " + e);
+		}
+	}
+
+	/**
+	 * Set the maximum age of served results, older results are ignored
+	 * @param maxAgeMillis	Maximum age in milliseconds
+	 */
+	public void setMaxAgeMillis(long maxAgeMillis) {
+		_maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * Get the number of stored results
+	 * @return Live record count
+	 */
+	public int size() {
+		_lock.readLock().lock();
+		try {
+			return _count;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Force appended records to disk
+	 * @throws IOException	On write failure
+	 */
+	public void sync() throws IOException {
+		_lock.writeLock().lock();
+		try {
+			if (!_closed)
+				_channel.force(false);
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrite the log with live records only
+	 * @throws IOException	On write failure, the current log is left untouched
+	 */
+	public void compact() throws IOException {
+		synchronized (_compactionLock) {
+			compactLocked();
+		}
+	}
+
+	/**
+	 * Compaction body, one at a time
+	 */
+	private void compactLocked() throws IOException {
+		File compactFile = new File(_file.getPath() + ".compact");
+		FileChannel out = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			long[] hashes;
+			long[] offsets;
+			long copiedEnd;
+			long[] newOffsets;
+			long position = 0;
+
+			// Copy live records of a snapshot without blocking readers
+			_lock.readLock().lock();
+			try {
+				if (_closed)
+					return;
+				hashes = _hashes.clone();
+				offsets = _offsets.clone();
+				copiedEnd = _end;
+				newOffsets = new long[offsets.length];
+				Arrays.fill(newOffsets, EMPTY);
+				for (int i = 0; i < offsets.length; i++) {
+					if (offsets[i] != EMPTY) {
+						newOffsets[i] = position;
+						position += copyRecord(offsets[i], out, position);
+					}
+				}
+			} finally {
+				_lock.readLock().unlock();
+			}
+
+			_lock.writeLock().lock();
+			try {
+				if (_closed)
+					return;
+
+				// Rebuild the index over the copy, then replay records appended meanwhile
+				long[] oldHashes = _hashes;
+				long[] oldOffsets = _offsets;
+				int oldCount = _count;
+				_hashes = new long[Math.max(hashes.length, 16)];
+				_offsets = new long[_hashes.length];
+				Arrays.fill(_offsets, EMPTY);
+				_count = 0;
+				for (int i = 0; i < hashes.length; i++) {
+					if (newOffsets[i] != EMPTY)
+						insert(hashes[i], newOffsets[i]);
+				}
+
+				// Index offsets now point into the new file, so superseded records are
+				// estimated by the size of the record replacing them
+				long garbage = 0;
+				for (long offset = copiedEnd; offset < _end; ) {
+					ByteBuffer payload = readPayload(offset);
+					int length = HEADER_SIZE + payload.remaining();
+					byte type = payload.get();
+					long hash = hash(readString(payload));
+					copyRecord(offset, out, position);
+					int slot = find(hash);
+					boolean existed = _offsets[slot] != EMPTY;
+					if (type == TYPE_PUT) {
+						if (existed) {
+							_offsets[slot] = position;
+							garbage += length;
+						} else {
+							insert(hash, position);
+						}
+					} else {
+						if (existed)
+							removeSlot(slot);
+						garbage += length;
+					}
+					position += length;
+					offset += length;
+				}
+				out.force(true);
+				out.close();
+
+				try {
+					Files.move(compactFile.toPath(), _file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException e) {
+					_hashes = oldHashes;
+					_offsets = oldOffsets;
+					_count = oldCount;
+					throw e;
+				}
+
+				long before = _end;
+				_channel.close();
+				_channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				_end = position;
+				_garbage = garbage;
+				_mapping = _channel.map(FileChannel.MapMode.READ_ONLY, 0, _end);
+				logger.info("Compacted store " + _file + " from " + before + " to " + _end + " bytes");
+			} finally {
+				_lock.writeLock().unlock();
+			}
+		} finally {
+			if (out.isOpen())
+				out.close();
+			compactFile.delete();
+		}
+	}
+
+	/**
+	 * Close the store
+	 */
+	public void close() throws IOException {
+		_lock.writeLock().lock();
+		try {
+			if (_closed)
+				return;
+			_closed = true;
+			_channel.truncate(_end);
+			_channel.force(false);
+			_channel.close();
+			_mapping = null;
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Open the log, scanning and indexing every valid record and truncating anything after the last
+	 */
+	private void open() throws IOException {
+		_channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = _channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Store log exceeds 2 GB: " + _file);
+
+		_hashes = new long[16];
+		_offsets = new long[16];
+		Arrays.fill(_offsets, EMPTY);
+		_count = 0;
+		_garbage = 0;
+		_end = 0;
+		_mapping = _channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+		long offset = 0;
+		while (offset < size) {
+			ByteBuffer payload = readPayload(offset);
+			if (payload == null)
+				break;
+			int length = HEADER_SIZE + payload.remaining();
+			byte type = payload.get();
+			long hash = hash(readString(payload));
+			if (type == TYPE_PUT) {
+				_garbage += indexPut(hash, offset);
+			} else {
+				_garbage += indexDelete(hash) + length;
+			}
+			offset += length;
+		}
+		_end = offset;
+
+		if (_end < size) {
+			// Space the mapping was grown into is zero, anything else is a torn record
+			if (_end + 4 <= size && _mapping.getInt((int) _end) == 0) {
+				logger.debug("Trimming " + (size - _end) + " bytes of unused space from store " + _file);
+			} else {
+				logger.warn("Recovered store " + _file + ": discarding " + (size - _end) + " bytes after the last valid record");
+			}
+			_channel.truncate(_end);
+			_channel.force(true);
+			_mapping = _channel.map(FileChannel.MapMode.READ_ONLY, 0, _end);
+		}
+		logger.info("Opened store " + _file + " with " + _count + " pages");
+	}
+
+	/**
+	 * Append a record and index it
+	 */
+	private void append(String key, byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+		record.putInt(RECORD_MAGIC).putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+		record.flip();
+
+		boolean compact;
+		_lock.writeLock().lock();
+		try {
+			if (_closed)
+				throw new IOException("Store is closed");
+			if (_end + record.remaining() > Integer.MAX_VALUE)
+				throw new IOException("Store log would exceed 2 GB: " + _file);
+
+			long offset = _end;
+			ensureMapped(offset + record.remaining());
+			while (record.hasRemaining()) {
+				_channel.write(record, offset + record.position());
+			}
+			_end += record.limit();
+
+			if (payload[0] == TYPE_PUT) {
+				_garbage += indexPut(hash(key), offset);
+			} else {
+				_garbage += indexDelete(hash(key)) + record.limit();
+			}
+
+			compact = !_compacting && _end >= COMPACTION_MIN_BYTES && _garbage * 2 > _end;
+			if (compact)
+				_compacting = true;
+		} finally {
+			_lock.writeLock().unlock();
+		}
+
+		if (compact) {
+			COMPACTOR.execute(new Runnable() {
+				public void run() {
+					try {
+						compact();
+					} catch (IOException e) {
+						logger.error("Store compaction failed: " + e);
+					} finally {
+						_lock.writeLock().lock();
+						_compacting = false;
+						_lock.writeLock().unlock();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Read and verify the payload of the record at an offset
+	 * @return Payload positioned at its start, null if the record is truncated or corrupt
+	 */
+	private ByteBuffer readPayload(long offset) throws IOException {
+		ByteBuffer mapping = _mapping;
+		if (offset + HEADER_SIZE > mapping.capacity())
+			return null;
+
+		ByteBuffer buffer = mapping.duplicate();
+		buffer.position((int) offset);
+		if (buffer.getInt() != RECORD_MAGIC)
+			return null;
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if (length <= 0 || length > buffer.remaining())
+			return null;
+
+		ByteBuffer payload = buffer.slice();
+		payload.limit(length);
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		if ((int) crc.getValue() != checksum)
+			return null;
+		return payload;
+	}
+
+	/**
+	 * Grow the mapping to cover the log up to an end, extending the file by whole chunks;
+	 * called with the write lock held, before writing past the current mapping
+	 */
+	private void ensureMapped(long end) throws IOException {
+		if (end <= _mapping.capacity())
+			return;
+
+		long capacity = Math.min(Integer.MAX_VALUE, (end / MAPPING_CHUNK_SIZE + 1) * MAPPING_CHUNK_SIZE);
+		if (_channel.size() < capacity) {
+			_channel.write(ByteBuffer.allocate(1), capacity - 1);
+		}
+		_mapping = _channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+	}
+
+	/**
+	 * Copy the raw record at an offset to another channel
+	 * @return Record length
+	 */
+	private int copyRecord(long offset, FileChannel out, long position) throws IOException {
+		ByteBuffer payload = readPayload(offset);
+		if (payload == null)
+			throw new IOException("Corrupt record at offset " + offset);
+		ByteBuffer record = _mapping.duplicate();
+		record.position((int) offset);
+		record.limit((int) offset + HEADER_SIZE + payload.remaining());
+		int length = record.remaining();
+		while (record.hasRemaining()) {
+			out.write(record, position + (length - record.remaining()));
+		}
+		return length;
+	}
+
+	/**
+	 * Point a key hash at a record
+	 * @return Bytes of the superseded record, 0 if there was none
+	 */
+	private long indexPut(long hash, long offset) throws IOException {
+		int slot = find(hash);
+		if (_offsets[slot] != EMPTY) {
+			long superseded = recordLength(_offsets[slot]);
+			_offsets[slot] = offset;
+			return superseded;
+		}
+		insert(hash, offset);
+		return 0;
+	}
+
+	/**
+	 * Remove a key hash from the index
+	 * @return Bytes of the removed record, 0 if there was none
+	 */
+	private long indexDelete(long hash) throws IOException {
+		int slot = find(hash);
+		if (_offsets[slot] == EMPTY)
+			return 0;
+		long removed = recordLength(_offsets[slot]);
+		removeSlot(slot);
+		return removed;
+	}
+
+	/**
+	 * Empty an index slot, backward shifting the following entries to keep linear probe chains intact
+	 */
+	private void removeSlot(int slot) {
+		int mask = _offsets.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (_offsets[next] != EMPTY) {
+			int home = (int) mix(_hashes[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				_hashes[hole] = _hashes[next];
+				_offsets[hole] = _offsets[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		_offsets[hole] = EMPTY;
+		_count--;
+	}
+
+	/**
+	 * Insert a new key hash, growing the table past a load factor of 1/2
+	 */
+	private void insert(long hash, long offset) {
+		if ((_count + 1) * 2 > _offsets.length) {
+			long[] oldHashes = _hashes;
+			long[] oldOffsets = _offsets;
+			_hashes = new long[oldHashes.length * 2];
+			_offsets = new long[oldOffsets.length * 2];
+			Arrays.fill(_offsets, EMPTY);
+			for (int i = 0; i < oldOffsets.length; i++) {
+				if (oldOffsets[i] != EMPTY) {
+					int slot = find(oldHashes[i]);
+					_hashes[slot] = oldHashes[i];
+					_offsets[slot] = oldOffsets[i];
+				}
+			}
+		}
+		int slot = find(hash);
+		_hashes[slot] = hash;
+		_offsets[slot] = offset;
+		_count++;
+	}
+
+	/**
+	 * Find the slot holding a key hash, or the empty slot where it belongs
+	 */
+	private int find(long hash) {
+		int mask = _offsets.length - 1;
+		int slot = (int) mix(hash) & mask;
+		while (_offsets[slot] != EMPTY && _hashes[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Total length of the record at an offset
+	 */
+	private long recordLength(long offset) throws IOException {
+		ByteBuffer payload = readPayload(offset);
+		return (payload == null) ? 0 : HEADER_SIZE + payload.remaining();
+	}
+
+	/**
+	 * Serialize a page result under its key
+	 */
+	private static byte[] encodePage(String key, LintedPage page) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(TYPE_PUT);
+		writeString(out, key);
+		out.writeLong(System.currentTimeMillis());
+		out.writeBoolean(page.getParseOk());
+		writeString(out, page.getParseError());
+		writeString(out, page.getDestinationUrl());
+		writeStrings(out, Arrays.asList(page.getAliases()));
+		writeStrings(out, page.getRedirectUrlList());
+
+		Map<String, Object> data = page.getMetaData().getData();
+		out.writeInt(data.size());
+		for (Map.Entry<String, Object> entry : data.entrySet()) {
+			writeString(out, entry.getKey());
+			Object value = entry.getValue();
+			if (value instanceof Object[]) {
+				out.writeByte(VALUE_STRING_ARRAY);
+				Object[] values = (Object[]) value;
+				out.writeInt(values.length);
+				for (Object v : values) {
+					writeString(out, (v == null) ? null : v.toString());
+				}
+			} else if (value instanceof Integer) {
+				out.writeByte(VALUE_INTEGER);
+				out.writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				out.writeByte(VALUE_LONG);
+				out.writeLong((Long) value);
+			} else if (value instanceof Boolean) {
+				out.writeByte(VALUE_BOOLEAN);
+				out.writeBoolean((Boolean) value);
+			} else if (value instanceof Double || value instanceof Float) {
+				out.writeByte(VALUE_DOUBLE);
+				out.writeDouble(((Number) value).doubleValue());
+			} else {
+				out.writeByte(VALUE_STRING);
+				writeString(out, (value == null) ? null : value.toString());
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserialize a page result, positioned after the original URL and timestamp
+	 */
+	private static LintedPage readPage(String originalUrl, ByteBuffer in) throws IOException {
+		try {
+			boolean parseOk = in.get() != 0;
+			String parseError = readString(in);
+			String destinationUrl = readString(in);
+			List<String> aliases = readStrings(in);
+			List<String> redirectUrlList = readStrings(in);
+
+			LintedData metaData = new LintedData();
+			int count = in.getInt();
+			for (int i = 0; i < count; i++) {
+				String key = readString(in);
+				byte type = in.get();
+				switch (type) {
+				case VALUE_STRING_ARRAY:
+					String[] values = new String[in.getInt()];
+					for (int j = 0; j < values.length; j++) {
+						values[j] = readString(in);
+					}
+					metaData.put(key, values);
+					break;
+				case VALUE_INTEGER:
+					metaData.put(key, in.getInt());
+					break;
+				case VALUE_LONG:
+					metaData.put(key, in.getLong());
+					break;
+				case VALUE_BOOLEAN:
+					metaData.put(key, in.get() != 0);
+					break;
+				case VALUE_DOUBLE:
+					metaData.put(key, in.getDouble());
+					break;
+				default:
+					metaData.put(key, readString(in));
+				}
+			}
+
+			LintedPage page = new LintedPage(originalUrl);
+			page.restoreResult(parseOk, parseError, destinationUrl, aliases, redirectUrlList, metaData);
+			return page;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated page record", e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) throws IOException {
+		int length = in.getInt();
+		if (length < 0)
+			return null;
+		if (length > in.remaining())
+			throw new IOException("Invalid string length: " + length);
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+		out.writeInt(values.size());
+		for (String value : values) {
+			writeString(out, value);
+		}
+	}
+
+	private static List<String> readStrings(ByteBuffer in) throws IOException {
+		int count = in.getInt();
+		ArrayList<String> values = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(readString(in));
+		}
+		return values;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of a key
+	 */
+	private static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Mix a key hash into a table position
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
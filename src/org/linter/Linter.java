@@ -1,5 +1,10 @@
 package org.linter;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -24,27 +29,27 @@ public class Linter {
 		
 		logger.info("Running Linter");
 		
+		// The command line owns its JVM, so it may configure the transport keep-alive caches
+		ConnectionPool.configureTransportKeepAlive(ConnectionPool.DEFAULT_MAX_PER_HOST, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+		
 		// Register additional ServiceParsers
-		ServiceParserChainManager.getInstance().registerServiceParser( ServiceParserTypesetter.class );
+		ServiceParserChainManager.getInstance().registerServiceParser( ServiceParserTypesetter::new );
 		
-		LintedPage lp;
-		for (int i = 0; i < args.length; i++)
+		// Process all URLs concurrently, print them in the order given
+		BatchLinter batch = new BatchLinter();
+		List<Future<LintedPage>> results = batch.processUrls(Arrays.asList(args));
+		for (int i = 0; i < results.size(); i++)
 		{
-			lp = Linter.processUrl(args[i]);			
-			System.out.println(lp.toDebugString());
+			try {
+				System.out.println(results.get(i).get().toDebugString());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				logger.error("Exception processing URL [" + args[i] + "]: " + e.getCause());
+			}
 		}
+		batch.shutdown();
 	}
 	
-	/**
-	 * Process a url
-	 * @param url	URL to process
-	 * @return		Scraped LintedPage
-	 */
-	private static final LintedPage processUrl(String url) {
-		LintedPage lp = new LintedPage(url);
-		lp.process();
-		return lp;
-	}
-	
-	
 }
@@ -0,0 +1,185 @@
+package org.linter;
+
+import java.net.URI;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the scrape pipeline, in the Linter category
+ *
+ * Events are begun and ended around each step but their fields are only filled in when
+ * {@link Event#shouldCommit()} holds, so with recording off a step costs little more
+ * than an allocation the JIT usually removes. Every event carries the URL, its host and
+ * an outcome.
+ */
+public final class LinterEvents {
+
+	/*
+	 * Constructor, private
+	 */
+	private LinterEvents() {
+	}
+
+	/**
+	 * Get the host of a URL for an event
+	 * @param url	URL, may be null
+	 * @return		Host, null if the URL is not valid
+	 */
+	static String getHost(String url) {
+		if (url == null)
+			return null;
+		try {
+			return URI.create(url).getHost();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Request of one URL while following redirects
+	 */
+	@Name("org.linter.RedirectHop")
+	@Label("Redirect Hop")
+	@Category("Linter")
+	@Description("Request of one URL while following redirects, including the wait for a host slot")
+	@StackTrace(false)
+	public static class RedirectHop extends Event {
+		@Label("URL")
+		public String url;
+
+		@Label("Host")
+		public String host;
+
+		@Label("Outcome")
+		@Description("redirect, loop, destination or the error")
+		public String outcome;
+
+		@Label("Method")
+		public String method;
+
+		@Label("Status Code")
+		public int statusCode;
+
+		@Label("Location")
+		public String location;
+	}
+
+	/**
+	 * Request and body read of the destination page
+	 */
+	@Name("org.linter.PageFetch")
+	@Label("Page Fetch")
+	@Category("Linter")
+	@Description("Destination page request and body read")
+	@StackTrace(false)
+	public static class PageFetch extends Event {
+		@Label("URL")
+		public String url;
+
+		@Label("Host")
+		public String host;
+
+		@Label("Outcome")
+		@Description("read, not modified, not scraped or the error")
+		public String outcome;
+
+		@Label("Status Code")
+		public int statusCode;
+
+		@Label("Bytes Read")
+		@DataAmount
+		public long bytesRead;
+
+		@Label("Bytes Decoded")
+		@DataAmount
+		public long bytesDecoded;
+	}
+
+	/**
+	 * Parse of one ServiceParser of a chain
+	 */
+	@Name("org.linter.Parse")
+	@Label("Service Parser Parse")
+	@Category("Linter")
+	@Description("Parse of one ServiceParser, including its successors")
+	@StackTrace(false)
+	public static class Parse extends Event {
+		@Label("URL")
+		public String url;
+
+		@Label("Host")
+		public String host;
+
+		@Label("Outcome")
+		@Description("ok or failed")
+		public String outcome;
+
+		@Label("Parser")
+		public String parser;
+	}
+
+	/**
+	 * Algorithmic preview image selection of a page
+	 */
+	@Name("org.linter.ImageSelection")
+	@Label("Image Selection")
+	@Category("Linter")
+	@Description("AlgorithmicImageSelector.getPreviewUrl, including the image probes it waits for")
+	@StackTrace(false)
+	public static class ImageSelection extends Event {
+		@Label("URL")
+		public String url;
+
+		@Label("Host")
+		public String host;
+
+		@Label("Outcome")
+		@Description("selected or none")
+		public String outcome;
+
+		@Label("Image URL")
+		public String imageUrl;
+
+		@Label("Candidates")
+		public int candidates;
+
+		@Label("Probes")
+		public int probes;
+	}
+
+	/**
+	 * Download of one candidate image to learn its dimensions
+	 */
+	@Name("org.linter.ImageProbe")
+	@Label("Image Probe")
+	@Category("Linter")
+	@Description("Download of one candidate image to learn its dimensions")
+	@StackTrace(false)
+	public static class ImageProbe extends Event {
+		@Label("URL")
+		public String url;
+
+		@Label("Host")
+		public String host;
+
+		@Label("Outcome")
+		@Description("sniffed, decoded, not sniffed, too large, HTTP error or the error")
+		public String outcome;
+
+		@Label("Width")
+		public int width;
+
+		@Label("Height")
+		public int height;
+
+		@Label("File Size")
+		@DataAmount
+		public long fileSize;
+	}
+}
@@ -0,0 +1,435 @@
+package org.linter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Process-wide latency histograms and counters of each scrape phase
+ *
+ * Phases are timed in nanoseconds and reported in ms:
+ *
+ * <pre>
+ * process			LintedPage.process as a whole
+ * redirects		Resolving the redirect chain of a page, including the destination request
+ * fetch			Each page request until its response headers, the time to first byte
+ * download			Reading a page body
+ * source			Building the Jericho source of a page; when not scraping head-only it
+ * 					reads the page as it parses, and the download is included
+ * parse			Each ServiceParser in a chain, excluding its successors, per class
+ * imageSelection	AlgorithmicImageSelector.getPreviewUrl
+ * imageProbe		Each image download made to learn its dimensions
+ * </pre>
+ *
+ * Recording never blocks. The registry and every histogram are registered as platform
+ * MXBeans under the org.linter domain when first used.
+ */
+public class LinterMetrics implements LinterMetricsMXBean {
+
+	/**
+	 * Log4J Logger
+	 */
+	static private Logger logger = Logger.getLogger(LinterMetrics.class);
+
+	/**
+	 * JMX domain of the registered MXBeans
+	 */
+	public static final String JMX_DOMAIN = "org.linter";
+
+	/**
+	 * Singleton instance
+	 */
+	private static final LinterMetrics INSTANCE = new LinterMetrics();
+
+	/**
+	 * Phase latencies
+	 */
+	private final Histogram _processTime = new Histogram("ms", 1e6);
+	private final Histogram _redirectTime = new Histogram("ms", 1e6);
+	private final Histogram _fetchTime = new Histogram("ms", 1e6);
+	private final Histogram _downloadTime = new Histogram("ms", 1e6);
+	private final Histogram _sourceTime = new Histogram("ms", 1e6);
+	private final Histogram _imageSelectionTime = new Histogram("ms", 1e6);
+	private final Histogram _imageProbeTime = new Histogram("ms", 1e6);
+
+	/**
+	 * Parse latencies by ServiceParser class name
+	 */
+	private final ConcurrentHashMap<String, Histogram> _parseTimes = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Per page distributions
+	 */
+	private final Histogram _redirectHopsPerPage = new Histogram("hops", 1);
+	private final Histogram _imageProbesPerPage = new Histogram("probes", 1);
+	private final Histogram _bytesPerPage = new Histogram("bytes", 1);
+
+	/**
+	 * Counters
+	 */
+	private final LongAdder _pagesProcessed = new LongAdder();
+	private final LongAdder _pagesFailed = new LongAdder();
+	private final LongAdder _redirectHops = new LongAdder();
+	private final LongAdder _bytesDownloaded = new LongAdder();
+	private final LongAdder _bytesDecoded = new LongAdder();
+	private final LongAdder _imageProbes = new LongAdder();
+	private final LongAdder _pagesCoalesced = new LongAdder();
+	private final LongAdder _scrapesCoalesced = new LongAdder();
+
+	/**
+	 * Platform MBean server, null if registration failed
+	 */
+	private final MBeanServer _mbeanServer;
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Metrics registry
+	 */
+	public static LinterMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private LinterMetrics() {
+		MBeanServer server = null;
+		try {
+			server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(JMX_DOMAIN + ":type=LinterMetrics"));
+		} catch (Exception e) {
+			logger.warn("Unable to register metrics MXBeans: " + e);
+			server = null;
+		}
+		_mbeanServer = server;
+
+		register("phase", "process", _processTime);
+		register("phase", "redirects", _redirectTime);
+		register("phase", "fetch", _fetchTime);
+		register("phase", "download", _downloadTime);
+		register("phase", "source", _sourceTime);
+		register("phase", "imageSelection", _imageSelectionTime);
+		register("phase", "imageProbe", _imageProbeTime);
+		register("page", "redirectHops", _redirectHopsPerPage);
+		register("page", "imageProbes", _imageProbesPerPage);
+		register("page", "bytes", _bytesPerPage);
+	}
+
+	/**
+	 * Record a processed page
+	 * @param nanos	Processing time
+	 * @param ok	Parse success
+	 */
+	void recordProcess(long nanos, boolean ok) {
+		_processTime.record(nanos);
+		_pagesProcessed.increment();
+		if (!ok)
+			_pagesFailed.increment();
+	}
+
+	/**
+	 * Record a resolved redirect chain
+	 * @param nanos	Resolution time
+	 * @param hops	Redirects followed
+	 */
+	void recordRedirects(long nanos, int hops) {
+		_redirectTime.record(nanos);
+		_redirectHopsPerPage.record(hops);
+		_redirectHops.add(hops);
+	}
+
+	/**
+	 * Record a page request
+	 * @param nanos	Time until the response headers
+	 */
+	void recordFetch(long nanos) {
+		_fetchTime.record(nanos);
+	}
+
+	/**
+	 * Record a page body read
+	 * @param nanos			Read time
+	 * @param downloaded	Bytes received, before decompression
+	 * @param decoded		Bytes read, after decompression
+	 */
+	void recordDownload(long nanos, long downloaded, long decoded) {
+		_downloadTime.record(nanos);
+		_bytesPerPage.record(downloaded);
+		_bytesDownloaded.add(downloaded);
+		_bytesDecoded.add(decoded);
+	}
+
+	/**
+	 * Record building a Jericho source
+	 * @param nanos	Build time
+	 */
+	void recordSource(long nanos) {
+		_sourceTime.record(nanos);
+	}
+
+	/**
+	 * Record the parse of one ServiceParser
+	 * @param parser	ServiceParser class
+	 * @param nanos		Parse time, excluding successors
+	 */
+	void recordParse(Class<?> parser, long nanos) {
+		getParseHistogram(parser.getSimpleName()).record(nanos);
+	}
+
+	/**
+	 * Record a preview image selection
+	 * @param nanos		Selection time
+	 * @param probes	Images probed
+	 */
+	void recordImageSelection(long nanos, int probes) {
+		_imageSelectionTime.record(nanos);
+		_imageProbesPerPage.record(probes);
+	}
+
+	/**
+	 * Record an image probe
+	 * @param nanos	Probe time
+	 */
+	void recordImageProbe(long nanos) {
+		_imageProbeTime.record(nanos);
+		_imageProbes.increment();
+	}
+
+	/**
+	 * Record a page that waited for another request processing the same URL
+	 */
+	void recordPageCoalesced() {
+		_pagesCoalesced.increment();
+	}
+
+	/**
+	 * Record a page that waited for another page scraping the same destination
+	 */
+	void recordScrapeCoalesced() {
+		_scrapesCoalesced.increment();
+	}
+
+	/**
+	 * Get the latencies of whole page processing
+	 * @return Histogram in ms
+	 */
+	public Histogram getProcessTime() {
+		return _processTime;
+	}
+
+	/**
+	 * Get the latencies of redirect chain resolution
+	 * @return Histogram in ms
+	 */
+	public Histogram getRedirectTime() {
+		return _redirectTime;
+	}
+
+	/**
+	 * Get the latencies of page requests until the response headers
+	 * @return Histogram in ms
+	 */
+	public Histogram getFetchTime() {
+		return _fetchTime;
+	}
+
+	/**
+	 * Get the latencies of reading page bodies
+	 * @return Histogram in ms
+	 */
+	public Histogram getDownloadTime() {
+		return _downloadTime;
+	}
+
+	/**
+	 * Get the latencies of building Jericho sources
+	 * @return Histogram in ms
+	 */
+	public Histogram getSourceTime() {
+		return _sourceTime;
+	}
+
+	/**
+	 * Get the latencies of preview image selection
+	 * @return Histogram in ms
+	 */
+	public Histogram getImageSelectionTime() {
+		return _imageSelectionTime;
+	}
+
+	/**
+	 * Get the latencies of single image probes
+	 * @return Histogram in ms
+	 */
+	public Histogram getImageProbeTime() {
+		return _imageProbeTime;
+	}
+
+	/**
+	 * Get the parse latencies of a ServiceParser class
+	 * @param parserName	Simple class name, e.g. ServiceParserAlgorithmic
+	 * @return				Histogram, null if that parser never ran
+	 */
+	public Histogram getParseTime(String parserName) {
+		return _parseTimes.get(parserName);
+	}
+
+	/**
+	 * Get the parse latencies of all ServiceParser classes that ran
+	 * @return Histograms by simple class name, sorted
+	 */
+	public Map<String, Histogram> getParseTimes() {
+		return Collections.unmodifiableMap(new TreeMap<String, Histogram>(_parseTimes));
+	}
+
+	/**
+	 * Get the redirects followed per page
+	 * @return Histogram in hops
+	 */
+	public Histogram getRedirectHopsPerPage() {
+		return _redirectHopsPerPage;
+	}
+
+	/**
+	 * Get the images probed per preview image selection
+	 * @return Histogram in probes
+	 */
+	public Histogram getImageProbesPerPage() {
+		return _imageProbesPerPage;
+	}
+
+	/**
+	 * Get the page body bytes received per page, before decompression
+	 * @return Histogram in bytes
+	 */
+	public Histogram getBytesPerPage() {
+		return _bytesPerPage;
+	}
+
+	/**
+	 * Get the pages processed, failed or not
+	 * @return Page count
+	 */
+	public long getPagesProcessed() {
+		return _pagesProcessed.sum();
+	}
+
+	/**
+	 * Get the pages whose parse failed
+	 * @return Page count
+	 */
+	public long getPagesFailed() {
+		return _pagesFailed.sum();
+	}
+
+	/**
+	 * Get the redirects followed by all pages
+	 * @return Hop count
+	 */
+	public long getRedirectHops() {
+		return _redirectHops.sum();
+	}
+
+	/**
+	 * Get the page body bytes received, before decompression
+	 * @return Byte count
+	 */
+	public long getBytesDownloaded() {
+		return _bytesDownloaded.sum();
+	}
+
+	/**
+	 * Get the page body bytes read by the parsers, after decompression
+	 * @return Byte count
+	 */
+	public long getBytesDecoded() {
+		return _bytesDecoded.sum();
+	}
+
+	/**
+	 * Get the candidate images downloaded to read their dimensions
+	 * @return Probe count
+	 */
+	public long getImageProbes() {
+		return _imageProbes.sum();
+	}
+
+	/**
+	 * Get the pages that took over the result of another request for the same URL
+	 * @return Page count
+	 */
+	public long getPagesCoalesced() {
+		return _pagesCoalesced.sum();
+	}
+
+	/**
+	 * Get the pages that took over the scrape of another page with the same destination
+	 * @return Page count
+	 */
+	public long getScrapesCoalesced() {
+		return _scrapesCoalesced.sum();
+	}
+
+	/**
+	 * Get the hit rate of the redirect cache
+	 * @return Hit rate between 0 and 1
+	 */
+	public double getRedirectCacheHitRate() {
+		return RedirectCache.getInstance().getHitRate();
+	}
+
+	/**
+	 * Get the hit rate of the metadata cache
+	 * @return Hit rate between 0 and 1, 0 if there were no lookups
+	 */
+	public double getMetadataCacheHitRate() {
+		MetadataCache cache = MetadataCache.getInstance();
+		long hits = cache.getHitCount();
+		long total = hits + cache.getMissCount();
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Get the hit rate of the image probe cache
+	 * @return Hit rate between 0 and 1
+	 */
+	public double getImageProbeCacheHitRate() {
+		return ImageProbeCache.getInstance().getHitRate();
+	}
+
+	/**
+	 * Get or create the histogram of a parser, registering it on creation
+	 */
+	private Histogram getParseHistogram(String parserName) {
+		Histogram histogram = _parseTimes.get(parserName);
+		if (histogram == null) {
+			Histogram created = new Histogram("ms", 1e6);
+			histogram = _parseTimes.putIfAbsent(parserName, created);
+			if (histogram == null) {
+				histogram = created;
+				register("parse", parserName, created);
+			}
+		}
+		return histogram;
+	}
+
+	private void register(String group, String name, Histogram histogram) {
+		if (_mbeanServer == null)
+			return;
+		try {
+			_mbeanServer.registerMBean(histogram, new ObjectName(JMX_DOMAIN + ":type=Histogram,group=" + group + ",name=" + name));
+		} catch (Exception e) {
+			logger.warn("Unable to register histogram MXBean " + name + ": " + e);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.linter;
+
+/**
+ * JMX view of the {@link LinterMetrics} counters and cache hit rates
+ *
+ * Counters only grow, throughput is their rate of change between two reads.
+ */
+public interface LinterMetricsMXBean {
+
+	/**
+	 * Get the pages processed, failed or not
+	 * @return Page count
+	 */
+	long getPagesProcessed();
+
+	/**
+	 * Get the pages whose parse failed
+	 * @return Page count
+	 */
+	long getPagesFailed();
+
+	/**
+	 * Get the redirects followed by all pages
+	 * @return Hop count
+	 */
+	long getRedirectHops();
+
+	/**
+	 * Get the page body bytes received, before decompression
+	 * @return Byte count
+	 */
+	long getBytesDownloaded();
+
+	/**
+	 * Get the page body bytes read by the parsers, after decompression
+	 * @return Byte count
+	 */
+	long getBytesDecoded();
+
+	/**
+	 * Get the candidate images downloaded to read their dimensions
+	 * @return Probe count
+	 */
+	long getImageProbes();
+
+	/**
+	 * Get the pages that took over the result of another request for the same URL
+	 * @return Page count
+	 */
+	long getPagesCoalesced();
+
+	/**
+	 * Get the pages that took over the scrape of another page with the same destination
+	 * @return Page count
+	 */
+	long getScrapesCoalesced();
+
+	/**
+	 * Get the hit rate of the redirect cache
+	 * @return Hit rate between 0 and 1
+	 */
+	double getRedirectCacheHitRate();
+
+	/**
+	 * Get the hit rate of the metadata cache
+	 * @return Hit rate between 0 and 1
+	 */
+	double getMetadataCacheHitRate();
+
+	/**
+	 * Get the hit rate of the image probe cache
+	 * @return Hit rate between 0 and 1
+	 */
+	double getImageProbeCacheHitRate();
+}
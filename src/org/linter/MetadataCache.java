@@ -0,0 +1,301 @@
+package org.linter;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of finished scrape results, keyed by canonical destination URL
+ *
+ * Only results whose response carried an ETag or Last-Modified validator are kept.
+ * LintedPage revalidates a cached result with a conditional GET; on 304 Not Modified
+ * both the body transfer and the ServiceParser chain are skipped. When full, a new result
+ * is only admitted if its URL has been requested more often recently than the least
+ * recently used entry, so a stream of one-off URLs does not evict popular ones.
+ */
+public class MetadataCache {
+
+	/**
+	 * Default maximum number of cached results
+	 */
+	public static final int DEFAULT_MAX_SIZE = 5000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static final MetadataCache INSTANCE = new MetadataCache(DEFAULT_MAX_SIZE);
+
+	/**
+	 * Cached results in access order, least recently used first
+	 */
+	private final LinkedHashMap<String, Entry> _entries;
+
+	/**
+	 * Recent request frequency of URLs, cached or not
+	 */
+	private final FrequencySketch _sketch;
+
+	/**
+	 * Maximum number of cached results
+	 */
+	private final int _maxSize;
+
+	/**
+	 * Whether the cache is consulted at all
+	 */
+	private volatile boolean _enabled = true;
+
+	/**
+	 * Statistics
+	 */
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _notModified = new AtomicLong();
+	private final AtomicLong _rejections = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Metadata cache
+	 */
+	public static MetadataCache getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private MetadataCache(int maxSize) {
+		_maxSize = maxSize;
+		_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		_sketch = new FrequencySketch(maxSize);
+	}
+
+	/**
+	 * Look up a cached result and record the request for admission decisions
+	 * @param destinationUrl	Destination URL
+	 * @return					Cached result to revalidate, null if none
+	 */
+	public synchronized Entry get(String destinationUrl) {
+		if (!_enabled || destinationUrl == null)
+			return null;
+
+		String key = URLParser.canonicalize(destinationUrl);
+		_sketch.increment(key);
+		Entry entry = _entries.get(key);
+		if (entry == null) {
+			_misses.incrementAndGet();
+		} else {
+			_hits.incrementAndGet();
+		}
+		return entry;
+	}
+
+	/**
+	 * Look up a cached result without recording the request, for URLs that may not be scraped
+	 * @param destinationUrl	Destination URL
+	 * @return					Cached result to revalidate, null if none
+	 */
+	public synchronized Entry peek(String destinationUrl) {
+		if (!_enabled || destinationUrl == null)
+			return null;
+
+		return _entries.get(URLParser.canonicalize(destinationUrl));
+	}
+
+	/**
+	 * Record the request of a URL looked up with {@link #peek(String)} once it is scraped
+	 * @param destinationUrl	Destination URL
+	 * @param hit				Whether the lookup found a cached result
+	 */
+	synchronized void recordLookup(String destinationUrl, boolean hit) {
+		if (!_enabled || destinationUrl == null)
+			return;
+
+		_sketch.increment(URLParser.canonicalize(destinationUrl));
+		if (hit) {
+			_hits.incrementAndGet();
+		} else {
+			_misses.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Offer a finished result, ignored without validators
+	 * @param destinationUrl	Destination URL
+	 * @param metaData			Scraped meta data, copied
+	 * @param parseOk			Parse success
+	 * @param parseError		Parse error, may be null
+	 * @param etag				ETag response header, may be null
+	 * @param lastModified		Last-Modified response header, may be null
+	 */
+	public synchronized void put(String destinationUrl, LintedData metaData, boolean parseOk, String parseError, String etag, String lastModified) {
+		if (!_enabled || destinationUrl == null || (etag == null && lastModified == null))
+			return;
+
+		String key = URLParser.canonicalize(destinationUrl);
+		Entry entry = new Entry(metaData.copy(), parseOk, parseError, etag, lastModified);
+		if (_entries.containsKey(key) || _entries.size() < _maxSize) {
+			_entries.put(key, entry);
+			return;
+		}
+
+		// Full: admit only if more popular than the eviction candidate
+		String victim = _entries.keySet().iterator().next();
+		if (_sketch.frequency(key) > _sketch.frequency(victim)) {
+			_entries.remove(victim);
+			_entries.put(key, entry);
+			_evictions.incrementAndGet();
+		} else {
+			_rejections.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Record that a cached result was confirmed by a 304 Not Modified
+	 */
+	void recordNotModified() {
+		_notModified.incrementAndGet();
+	}
+
+	/**
+	 * Drop a cached result
+	 * @param destinationUrl	Destination URL
+	 */
+	public synchronized void remove(String destinationUrl) {
+		_entries.remove(URLParser.canonicalize(destinationUrl));
+	}
+
+	/**
+	 * Drop all cached results
+	 */
+	public synchronized void clear() {
+		_entries.clear();
+	}
+
+	/**
+	 * Enable or disable the cache, disabling also clears it
+	 * @param enabled	True to enable
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		if (!enabled)
+			clear();
+	}
+
+	/**
+	 * Whether the cache is consulted
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * Get the number of cached results
+	 * @return Entry count
+	 */
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	/**
+	 * Get the number of scraped destinations found in the cache
+	 * @return Hit count
+	 */
+	public long getHitCount() {
+		return _hits.get();
+	}
+
+	/**
+	 * Get the number of scraped destinations not in the cache
+	 * @return Miss count
+	 */
+	public long getMissCount() {
+		return _misses.get();
+	}
+
+	/**
+	 * Get the number of cached results confirmed by a 304 Not Modified
+	 * @return Not modified count
+	 */
+	public long getNotModifiedCount() {
+		return _notModified.get();
+	}
+
+	/**
+	 * Get the number of results refused admission, their URL requested less often than the victim
+	 * @return Rejection count
+	 */
+	public long getRejectionCount() {
+		return _rejections.get();
+	}
+
+	/**
+	 * Get the number of results evicted to admit another
+	 * @return Eviction count
+	 */
+	public long getEvictionCount() {
+		return _evictions.get();
+	}
+
+	/**
+	 * Cached scrape result with its response validators
+	 */
+	public static class Entry {
+		private final LintedData _metaData;
+		private final boolean _parseOk;
+		private final String _parseError;
+		private final String _etag;
+		private final String _lastModified;
+
+		Entry(LintedData metaData, boolean parseOk, String parseError, String etag, String lastModified) {
+			_metaData = metaData;
+			_parseOk = parseOk;
+			_parseError = parseError;
+			_etag = etag;
+			_lastModified = lastModified;
+		}
+
+		/**
+		 * Get a copy of the cached meta data
+		 * @return Meta data, safe to modify
+		 */
+		public LintedData getMetaData() {
+			return _metaData.copy();
+		}
+
+		/**
+		 * Get the parse success of the cached result
+		 * @return True if parsed successfully
+		 */
+		public boolean getParseOk() {
+			return _parseOk;
+		}
+
+		/**
+		 * Get the parse error of the cached result
+		 * @return Parse error, null if none
+		 */
+		public String getParseError() {
+			return _parseError;
+		}
+
+		/**
+		 * Get the ETag validator of the cached response
+		 * @return ETag, null if none
+		 */
+		public String getEtag() {
+			return _etag;
+		}
+
+		/**
+		 * Get the Last-Modified validator of the cached response
+		 * @return Last-Modified date, null if none
+		 */
+		public String getLastModified() {
+			return _lastModified;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package org.linter;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pluggable HTTP layer used by LintedPage and image probes
+ *
+ * Implementations must be safe for concurrent use by many pages and must not follow redirects.
+ * Any HTTP status, including errors, is returned as a response rather than an exception;
+ * exceptions are reserved for connection failures and timeouts.
+ */
+public interface PageFetcher {
+
+	/**
+	 * Execute a request, blocking until the response headers are received
+	 * @param request	Request to execute
+	 * @return			Response, must be closed by the caller
+	 * @throws IOException	On connection failure or timeout
+	 */
+	FetchResponse fetch(FetchRequest request) throws IOException;
+
+	/**
+	 * Execute a request without blocking the caller
+	 * @param request	Request to execute
+	 * @return			Future completing with the response once headers are received, or
+	 * 					exceptionally with an IOException
+	 */
+	CompletableFuture<FetchResponse> fetchAsync(FetchRequest request);
+}
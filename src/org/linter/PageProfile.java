@@ -0,0 +1,337 @@
+package org.linter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing and cost of processing one LintedPage, to explain individual slow URLs
+ *
+ * Holds the time to first byte of every request made for the page, the body download
+ * and Jericho source build, the parse time of each ServiceParser in the chain and every
+ * image probe. The profile of the page being processed is reachable from its thread
+ * through {@link #current()}, so parsers and the image selector can add to it; image
+ * probes add to it from their own threads.
+ */
+public class PageProfile {
+
+	/**
+	 * Profile of the page processed by the current thread
+	 */
+	private static final ThreadLocal<PageProfile> CURRENT = new ThreadLocal<PageProfile>();
+
+	private final List<Request> _requests = new ArrayList<Request>();
+	private final List<Timing> _parseTimes = new ArrayList<Timing>();
+	private final List<ImageProbe> _imageProbes = new ArrayList<ImageProbe>();
+
+	private long _downloadTime;
+	private long _sourceTime;
+	private long _bytesRead;
+	private long _bytesDecoded;
+	private long _imageSelectionTime;
+	private long _totalTime;
+
+	/**
+	 * Beginning of the raw page, only kept while the slow request log is enabled
+	 */
+	private String _rawHead;
+
+
+
+	/**
+	 * Get the profile of the page processed by the current thread
+	 * @return Profile, null outside of LintedPage.process
+	 */
+	public static PageProfile current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Set the profile of the page processed by the current thread
+	 * @param profile	Profile, null to clear
+	 */
+	static void setCurrent(PageProfile profile) {
+		if (profile == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(profile);
+		}
+	}
+
+	synchronized void addRequest(String url, String method, int statusCode, long nanos) {
+		_requests.add(new Request(url, method, statusCode, nanos));
+	}
+
+	synchronized void addParseTime(String parserName, long nanos) {
+		_parseTimes.add(new Timing(parserName, nanos));
+	}
+
+	synchronized void addImageProbe(String url, int width, int height, long nanos) {
+		_imageProbes.add(new ImageProbe(url, width, height, nanos));
+	}
+
+	synchronized void setDownload(long downloadTime, long sourceTime, long bytesRead, long bytesDecoded) {
+		_downloadTime = downloadTime;
+		_sourceTime = sourceTime;
+		_bytesRead = bytesRead;
+		_bytesDecoded = bytesDecoded;
+	}
+
+	synchronized void setImageSelectionTime(long nanos) {
+		_imageSelectionTime = nanos;
+	}
+
+	synchronized void setTotalTime(long nanos) {
+		_totalTime = nanos;
+	}
+
+	synchronized void setRawHead(String rawHead) {
+		_rawHead = rawHead;
+	}
+
+	/**
+	 * Get every request made for the page, redirect hops first
+	 * @return Requests in order
+	 */
+	public synchronized List<Request> getRequests() {
+		return Collections.unmodifiableList(new ArrayList<Request>(_requests));
+	}
+
+	/**
+	 * Get the time to first byte of the last request, the destination page
+	 * @return Time in nanoseconds, 0 if no request was made
+	 */
+	public synchronized long getTimeToFirstByte() {
+		return _requests.isEmpty() ? 0 : _requests.get(_requests.size() - 1).getTime();
+	}
+
+	/**
+	 * Get the parse time of each ServiceParser in the chain, excluding its successors
+	 * @return Parse times in completion order
+	 */
+	public synchronized List<Timing> getParseTimes() {
+		return Collections.unmodifiableList(new ArrayList<Timing>(_parseTimes));
+	}
+
+	/**
+	 * Get the image probes started for the page
+	 * @return Probes in completion order, cancelled probes included
+	 */
+	public synchronized List<ImageProbe> getImageProbes() {
+		return Collections.unmodifiableList(new ArrayList<ImageProbe>(_imageProbes));
+	}
+
+	/**
+	 * Get the time spent reading the page body, excluding the Jericho source build
+	 * @return Time in nanoseconds
+	 */
+	public synchronized long getDownloadTime() {
+		return _downloadTime;
+	}
+
+	/**
+	 * Get the time spent building the Jericho source
+	 * @return Time in nanoseconds
+	 */
+	public synchronized long getSourceTime() {
+		return _sourceTime;
+	}
+
+	/**
+	 * Get the page body bytes received, before decompression
+	 * @return Byte count
+	 */
+	public synchronized long getBytesRead() {
+		return _bytesRead;
+	}
+
+	/**
+	 * Get the page body bytes read by the parsers, after decompression
+	 * @return Byte count
+	 */
+	public synchronized long getBytesDecoded() {
+		return _bytesDecoded;
+	}
+
+	/**
+	 * Get the time spent selecting the preview image, including probes
+	 * @return Time in nanoseconds
+	 */
+	public synchronized long getImageSelectionTime() {
+		return _imageSelectionTime;
+	}
+
+	/**
+	 * Get the processing time of the page
+	 * @return Time in nanoseconds
+	 */
+	public synchronized long getTotalTime() {
+		return _totalTime;
+	}
+
+	/**
+	 * Get the beginning of the raw page
+	 * @return Page head, null unless the slow request log is enabled
+	 */
+	public synchronized String getRawHead() {
+		return _rawHead;
+	}
+
+	/**
+	 * Output the profile as a human-readable string, one entry per line
+	 * @return Profile
+	 */
+	public synchronized String toDebugString() {
+		StringBuilder sb = new StringBuilder();
+		for (Request request : _requests) {
+			sb.append("\t").append(request.getMethod()).append(' ').append(request.getStatusCode()).append('\t');
+			appendMillis(sb, request.getTime()).append('\t').append(request.getUrl()).append('\n');
+		}
+		sb.append("\tTTFB:\t\t"); appendMillis(sb, getTimeToFirstByte()).append('\n');
+		sb.append("\tDOWNLOAD:\t"); appendMillis(sb, _downloadTime);
+		sb.append("\t").append(_bytesRead).append(" bytes read, ").append(_bytesDecoded).append(" decoded\n");
+		sb.append("\tSOURCE:\t\t"); appendMillis(sb, _sourceTime).append('\n');
+		for (Timing parse : _parseTimes) {
+			sb.append("\tPARSE:\t\t"); appendMillis(sb, parse.getTime()).append('\t').append(parse.getName()).append('\n');
+		}
+		sb.append("\tIMAGES:\t\t"); appendMillis(sb, _imageSelectionTime).append('\t').append(_imageProbes.size()).append(" probes\n");
+		for (ImageProbe probe : _imageProbes) {
+			sb.append("\t\tPROBE:\t"); appendMillis(sb, probe.getTime());
+			sb.append('\t').append(probe.getWidth()).append('x').append(probe.getHeight()).append('\t').append(probe.getUrl()).append('\n');
+		}
+		sb.append("\tTOTAL:\t\t"); appendMillis(sb, _totalTime).append('\n');
+		return sb.toString();
+	}
+
+	private static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+		return sb.append(String.format("%.3f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+	}
+
+	/**
+	 * Request with its time to first byte
+	 */
+	public static class Request {
+		private final String _url;
+		private final String _method;
+		private final int _statusCode;
+		private final long _time;
+
+		Request(String url, String method, int statusCode, long time) {
+			_url = url;
+			_method = method;
+			_statusCode = statusCode;
+			_time = time;
+		}
+
+		/**
+		 * Get the requested URL
+		 * @return URL
+		 */
+		public String getUrl() {
+			return _url;
+		}
+
+		/**
+		 * Get the HTTP method
+		 * @return Method
+		 */
+		public String getMethod() {
+			return _method;
+		}
+
+		/**
+		 * Get the HTTP status
+		 * @return Status code, -1 if the request failed
+		 */
+		public int getStatusCode() {
+			return _statusCode;
+		}
+
+		/**
+		 * Get the time until the response headers, or until the failure
+		 * @return Time in nanoseconds
+		 */
+		public long getTime() {
+			return _time;
+		}
+	}
+
+	/**
+	 * Named duration
+	 */
+	public static class Timing {
+		private final String _name;
+		private final long _time;
+
+		Timing(String name, long time) {
+			_name = name;
+			_time = time;
+		}
+
+		/**
+		 * Get the name of the timed step
+		 * @return Name
+		 */
+		public String getName() {
+			return _name;
+		}
+
+		/**
+		 * Get the duration
+		 * @return Time in nanoseconds
+		 */
+		public long getTime() {
+			return _time;
+		}
+	}
+
+	/**
+	 * Image downloaded to learn its dimensions
+	 */
+	public static class ImageProbe {
+		private final String _url;
+		private final int _width;
+		private final int _height;
+		private final long _time;
+
+		ImageProbe(String url, int width, int height, long time) {
+			_url = url;
+			_width = width;
+			_height = height;
+			_time = time;
+		}
+
+		/**
+		 * Get the image URL
+		 * @return URL
+		 */
+		public String getUrl() {
+			return _url;
+		}
+
+		/**
+		 * Get the probed width
+		 * @return Width, AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM if unknown
+		 */
+		public int getWidth() {
+			return _width;
+		}
+
+		/**
+		 * Get the probed height
+		 * @return Height, AlgorithmicImageItem.UNSPECIFIED_IMAGE_DIM if unknown
+		 */
+		public int getHeight() {
+			return _height;
+		}
+
+		/**
+		 * Get the probe duration
+		 * @return Time in nanoseconds
+		 */
+		public long getTime() {
+			return _time;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package org.linter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process-wide cache of resolved redirect chains, keyed by canonical original URL
+ *
+ * Shortened links are shared far more often than they change, so LintedPage consults
+ * this cache before making any HEAD request and reuses the recorded chain verbatim.
+ * Variants of a link that only differ in case, default port, fragment or tracking
+ * parameters share one entry, see {@link URLParser#canonicalize(String)}.
+ */
+public class RedirectCache {
+
+	/**
+	 * Default maximum number of cached chains
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/**
+	 * Default time to live of a cached chain, 1 hour
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static final RedirectCache INSTANCE = new RedirectCache();
+
+	/**
+	 * Resolved chains by canonical original URL
+	 */
+	private final ExpiringLruCache<String, Resolution> _cache;
+
+	/**
+	 * Whether the cache is consulted at all
+	 */
+	private volatile boolean _enabled = true;
+
+
+
+	/**
+	 * Get the shared instance
+	 * @return Redirect cache
+	 */
+	public static RedirectCache getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Constructor, private
+	 */
+	private RedirectCache() {
+		_cache = new ExpiringLruCache<String, Resolution>(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+	}
+
+	/**
+	 * Look up a resolved chain
+	 * @param originalUrl	Original URL
+	 * @return				Resolution, null if not cached or disabled
+	 */
+	public Resolution get(String originalUrl) {
+		if (!_enabled || originalUrl == null)
+			return null;
+		return _cache.get(URLParser.canonicalize(originalUrl));
+	}
+
+	/**
+	 * Cache a successful resolution
+	 * @param originalUrl		Original URL
+	 * @param aliases			Aliases between the original URL and its destination
+	 * @param redirectUrlList	Every URL requested, including the destination
+	 * @param destinationUrl	Resolved destination
+	 */
+	public void put(String originalUrl, List<String> aliases, List<String> redirectUrlList, String destinationUrl) {
+		if (!_enabled || originalUrl == null || destinationUrl == null)
+			return;
+		_cache.put(URLParser.canonicalize(originalUrl), new Resolution(aliases, redirectUrlList, destinationUrl));
+	}
+
+	/**
+	 * Drop all cached chains
+	 */
+	public void clear() {
+		_cache.clear();
+	}
+
+	/**
+	 * Enable or disable the cache, disabling also clears it
+	 * @param enabled	True to enable
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		if (!enabled)
+			_cache.clear();
+	}
+
+	/**
+	 * Whether the cache is consulted
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * Set the maximum number of cached chains, evicting the least recently used above it
+	 * @param maxSize	Maximum number of entries
+	 */
+	public void setMaxSize(int maxSize) {
+		_cache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Set the time to live of newly cached chains
+	 * @param ttlMillis	Time to live in milliseconds
+	 */
+	public void setTtlMillis(long ttlMillis) {
+		_cache.setTtlMillis(ttlMillis);
+	}
+
+	/**
+	 * Get the number of cached chains
+	 * @return Entry count
+	 */
+	public int size() {
+		return _cache.size();
+	}
+
+	/**
+	 * Get the number of lookups that found a chain
+	 * @return Hit count
+	 */
+	public long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	/**
+	 * Get the number of lookups that found no chain
+	 * @return Miss count
+	 */
+	public long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	/**
+	 * Get the ratio of hits to lookups
+	 * @return Hit rate between 0 and 1, 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		return _cache.getHitRate();
+	}
+
+	/**
+	 * Immutable resolved redirect chain
+	 */
+	public static class Resolution {
+		private final List<String> _aliases;
+		private final List<String> _redirectUrlList;
+		private final String _destinationUrl;
+
+		Resolution(List<String> aliases, List<String> redirectUrlList, String destinationUrl) {
+			_aliases = Collections.unmodifiableList(new ArrayList<String>(aliases));
+			_redirectUrlList = Collections.unmodifiableList(new ArrayList<String>(redirectUrlList));
+			_destinationUrl = destinationUrl;
+		}
+
+		/**
+		 * Get the URLs that redirected to the destination
+		 * @return Alias URLs, unmodifiable
+		 */
+		public List<String> getAliases() {
+			return _aliases;
+		}
+
+		/**
+		 * Get every URL followed, in order
+		 * @return Redirect URLs, unmodifiable
+		 */
+		public List<String> getRedirectUrlList() {
+			return _redirectUrlList;
+		}
+
+		/**
+		 * Get the resolved destination
+		 * @return Destination URL
+		 */
+		public String getDestinationUrl() {
+			return _destinationUrl;
+		}
+	}
+}
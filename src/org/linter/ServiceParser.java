@@ -38,6 +38,11 @@ public abstract class ServiceParser {
 			"([^#]+)?" +
 			"#?(\\w*)");
 	
+	/**
+	 * Whether scrapes stop reading at the end of the document head when the chain allows it
+	 */
+	private static volatile boolean _headOnlyScrape = true;
+	
 	/**
 	 *  Raw HTML
 	 */
@@ -68,10 +73,30 @@ public abstract class ServiceParser {
 	 */
 	protected Source _jerichoSource;
 	
+	/**
+	 *  Meta data index of the Jericho Source, shared along the chain
+	 */
+	private HtmlMetaIndex _metaIndex;
+	
 	/**
 	 *  Meta Data
 	 */
 	protected LintedData _metaData;	
+	
+	/**
+	 *  Time spent building the Jericho Source, in nanoseconds
+	 */
+	private long _sourceTime;
+	
+	/**
+	 *  Time spent in successors during the current parse, in nanoseconds
+	 */
+	private long _successorTime;
+	
+	/**
+	 *  Fetcher of the page for requests made while parsing, null for the default
+	 */
+	private PageFetcher _fetcher;
 
 	
 	
@@ -119,13 +144,83 @@ public abstract class ServiceParser {
 	 */
 	abstract public boolean parse();
 	
+	/**
+	 * Parse, recording the time of this parser excluding its successors in {@link LinterMetrics}
+	 * and the profile of the current page, and a flight recorder event
+	 * 
+	 * @return boolean true if successful
+	 */
+	final boolean parseTimed() {
+		LinterEvents.Parse event = new LinterEvents.Parse();
+		event.begin();
+		_successorTime = 0;
+		long start = System.nanoTime();
+		boolean ret = parse();
+		event.end();
+		if( event.shouldCommit() ) {
+			event.url = _url;
+			event.host = LinterEvents.getHost( _url );
+			event.outcome = ret ? "ok" : "failed";
+			event.parser = getClass().getSimpleName();
+			event.commit();
+		}
+		long time = System.nanoTime() - start - _successorTime;
+		LinterMetrics.getInstance().recordParse( getClass(), time );
+		PageProfile profile = PageProfile.current();
+		if( profile != null ) {
+			profile.addParseTime( getClass().getSimpleName(), time );
+		}
+		return ret;
+	}
+	
 	/**
 	 * Set the raw HTML used by the parser
+	 * 
+	 * In head-only mode only the document head is read if no parser in the chain needs the
+	 * body, see {@link #needsFullBody(HtmlMetaIndex)}; the rest of the stream is left unread so the
+	 * caller can close the connection early.
+	 * 
 	 * @param rawContent	InputStream of HTML source for use with Jericho parser
 	 */
 	public void setRawContent(InputStream rawContent) {
 		_rawContent = rawContent;
-		initJerichoSource();
+		_sourceTime = 0;
+		if( _headOnlyScrape ) {
+			initJerichoSourceStreamed();
+		} else {
+			initJerichoSource();
+		}
+	}
+	
+	/**
+	 * Enable or disable head-only scraping for all parsers, enabled by default
+	 * 
+	 * @param headOnlyScrape	True to stop reading after the document head when possible
+	 */
+	public static void setHeadOnlyScrape( boolean headOnlyScrape ) {
+		_headOnlyScrape = headOnlyScrape;
+	}
+	
+	/**
+	 * Determine if this parser or its successors need the document body, given its head
+	 * 
+	 * Parsers that only use head meta data override this; the default is conservative
+	 * 
+	 * @param head	Meta data index of the document head only
+	 * @return		True if the whole document must be read
+	 */
+	public boolean needsFullBody( HtmlMetaIndex head ) {
+		return true;
+	}
+	
+	/**
+	 * Determine if any successor ServiceParser needs the document body
+	 * 
+	 * @param head	Meta data index of the document head only
+	 * @return		True if a successor needs the whole document
+	 */
+	protected boolean successorNeedsFullBody( HtmlMetaIndex head ) {
+		return _successor != null && _successor.needsFullBody( head );
 	}
 	
 	/**
@@ -138,6 +233,28 @@ public abstract class ServiceParser {
 		_successor = successor;
 	}
 	
+	/**
+	 * Set the fetcher for requests made while parsing, e.g. image probes, on this parser
+	 * and all successors
+	 * 
+	 * @param fetcher	Fetcher of the page, null for the default
+	 */
+	public void setFetcher( PageFetcher fetcher ) {
+		_fetcher = fetcher;
+		if( _successor != null ) {
+			_successor.setFetcher( fetcher );
+		}
+	}
+	
+	/**
+	 * Get the fetcher for requests made while parsing
+	 * 
+	 * @return Fetcher of the page, the default if none was set
+	 */
+	protected PageFetcher getFetcher() {
+		return ( _fetcher != null ) ? _fetcher : LintedPage.getDefaultFetcher();
+	}
+	
 	/**
 	 * Set the URL Redirection List for ServiceParsers that need access to
 	 * all URLs leading to the final, resolved URL
@@ -164,8 +281,11 @@ public abstract class ServiceParser {
 				
 		if( _successor != null ) {
 			_successor.setJerichoSource( getJerichoSource() );
+			_successor.setMetaIndex( getMetaIndex() );
 			_successor.setMetaData( getMetaData() );
-			ret  = _successor.parse();
+			long start = System.nanoTime();
+			ret  = _successor.parseTimed();
+			_successorTime += System.nanoTime() - start;
 			if( ret ) {
 				getMetaData().mergeLintedData( _successor.getMetaData() );
 				setParseError( _successor.getParseError() );
@@ -175,6 +295,16 @@ public abstract class ServiceParser {
 		return ret;
 	}
 	
+	/**
+	 * Get the time spent building the Jericho Source from the raw content, when not
+	 * scraping head-only this includes reading the content
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	long getSourceTime() {
+		return _sourceTime;
+	}
+	
 	/**
 	 * Set the Jericho Source
 	 * 
@@ -182,6 +312,16 @@ public abstract class ServiceParser {
 	 */
 	public void setJerichoSource( Source source ) {
 		_jerichoSource = source;
+		_metaIndex = null;
+	}
+	
+	/**
+	 * Set the meta data index of the current Jericho Source
+	 * 
+	 * @param metaIndex	Index built from the Jericho source, null to rebuild on demand
+	 */
+	public void setMetaIndex( HtmlMetaIndex metaIndex ) {
+		_metaIndex = metaIndex;
 	}
 	
 	/**
@@ -221,11 +361,47 @@ public abstract class ServiceParser {
 	 * Initialize Jerichio parser from raw HTML
 	 */
 	private void initJerichoSource() {		
+		long start = System.nanoTime();
 		try {
 			 _jerichoSource = new Source(_rawContent);
 		} catch (Exception ex) {
 			logger.error( "Exception initializing Jericho source: " + ex );
 		}
+		_sourceTime = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Initialize Jericho parser from the document head only, reading the body only if the chain needs it
+	 */
+	private void initJerichoSourceStreamed() {
+		HtmlHeadReader reader = null;
+		try {
+			reader = new HtmlHeadReader( _rawContent );
+			if( reader.readHead() ) {
+				long start = System.nanoTime();
+				Source head = new Source( reader.getHeadStream() );
+				HtmlMetaIndex headIndex = new HtmlMetaIndex( head );
+				_sourceTime += System.nanoTime() - start;
+				if( !needsFullBody( headIndex ) ) {
+					logger.trace( "Head-only scrape, skipping body after " + reader.getBytesRead() + " bytes" );
+					_jerichoSource = head;
+					_metaIndex = headIndex;
+					return;
+				}
+			}
+			
+			reader.readRemaining();
+			long start = System.nanoTime();
+			_jerichoSource = new Source( reader.getContentStream() );
+			_sourceTime += System.nanoTime() - start;
+		} catch (Exception ex) {
+			logger.error( "Exception initializing Jericho source: " + ex );
+		} finally {
+			// Source copies its input, the buffer can be reused right away
+			if( reader != null ) {
+				reader.release();
+			}
+		}
 	}
 	
 	/**
@@ -235,6 +411,17 @@ public abstract class ServiceParser {
 	protected Source getJerichoSource() {
 		return _jerichoSource;
 	}
+	
+	/**
+	 * Get the meta data index of the current Jericho Source, built on first use
+	 * @return Meta data index, null if there is no source
+	 */
+	protected HtmlMetaIndex getMetaIndex() {
+		if( _metaIndex == null && getJerichoSource() != null ) {
+			_metaIndex = new HtmlMetaIndex( getJerichoSource() );
+		}
+		return _metaIndex;
+	}
 
 	/**
 	 * Get meta data JSON
@@ -269,16 +456,7 @@ public abstract class ServiceParser {
 	 * @return true if partial parser
 	 */
 	public boolean isPartialParser() {
-		
-		Class<?> cls = this.getClass().getSuperclass();
-		while( cls != null ) {
-			if( cls == ServiceParserPartial.class ) {
-				return true;
-			}
-			cls = cls.getSuperclass();
-		}
-		
-		return false;
+		return this instanceof ServiceParserPartial;
 	}
 	
 	/**
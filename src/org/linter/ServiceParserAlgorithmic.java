@@ -7,7 +7,6 @@ import java.util.regex.Pattern;
 import net.htmlparser.jericho.CharacterReference;
 import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.HTMLElementName;
-import net.htmlparser.jericho.Source;
 
 
 /**
@@ -54,23 +53,69 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 		return PATTERN;
 	}	
 	
+	/**
+	 * The head alone is enough when it provides the title, a description and a preview
+	 * image; otherwise the body is read for algorithmic image selection and for a title
+	 * or description misplaced after the head
+	 * 
+	 * @param head	Meta data index of the document head only
+	 * @return		True if the whole document must be read
+	 */
+	@Override public boolean needsFullBody( HtmlMetaIndex head ) {
+		return !hasTitle( head ) || !hasDescription( head ) || getMetaPreviewImageUrl( head ) == null || successorNeedsFullBody( head );
+	}
+	
+	/**
+	 * Check for a non-empty title element
+	 * 
+	 * @param index	Meta data index
+	 * @return		True if the title is present
+	 */
+	private boolean hasTitle( HtmlMetaIndex index ) {
+		Element titleElement = index.getTitleElement();
+		return titleElement != null && !titleElement.getContent().toString().trim().isEmpty();
+	}
+	
+	/**
+	 * Check for a description or og:description meta tag with content, as read by parseDescription
+	 * 
+	 * @param index	Meta data index
+	 * @return		True if a description is present
+	 */
+	private boolean hasDescription( HtmlMetaIndex index ) {
+		return hasMetaContent( index.getFirstElement( "name", "description" ) ) || hasMetaContent( index.getFirstElement( "property", "og:description" ) );
+	}
+	
+	/**
+	 * Check an element is a meta tag with non-empty content
+	 * 
+	 * @param element	Element, may be null
+	 * @return			True if it has content
+	 */
+	private boolean hasMetaContent( Element element ) {
+		if( element == null || !element.getName().equalsIgnoreCase( HTMLElementName.META ) )
+			return false;
+		String contentAttr = element.getAttributeValue( "content" );
+		return contentAttr != null && !contentAttr.trim().isEmpty();
+	}
+	
 	/*
 	 * Parse meta data using common meta data fields or algorithms
 	 * 
 	 * @return True if successful 
 	 */
 	@Override public boolean parse() {
-		Source source = getJerichoSource();
+		HtmlMetaIndex index = getMetaIndex();
 
-		if( source == null ) {
+		if( index == null ) {
 			logger.warn( "Source is null! Skipping." );
 			return false;
 		}
 		
-		parseTitle( source );
-		parseDescription( source );
-		parseFavIconUrl( source );	
-		parsePreviewImage( source );
+		parseTitle( index );
+		parseDescription( index );
+		parseFavIconUrl( index );	
+		parsePreviewImage( index );
 		parseWithSuccessor();
 		return true;
 	}
@@ -78,10 +123,10 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 	/**
 	 * Parse page title, store to meta data
 	 * 
-	 * @param source	Jericho HTML parser source
+	 * @param index	Meta data index of the page
 	 * @return 			True if successful
 	 */	
-	protected boolean parseTitle( Source source ) {
+	protected boolean parseTitle( HtmlMetaIndex index ) {
 		logger.trace(_logPrefix + "Scraping page title...");
 		
 		// Page title
@@ -89,7 +134,7 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 		boolean success = false;
 		
 		try {
-			Element titleElement = source.getFirstElement(HTMLElementName.TITLE);
+			Element titleElement = index.getTitleElement();
 			if (titleElement != null) {
 				title = CharacterReference.decodeCollapseWhiteSpace(titleElement.getContent());
 				logger.trace(_logPrefix + "TITLE: " + title);
@@ -109,10 +154,10 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 	/**
 	 * Parse page description, store to meta data
 	 * 
-	 * @param source	Jericho HTML parser source
+	 * @param index	Meta data index of the page
 	 * @return 			True if successful
 	 */	
-	protected boolean parseDescription( Source source ) {
+	protected boolean parseDescription( HtmlMetaIndex index ) {
 		logger.trace(_logPrefix + "Scraping description...");
 		
 		// Description
@@ -121,7 +166,7 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 		boolean success = false;
 		
 		try {
-			Element descElement = source.getFirstElement("name", "description", false);
+			Element descElement = index.getFirstElement("name", "description");
 			if (descElement != null && descElement.getName().equalsIgnoreCase(HTMLElementName.META)) {
 				String contentAttr = descElement.getAttributeValue("content");
 				if (contentAttr != null)
@@ -131,7 +176,7 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 			// Check for og:description tag
 			// <meta property="og:description" content="Description text">
 			if( description.isEmpty() ) {
-				descElement = source.getFirstElement( "property", "og:description", false );
+				descElement = index.getFirstElement( "property", "og:description" );
 				if( descElement != null && descElement.getName().equalsIgnoreCase( HTMLElementName.META ) ) {
 					String contentAttr = descElement.getAttributeValue( "content" );
 					if( contentAttr != null ) {
@@ -159,10 +204,10 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 	/**
 	 * Parse page Favicon, store to meta data
 	 * 
-	 * @param source	Jericho HTML parser source
+	 * @param index	Meta data index of the page
 	 * @return 			True if successful
 	 */		
-	protected boolean parseFavIconUrl( Source source ) {
+	protected boolean parseFavIconUrl( HtmlMetaIndex index ) {
 		logger.trace(_logPrefix + "Scraping favicon URL...");
 		
 		// Favicon
@@ -172,8 +217,8 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 		try {
 			// Get a list of all 'icon' and 'shortcut icon' elements
 			List<Element> relIconElements = new ArrayList<Element>();
-			relIconElements.addAll(source.getAllElements("rel", "icon", false));
-			relIconElements.addAll(source.getAllElements("rel", "shortcut icon", false));
+			relIconElements.addAll(index.getAllElements("rel", "icon"));
+			relIconElements.addAll(index.getAllElements("rel", "shortcut icon"));
 			
 			for (Element element : relIconElements) {
 				if (element.getName().equalsIgnoreCase(HTMLElementName.LINK)) {
@@ -208,40 +253,19 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 	/**
 	 * Parse page preview image url, store to meta data
 	 * 
-	 * @param source	Jericho HTML parser source
+	 * @param index	Meta data index of the page
 	 * @return 			True if successful
 	 */		
-	protected boolean parsePreviewImage( Source source ) {
+	protected boolean parsePreviewImage( HtmlMetaIndex index ) {
 		logger.trace( _logPrefix + "Seleceting preview image" );
 		
-		String imagePreviewUrl = null;
-		
-		// Check if an image preview is provided in known meta tags
-		// <meta property="og:image" content="http://www.provider.com/image.jpg" />
-		// <link rel="image_src" href="http://www.provider.com/image.jpg" />
-		Element imagePreviewOG = source.getFirstElement( "property", "og:image", false );
-		if( imagePreviewOG != null ) {			
-			String imagePreviewUrlOG = imagePreviewOG.getAttributeValue( "content" ); 
-			if( isPreviewUrlValid( imagePreviewUrlOG ) ) {
-				imagePreviewUrl = imagePreviewUrlOG;
-				logger.trace( _logPrefix + "Preview image found in og:image" );
-			}			
-		}
-		
-		if( imagePreviewUrl == null ) {
-			Element imagePreviewRel = source.getFirstElement( "rel", "image_src", false );
-			if( imagePreviewRel != null ) {
-				String imagePreviewUrlRel = imagePreviewRel.getAttributeValue( "href" );
-				if( isPreviewUrlValid( imagePreviewUrlRel ) ) {
-					imagePreviewUrl = imagePreviewUrlRel;
-					logger.trace( _logPrefix + "Preview image found in link rel=image_src" );
-				}				
-			}
-		}
+		String imagePreviewUrl = getMetaPreviewImageUrl( index );
 		
 		// If the preview image is not specified, determine it algorithmically
 		if( imagePreviewUrl == null ) {
-			AlgorithmicImageSelector selector = new AlgorithmicImageSelector( source, getProviderUrl(), _logPrefix );
+			AlgorithmicImageSelector selector = new AlgorithmicImageSelector( index, getProviderUrl(), _logPrefix );
+			selector.setPageUrl( getUrl() );
+			selector.setFetcher( getFetcher() );
 			imagePreviewUrl = selector.getPreviewUrl();
 			logger.trace( _logPrefix + "Preview image found algorithmically" );			
 		}		
@@ -266,6 +290,41 @@ public class ServiceParserAlgorithmic extends ServiceParser {
 		return true;
 	}
 
+	/**
+	 * Get the preview image specified by meta data, if any
+	 * 
+	 * @param index	Meta data index of the page
+	 * @return			Preview image url, null if not specified
+	 */
+	private String getMetaPreviewImageUrl( HtmlMetaIndex index ) {
+		String imagePreviewUrl = null;
+		
+		// Check if an image preview is provided in known meta tags
+		// <meta property="og:image" content="http://www.provider.com/image.jpg" />
+		// <link rel="image_src" href="http://www.provider.com/image.jpg" />
+		Element imagePreviewOG = index.getFirstElement( "property", "og:image" );
+		if( imagePreviewOG != null ) {			
+			String imagePreviewUrlOG = imagePreviewOG.getAttributeValue( "content" ); 
+			if( isPreviewUrlValid( imagePreviewUrlOG ) ) {
+				imagePreviewUrl = imagePreviewUrlOG;
+				logger.trace( _logPrefix + "Preview image found in og:image" );
+			}			
+		}
+		
+		if( imagePreviewUrl == null ) {
+			Element imagePreviewRel = index.getFirstElement( "rel", "image_src" );
+			if( imagePreviewRel != null ) {
+				String imagePreviewUrlRel = imagePreviewRel.getAttributeValue( "href" );
+				if( isPreviewUrlValid( imagePreviewUrlRel ) ) {
+					imagePreviewUrl = imagePreviewUrlRel;
+					logger.trace( _logPrefix + "Preview image found in link rel=image_src" );
+				}				
+			}
+		}
+		
+		return imagePreviewUrl;
+	}
+
 	/**
 	 * Basic test for valid image preview urls, 
 	 * Test for null, empty, and '/', Relative URLs are acceptable
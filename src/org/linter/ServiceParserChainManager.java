@@ -1,7 +1,14 @@
 package org.linter;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
@@ -10,6 +17,11 @@ import org.apache.log4j.Logger;
  * Manage ServiceParser Chains of Responsibility
  * Linter and consumers register ServiceParsers capable of parsing all or specific URLs
  * LintedPages requires ServiceParsers appropriate for their URL
+ * 
+ * Lookups are lock-free on an immutable snapshot of the registrations; each
+ * registration publishes a modified copy, so parsers can be registered at runtime.
+ * Resolved chain shapes are cached per host with the snapshot, so building a chain
+ * is usually just instantiating and linking the parsers of a template.
  */
 public class ServiceParserChainManager {
 	
@@ -21,12 +33,17 @@ public class ServiceParserChainManager {
 	/**
 	 *  Singleton instance
 	 */
-	private static ServiceParserChainManager _instance = null;
+	private static final ServiceParserChainManager INSTANCE = new ServiceParserChainManager();
 
 	/**
-	 *  Mapping or registered services and their patterns
+	 *  Maximum number of hosts with cached routes per snapshot
 	 */
-	private HashMap<Pattern, Class<?> > _servicePatterns;
+	private static final int MAX_ROUTES = 10000;
+	
+	/**
+	 *  Registered services and their cached routes, replaced on registration
+	 */
+	private volatile Snapshot _snapshot;
 	
 	
 	
@@ -35,34 +52,73 @@ public class ServiceParserChainManager {
 	 * @return Singleton instance
 	 */
 	public static ServiceParserChainManager getInstance() {
-		if( _instance == null ) {
-			_instance = new ServiceParserChainManager();
-		}
-		return _instance;
+		return INSTANCE;
 	}
 	
 	/*
 	 * Constructor, private
 	 */
 	private ServiceParserChainManager() {
-		_servicePatterns = new HashMap<Pattern, Class<?> >();
+		_snapshot = new Snapshot( new ServiceParserIndex() );
 	}
 	
 	/**
 	 * Register a ServiceParser with the ChainManager
 	 * 
+	 * The class needs an accessible no-argument constructor, resolved once here
+	 * 
 	 * @param serviceParserClass	Class name of ServiceParser type
 	 */
-	public void registerServiceParser(Class<?> serviceParserClass) {
-		logger.info( "Registering ServiceParser type: " + serviceParserClass );
-		
+	public void registerServiceParser(final Class<?> serviceParserClass) {
+		final MethodHandle constructor;
 		try {
-			ServiceParser parser = (ServiceParser) serviceParserClass.newInstance();
-			_servicePatterns.put( parser.getServicePattern(), serviceParserClass );
+			constructor = MethodHandles.lookup().findConstructor( serviceParserClass, MethodType.methodType( void.class ) )
+					.asType( MethodType.methodType( ServiceParser.class ) );
 		} catch( Exception e ) {
 			logger.error( "Exception instantiating ServiceParser class: " + e );
+			return;
 		}
 		
+		registerServiceParser( new Supplier<ServiceParser>() {
+			public ServiceParser get() {
+				try {
+					return (ServiceParser) constructor.invokeExact();
+				} catch( RuntimeException e ) {
+					throw e;
+				} catch( Throwable t ) {
+					throw new IllegalStateException( "Failed to construct " + serviceParserClass, t );
+				}
+			}
+		} );
+	}
+	
+	/**
+	 * Register a ServiceParser factory with the ChainManager
+	 * 
+	 * Chains list matching parsers in registration order; registering a class again
+	 * replaces its pattern but keeps its position
+	 * 
+	 * @param factory	Creates new ServiceParser instances, e.g. ServiceParserTypesetter::new
+	 */
+	public synchronized void registerServiceParser(Supplier<? extends ServiceParser> factory) {
+		try {
+			// One instance provides the pattern and type
+			ServiceParser parser = factory.get();
+			logger.info( "Registering ServiceParser type: " + parser.getClass() );
+			
+			Pattern pattern = parser.getServicePattern();
+			if( pattern == null ) {
+				logger.warn( "ServiceParser has no pattern, not registered: " + parser.getClass() );
+				return;
+			}
+			
+			// Routes of the previous snapshot are dropped with it
+			ServiceParserIndex index = _snapshot.index.copy();
+			index.add( pattern, parser.getClass(), factory, parser.isPartialParser() );
+			_snapshot = new Snapshot( index );
+		} catch( Exception e ) {
+			logger.error( "Exception instantiating ServiceParser class: " + e );
+		}
 	}
 	
 	/**
@@ -74,35 +130,20 @@ public class ServiceParserChainManager {
 	public ServiceParser getServiceParser(String url) {
 		logger.trace( "Determining appropriate ServiceParsers for url: " + url );
 		
-		ArrayList<ServiceParser> fullParserList = new ArrayList<ServiceParser>();
-		ArrayList<ServiceParser> partialParserList = new ArrayList<ServiceParser>();
+		Snapshot snapshot = _snapshot;
+		String authority = ServiceParserIndex.getAuthority( url );
+		String routeKey = ( authority == null ) ? "" : authority;
 		
-		for( Pattern p : _servicePatterns.keySet() ) {
-
-			if( p != null && p.matcher( url ).matches() ) {
-				try {
-					ServiceParser parser = (ServiceParser) _servicePatterns.get( p ).newInstance();
-					if( parser.isPartialParser() ) {
-						partialParserList.add( parser );
-					} else {
-						fullParserList.add( parser );
-					}
-					
-					logger.trace( "Found parser: " + parser.getClass() );
-				} catch( Exception e ) {
-					logger.error( "Failed to instantiate ServiceParser: " + e );
-				}
+		Route route = snapshot.routes.get( routeKey );
+		if( route == null ) {
+			if( snapshot.routes.size() >= MAX_ROUTES ) {
+				snapshot.routes.clear();
 			}
+			route = new Route( snapshot.index.getCandidates( authority ) );
+			snapshot.routes.put( routeKey, route );
 		}
 		
-		if( fullParserList.size() == 0 ) {
-			fullParserList.add( new ServiceParserAlgorithmic() );
-		}
-		
-		ArrayList<ServiceParser> parserList = new ArrayList<ServiceParser>();
-		parserList.addAll( fullParserList );
-		parserList.addAll( partialParserList );		
-		ServiceParser ret = linkParserList( parserList );
+		ServiceParser ret = route.getTemplate( url, ServiceParserIndex.getPath( url, authority ) ).newChain();
 		ret.initialize( url );
 		return ret;
 	}
@@ -112,7 +153,7 @@ public class ServiceParserChainManager {
 	 * 
 	 * @return All passed ServiceParsers as a linked list
 	 */
-	private ServiceParser linkParserList( ArrayList<ServiceParser> parserList ) {
+	private static ServiceParser linkParserList( ArrayList<ServiceParser> parserList ) {
 		
 		for( int i = 0; i < parserList.size() - 1; i++ ) {
 			parserList.get( i ).setSuccessor( parserList.get( i + 1 ) );
@@ -120,5 +161,119 @@ public class ServiceParserChainManager {
 		
 		return parserList.get( 0 );
 	}
-
+	
+	/**
+	 * Registrations and the routes resolved from them
+	 */
+	private static class Snapshot {
+		final ServiceParserIndex index;
+		
+		// Routes by URL authority, "" for URLs without one
+		final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+		
+		Snapshot( ServiceParserIndex index ) {
+			this.index = index;
+		}
+	}
+	
+	/**
+	 * Candidate registrations of one host and the chain templates they produced
+	 */
+	private static class Route {
+		
+		// Candidates in registration order
+		private final ServiceParserIndex.Entry[] _candidates;
+		
+		// Positions of candidates that need a path and pattern check
+		private final int[] _conditional;
+		
+		// Templates by the set of conditional candidates that matched
+		private final ConcurrentHashMap<BitSet, Template> _templates = new ConcurrentHashMap<BitSet, Template>();
+		
+		Route( List<ServiceParserIndex.Entry> candidates ) {
+			_candidates = candidates.toArray( new ServiceParserIndex.Entry[candidates.size()] );
+			int count = 0;
+			int[] conditional = new int[_candidates.length];
+			for( int i = 0; i < _candidates.length; i++ ) {
+				if( !_candidates[i].isUnconditional() ) {
+					conditional[count++] = i;
+				}
+			}
+			_conditional = Arrays.copyOf( conditional, count );
+		}
+		
+		/**
+		 * Get the chain template of a URL of this host
+		 */
+		Template getTemplate( String url, String path ) {
+			BitSet matched = new BitSet( _conditional.length );
+			for( int i = 0; i < _conditional.length; i++ ) {
+				if( _candidates[_conditional[i]].matches( url, path ) ) {
+					matched.set( i );
+				}
+			}
+			
+			Template template = _templates.get( matched );
+			if( template == null ) {
+				template = new Template( select( matched ) );
+				_templates.put( matched, template );
+			}
+			return template;
+		}
+		
+		/**
+		 * Matching candidates in chain order: full parsers first, then partial parsers
+		 */
+		private ArrayList<ServiceParserIndex.Entry> select( BitSet matched ) {
+			ArrayList<ServiceParserIndex.Entry> full = new ArrayList<ServiceParserIndex.Entry>();
+			ArrayList<ServiceParserIndex.Entry> partial = new ArrayList<ServiceParserIndex.Entry>();
+			for( int i = 0, c = 0; i < _candidates.length; i++ ) {
+				boolean isConditional = ( c < _conditional.length && _conditional[c] == i );
+				if( !isConditional || matched.get( c ) ) {
+					( _candidates[i].isPartial() ? partial : full ).add( _candidates[i] );
+				}
+				if( isConditional ) {
+					c++;
+				}
+			}
+			full.addAll( partial );
+			return full;
+		}
+	}
+	
+	/**
+	 * Resolved chain shape: registrations to instantiate and link, in chain order
+	 */
+	private static class Template {
+		private final ServiceParserIndex.Entry[] _entries;
+		
+		Template( List<ServiceParserIndex.Entry> entries ) {
+			_entries = entries.toArray( new ServiceParserIndex.Entry[entries.size()] );
+		}
+		
+		/**
+		 * Instantiate and link a new chain, led by the algorithmic parser if no full parser is available
+		 */
+		ServiceParser newChain() {
+			ArrayList<ServiceParser> parserList = new ArrayList<ServiceParser>( _entries.length + 1 );
+			boolean hasFullParser = false;
+			for( ServiceParserIndex.Entry entry : _entries ) {
+				try {
+					ServiceParser parser = entry.newParser();
+					parserList.add( parser );
+					hasFullParser |= !entry.isPartial();
+					
+					logger.trace( "Found parser: " + parser.getClass() );
+				} catch( Exception e ) {
+					logger.error( "Failed to instantiate ServiceParser: " + e );
+				}
+			}
+			
+			if( !hasFullParser ) {
+				parserList.add( 0, new ServiceParserAlgorithmic() );
+			}
+			
+			return linkParserList( parserList );
+		}
+	}
 }
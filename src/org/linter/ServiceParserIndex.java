@@ -0,0 +1,481 @@
+package org.linter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Dispatch index of ServiceParser registrations by URL host and literal path prefix
+ *
+ * The host and path prefix a pattern requires are read from its regex source, e.g.
+ * "http://flickr\.com/photos/.*" is indexed under host flickr.com with path prefix
+ * "/photos/". Lookups only run the full regex of registrations whose host and prefix
+ * fit the URL, plus the residual registrations whose pattern could not be indexed, such
+ * as wildcards. Matches are returned in registration order.
+ *
+ * Understood host forms, after an optional ^ and an http or https scheme:
+ *   literal host					flickr\.com/
+ *   optional www subdomain			(www\.)?flickr\.com/
+ *   any subdomain					[^/]+\.posterous\.com/
+ *   optional any subdomain			([^/]+\.)?posterous\.com/
+ * Not thread-safe for modification; ServiceParserChainManager modifies a {@link #copy()}
+ * and publishes it, so published indexes are only read.
+ */
+public class ServiceParserIndex {
+
+	/**
+	 * Scheme prefixes understood, all matching http:// or https://
+	 */
+	private static final String[] SCHEMES = {
+		"https?://", "http[s]?://", "(http|https)://", "(?:http|https)://", "(https?)://", "(?:https?)://", "http://", "https://"
+	};
+
+	/**
+	 * Host prefixes making the www subdomain optional
+	 */
+	private static final String[] OPTIONAL_WWW = { "(www\\.)?", "(?:www\\.)?" };
+
+	/**
+	 * Host prefixes requiring any subdomain
+	 */
+	private static final String[] ANY_SUBDOMAIN = { "[^/]+\\.", "[^/]*\\." };
+
+	/**
+	 * Host prefixes allowing any subdomain or none
+	 */
+	private static final String[] OPTIONAL_SUBDOMAIN = { "([^/]+\\.)?", "(?:[^/]+\\.)?", "([^/]*\\.)?", "(?:[^/]*\\.)?" };
+
+	/**
+	 * Regex meta characters
+	 */
+	private static final String META = ".*+?()[]{}|^$\\";
+
+	/**
+	 * Orders matches by registration
+	 */
+	private static final Comparator<Entry> REGISTRATION_ORDER = new Comparator<Entry>() {
+		public int compare(Entry a, Entry b) {
+			return Integer.compare(a._order, b._order);
+		}
+	};
+
+	/**
+	 * Registrations by exact host
+	 */
+	private final HashMap<String, ArrayList<Entry>> _byHost = new HashMap<String, ArrayList<Entry>>();
+
+	/**
+	 * Registrations by host suffix, including its leading dot
+	 */
+	private final HashMap<String, ArrayList<Entry>> _bySuffix = new HashMap<String, ArrayList<Entry>>();
+
+	/**
+	 * Registrations matched by regex only, in registration order
+	 */
+	private final ArrayList<Entry> _residual = new ArrayList<Entry>();
+
+	/**
+	 * All registrations by ServiceParser class, in registration order
+	 */
+	private final LinkedHashMap<Class<?>, Entry> _entries = new LinkedHashMap<Class<?>, Entry>();
+
+	/**
+	 * Order of the next new registration
+	 */
+	private int _nextOrder = 0;
+
+
+
+	/**
+	 * Create an empty index
+	 */
+	public ServiceParserIndex() {
+	}
+
+	/**
+	 * Create an independent copy of an index, sharing its immutable registrations
+	 * @param other	Index to copy
+	 */
+	private ServiceParserIndex(ServiceParserIndex other) {
+		for (Map.Entry<String, ArrayList<Entry>> e : other._byHost.entrySet()) {
+			_byHost.put(e.getKey(), new ArrayList<Entry>(e.getValue()));
+		}
+		for (Map.Entry<String, ArrayList<Entry>> e : other._bySuffix.entrySet()) {
+			_bySuffix.put(e.getKey(), new ArrayList<Entry>(e.getValue()));
+		}
+		_residual.addAll(other._residual);
+		_entries.putAll(other._entries);
+		_nextOrder = other._nextOrder;
+	}
+
+	/**
+	 * Copy the index for modification
+	 * @return Independent copy
+	 */
+	public ServiceParserIndex copy() {
+		return new ServiceParserIndex(this);
+	}
+
+	/**
+	 * Register a ServiceParser class, replacing an earlier registration of the same class in place
+	 * @param pattern		URL pattern of the ServiceParser
+	 * @param parserClass	ServiceParser class
+	 * @param factory		Creates ServiceParser instances
+	 * @param partial		Whether the parser is a ServiceParserPartial, run after full parsers
+	 */
+	public void add(Pattern pattern, Class<?> parserClass, Supplier<? extends ServiceParser> factory, boolean partial) {
+		Entry previous = _entries.get(parserClass);
+		int order = (previous == null) ? _nextOrder++ : previous._order;
+		if (previous != null) {
+			unindex(previous);
+		}
+
+		Entry entry = new Entry(pattern, parserClass, factory, partial, order);
+		_entries.put(parserClass, entry);
+		index(entry, pattern);
+	}
+
+	/**
+	 * Get the registrations whose pattern matches a URL
+	 * @param url	URL string
+	 * @return		Matching registrations in registration order
+	 */
+	public List<Entry> match(String url) {
+		String authority = getAuthority(url);
+		String path = getPath(url, authority);
+		List<Entry> candidates = getCandidates(authority);
+
+		ArrayList<Entry> matches = new ArrayList<Entry>(candidates.size());
+		for (Entry entry : candidates) {
+			if (entry.matches(url, path)) {
+				matches.add(entry);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Get the registrations that may match URLs of an authority, before path and regex checks
+	 * @param authority	Authority from {@link #getAuthority(String)}, null for URLs other than http and https
+	 * @return			Candidate registrations in registration order
+	 */
+	public List<Entry> getCandidates(String authority) {
+		ArrayList<Entry> candidates = new ArrayList<Entry>();
+		if (authority != null) {
+			addAll(candidates, _byHost.get(authority));
+			for (int dot = authority.indexOf('.'); dot >= 0; dot = authority.indexOf('.', dot + 1)) {
+				addAll(candidates, _bySuffix.get(authority.substring(dot)));
+			}
+		}
+		candidates.addAll(_residual);
+		if (candidates.size() > 1) {
+			Collections.sort(candidates, REGISTRATION_ORDER);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Get the number of registrations
+	 * @return Registration count
+	 */
+	public int size() {
+		return _entries.size();
+	}
+
+	/**
+	 * Get the number of registrations matched by regex only
+	 * @return Residual registration count
+	 */
+	public int getResidualCount() {
+		return _residual.size();
+	}
+
+	private static void addAll(List<Entry> candidates, List<Entry> entries) {
+		if (entries != null)
+			candidates.addAll(entries);
+	}
+
+	/**
+	 * Add a registration to the index lists its pattern allows
+	 */
+	private void index(Entry entry, Pattern pattern) {
+		String source = pattern.pattern();
+		if (source.equals(".*") || source.equals("^.*$") || source.equals("^.*")) {
+			entry._matchesAll = true;
+		}
+
+		if ((pattern.flags() & (Pattern.LITERAL | Pattern.COMMENTS)) != 0 || !parse(entry, source)) {
+			_residual.add(entry);
+			return;
+		}
+
+		if (entry._exactHost != null)
+			listFor(_byHost, entry._exactHost).add(entry);
+		if (entry._wwwHost != null)
+			listFor(_byHost, entry._wwwHost).add(entry);
+		if (entry._hostSuffix != null)
+			listFor(_bySuffix, entry._hostSuffix).add(entry);
+	}
+
+	/**
+	 * Remove a registration from all index lists
+	 */
+	private void unindex(Entry entry) {
+		_residual.remove(entry);
+		for (ArrayList<Entry> entries : _byHost.values()) {
+			entries.remove(entry);
+		}
+		for (ArrayList<Entry> entries : _bySuffix.values()) {
+			entries.remove(entry);
+		}
+	}
+
+	private static ArrayList<Entry> listFor(HashMap<String, ArrayList<Entry>> map, String key) {
+		ArrayList<Entry> entries = map.get(key);
+		if (entries == null) {
+			entries = new ArrayList<Entry>();
+			map.put(key, entries);
+		}
+		return entries;
+	}
+
+	/**
+	 * Read the required host and path prefix from a regex
+	 * @return True if indexable, false if the registration is residual
+	 */
+	private static boolean parse(Entry entry, String re) {
+		int pos = re.startsWith("^") ? 1 : 0;
+
+		String scheme = startsWithAny(re, pos, SCHEMES);
+		if (scheme == null)
+			return false;
+		pos += scheme.length();
+
+		String www = startsWithAny(re, pos, OPTIONAL_WWW);
+		String anySub = (www == null) ? startsWithAny(re, pos, ANY_SUBDOMAIN) : null;
+		String optionalSub = (www == null && anySub == null) ? startsWithAny(re, pos, OPTIONAL_SUBDOMAIN) : null;
+		if (www != null)
+			pos += www.length();
+		else if (anySub != null)
+			pos += anySub.length();
+		else if (optionalSub != null)
+			pos += optionalSub.length();
+
+		// Literal host up to the first path slash, anything else is not indexed
+		StringBuilder host = new StringBuilder();
+		while (pos < re.length() && re.charAt(pos) != '/') {
+			char c = re.charAt(pos);
+			if (c == '\\' && pos + 1 < re.length() && (re.charAt(pos + 1) == '.' || re.charAt(pos + 1) == '-')) {
+				host.append(re.charAt(pos + 1));
+				pos += 2;
+			} else if (Character.isLetterOrDigit(c) || c == '-') {
+				host.append(c);
+				pos++;
+			} else {
+				return false;
+			}
+		}
+		if (pos >= re.length() || host.length() == 0)
+			return false;
+
+		// Literal path prefix, dropping a last character made optional by a quantifier
+		StringBuilder prefix = new StringBuilder();
+		int end = pos;
+		while (end < re.length()) {
+			char c = re.charAt(end);
+			if (c == '\\') {
+				if (end + 1 >= re.length() || Character.isLetterOrDigit(re.charAt(end + 1)))
+					break;
+				prefix.append(re.charAt(end + 1));
+				end += 2;
+			} else if (META.indexOf(c) >= 0) {
+				if ((c == '?' || c == '*' || c == '{') && prefix.length() > 0)
+					prefix.setLength(prefix.length() - 1);
+				break;
+			} else {
+				prefix.append(c);
+				end++;
+			}
+		}
+		if (hasTopLevelAlternation(re, pos))
+			return false;
+
+		String hostName = host.toString().toLowerCase();
+		if (www != null) {
+			entry._exactHost = hostName;
+			entry._wwwHost = "www." + hostName;
+		} else if (anySub != null) {
+			entry._hostSuffix = "." + hostName;
+		} else if (optionalSub != null) {
+			entry._exactHost = hostName;
+			entry._hostSuffix = "." + hostName;
+		} else {
+			entry._exactHost = hostName;
+		}
+
+		entry._caseInsensitive = (entry._pattern.flags() & Pattern.CASE_INSENSITIVE) != 0;
+		entry._pathPrefix = prefix.toString();
+		return true;
+	}
+
+	/**
+	 * Whether a regex has a | outside of groups and character classes from a position on
+	 */
+	private static boolean hasTopLevelAlternation(String re, int pos) {
+		int depth = 0;
+		boolean inClass = false;
+		for (int i = pos; i < re.length(); i++) {
+			char c = re.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (inClass) {
+				if (c == ']')
+					inClass = false;
+			} else if (c == '[') {
+				inClass = true;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '|' && depth <= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String startsWithAny(String re, int pos, String[] prefixes) {
+		for (String prefix : prefixes) {
+			if (re.startsWith(prefix, pos))
+				return prefix;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the lower case authority of an http or https URL, everything between :// and the path
+	 * @param url	URL string
+	 * @return		Authority, null for other URLs
+	 */
+	public static String getAuthority(String url) {
+		int start;
+		if (url.regionMatches(true, 0, "http://", 0, 7)) {
+			start = 7;
+		} else if (url.regionMatches(true, 0, "https://", 0, 8)) {
+			start = 8;
+		} else {
+			return null;
+		}
+
+		int end = start;
+		while (end < url.length()) {
+			char c = url.charAt(end);
+			if (c == '/' || c == '?' || c == '#')
+				break;
+			end++;
+		}
+		return url.substring(start, end).toLowerCase();
+	}
+
+	/**
+	 * Get the rest of a URL after its authority, starting with the path
+	 * @param url		URL string
+	 * @param authority	Authority from {@link #getAuthority(String)}, may be null
+	 * @return			Path, query and fragment, empty without an authority
+	 */
+	public static String getPath(String url, String authority) {
+		if (authority == null)
+			return "";
+		return url.substring(url.indexOf("://") + 3 + authority.length());
+	}
+
+	/**
+	 * A ServiceParser registration
+	 */
+	public static class Entry {
+		private final Pattern _pattern;
+		private final Class<?> _parserClass;
+		private final Supplier<? extends ServiceParser> _factory;
+		private final boolean _partial;
+		private final int _order;
+		private boolean _matchesAll = false;
+		private String _exactHost;
+		private String _wwwHost;
+		private String _hostSuffix;
+		private String _pathPrefix = "";
+		private boolean _caseInsensitive = false;
+
+		Entry(Pattern pattern, Class<?> parserClass, Supplier<? extends ServiceParser> factory, boolean partial, int order) {
+			_pattern = pattern;
+			_parserClass = parserClass;
+			_factory = factory;
+			_partial = partial;
+			_order = order;
+		}
+
+		/**
+		 * Get the registered service pattern
+		 * @return Pattern matched against the URL
+		 */
+		public Pattern getPattern() {
+			return _pattern;
+		}
+
+		/**
+		 * Get the class of the registered ServiceParser
+		 * @return Parser class
+		 */
+		public Class<?> getParserClass() {
+			return _parserClass;
+		}
+
+		/**
+		 * Create a new instance of the registered ServiceParser
+		 * @return ServiceParser
+		 */
+		public ServiceParser newParser() {
+			return _factory.get();
+		}
+
+		/**
+		 * Whether the parser is a ServiceParserPartial, classified at registration
+		 * @return True for partial parsers
+		 */
+		public boolean isPartial() {
+			return _partial;
+		}
+
+		/**
+		 * Whether the registration matches every URL, so needs no check
+		 * @return True for wildcard patterns
+		 */
+		public boolean isUnconditional() {
+			return _matchesAll;
+		}
+
+		/**
+		 * Whether the pattern matches a URL
+		 * @param url	URL string
+		 * @param path	Path of the URL from {@link ServiceParserIndex#getPath(String, String)}
+		 * @return		True on match
+		 */
+		public boolean matches(String url, String path) {
+			return _matchesAll || (fitsPath(path) && _pattern.matcher(url).matches());
+		}
+
+		/**
+		 * Whether the URL path after the authority starts with the required prefix
+		 */
+		private boolean fitsPath(String path) {
+			if (_caseInsensitive)
+				return path.regionMatches(true, 0, _pathPrefix, 0, _pathPrefix.length());
+			return path.startsWith(_pathPrefix);
+		}
+	}
+}
@@ -4,7 +4,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
-import net.htmlparser.jericho.Source;
 
 /**
  * Sets the "type" field, indicating that a page has been recognized
@@ -59,6 +58,17 @@ public class ServiceParserTypesetter extends ServiceParserPartial {
 		return true;
 	}
 
+	/**
+	 * Content type is determined from the URL and head meta data only
+	 * 
+	 * @param head	Meta data index of the document head only
+	 * @return		True if a successor needs the whole document
+	 */
+	@Override
+	public boolean needsFullBody( HtmlMetaIndex head ) {
+		return successorNeedsFullBody( head );
+	}
+
 	/**
 	 * Determine if URL has a primary focus on an image; 
 	 * Image urls are most easily identified by common provider URLs
@@ -103,14 +113,14 @@ public class ServiceParserTypesetter extends ServiceParserPartial {
 	private boolean isVideo() {
 		boolean isVideo = false;
 		
-		Source source = getJerichoSource();
-		if( source != null ) {								
-			if( source.getFirstElement( "property", "og:video", false ) != null 			// <meta property="og:video" content="http://www.youtube.com/v/Ezuz_-eZTMI?version=3&amp;autohide=1">
-				|| source.getFirstElement( "content", "video", false ) != null 				// <meta property="og:type" content="video"> 
-				|| source.getFirstElement( "rel", "video_src", false ) != null  			// <link rel="video_src" href='http://cdn.livestream.com/grid/LSPlayer.swf?channel=occupynyc&autoPlay=true'/>
-				|| source.getFirstElement( "property", "og:video:type", false ) != null 	// <meta property="og:video:type" content="application/x-shockwave-flash">
-				|| source.getFirstElement( "property", "og:video:width", false ) != null 	// <meta property="og:video:width" content="398">
-				|| source.getFirstElement( "property", "og:video:height", false ) != null 	// <meta property="og:video:height" content="224">
+		HtmlMetaIndex index = getMetaIndex();
+		if( index != null ) {								
+			if( index.getFirstElement( "property", "og:video" ) != null 			// <meta property="og:video" content="http://www.youtube.com/v/Ezuz_-eZTMI?version=3&amp;autohide=1">
+				|| index.getFirstElement( "content", "video" ) != null 				// <meta property="og:type" content="video"> 
+				|| index.getFirstElement( "rel", "video_src" ) != null  			// <link rel="video_src" href='http://cdn.livestream.com/grid/LSPlayer.swf?channel=occupynyc&autoPlay=true'/>
+				|| index.getFirstElement( "property", "og:video:type" ) != null 	// <meta property="og:video:type" content="application/x-shockwave-flash">
+				|| index.getFirstElement( "property", "og:video:width" ) != null 	// <meta property="og:video:width" content="398">
+				|| index.getFirstElement( "property", "og:video:height" ) != null 	// <meta property="og:video:height" content="224">
 				) {	
 				isVideo = true;
 			}			
@@ -0,0 +1,78 @@
+package org.linter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesces concurrent work on the same key: the first caller leads and does the work,
+ * callers arriving while it runs wait for its result instead of repeating it
+ *
+ * A key is only in flight while its leader runs, nothing is kept afterwards. Failures are
+ * results like any other and reach every waiter.
+ *
+ * @param <T>	Result type, shared by all waiters and therefore not to be modified
+ */
+public class SingleFlight<T> {
+
+	/**
+	 * Running flights by key
+	 */
+	private final ConcurrentHashMap<String, Flight<T>> _flights = new ConcurrentHashMap<String, Flight<T>>();
+
+
+
+	/**
+	 * Join the running flight of a key, or start one led by the caller
+	 * @param key	Key
+	 * @return		Running flight to wait on, null if the caller now leads and must call
+	 * 				{@link #complete(String, Object)} when done, also on failure
+	 */
+	public Flight<T> join(String key) {
+		Flight<T> running = _flights.get(key);
+		if (running != null)
+			return running;
+		return _flights.putIfAbsent(key, new Flight<T>());
+	}
+
+	/**
+	 * End the flight led by the caller and hand its result to the waiters
+	 * @param key		Key
+	 * @param result	Result
+	 */
+	public void complete(String key, T result) {
+		Flight<T> flight = _flights.remove(key);
+		if (flight != null)
+			flight.complete(result);
+	}
+
+	/**
+	 * Get the number of running flights
+	 * @return Flight count
+	 */
+	public int size() {
+		return _flights.size();
+	}
+
+	/**
+	 * Work in progress on one key
+	 */
+	public static class Flight<T> {
+		private final CountDownLatch _done = new CountDownLatch(1);
+		private volatile T _result;
+
+		void complete(T result) {
+			_result = result;
+			_done.countDown();
+		}
+
+		/**
+		 * Wait for the leader to complete the flight
+		 * @return	Result of the leader
+		 * @throws InterruptedException	If interrupted while waiting
+		 */
+		public T await() throws InterruptedException {
+			_done.await();
+			return _result;
+		}
+	}
+}
@@ -1,21 +1,38 @@
 package org.linter;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
- * Miscellaneous URL functions 
+ * Miscellaneous URL functions
  */
 public class URLParser {
-	
+
+	/**
+	 * Query parameters used only to track clicks, dropped by {@link #canonicalize(String, boolean)}
+	 * in addition to all parameters starting with TRACKING_PREFIX
+	 */
+	public static final String[] TRACKING_PARAMETERS = {
+		"fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_hsenc", "_hsmi", "mkt_tok"
+	};
+
+	/**
+	 * Prefix of Urchin tracking parameters, e.g. utm_source
+	 */
+	public static final String TRACKING_PREFIX = "utm_";
+
 	/**
 	 * Remove a list of parameters from a URL
-	 * 
+	 *
+	 * The query is scanned once and the remaining parameters keep their order, including
+	 * duplicate and valueless parameters; only empty parameters are dropped. The URL is
+	 * returned as is if nothing is removed.
+	 *
 	 * @param url				URL with parameters to remove
 	 * @param removeParameters	List of unwanted parameters to remove
 	 * @return 					Original url with all unwanted parameters removed
 	 */
-	public static String removeParameters( String url, String[] removeParameters ) {		
-		
+	public static String removeParameters( String url, String[] removeParameters ) {
+
 		// Bail on bad data
 		if( url == null ||
 			url.isEmpty() ||
@@ -23,46 +40,257 @@ public class URLParser {
 			removeParameters.length == 0 ) {
 			return url;
 		}
-			
-		// Parse Parameter List
-		String[] urlComponents = url.split( "\\?" );
-		
-		// Bail if URL doesn't contain exactly 1 questionmark. No parameters, or something weird
-		if( urlComponents.length != 2 || urlComponents[1].isEmpty() ) {
+
+		int end = indexOf( url, '#', 0, url.length() );
+		int query = indexOf( url, '?', 0, end );
+		if( query == end ) {
 			return url;
 		}
-		
-		// Parse each parameter
-		HashMap<String, String> parameterMap = new HashMap<String, String>();
-		String[] parameterList = urlComponents[1].split( "&" );
-		
-		for( String parameter : parameterList ) {		
-			String[] parameterComponents = parameter.split( "=" );
-			if( parameterComponents.length == 2 && !parameterComponents[0].isEmpty() && !parameterComponents[1].isEmpty() ) {		
-				parameterMap.put( parameterComponents[0].trim(), parameterComponents[1].trim() );
+
+		// Built on the first removal, until then every parameter was kept in place
+		StringBuilder sb = null;
+		int kept = 0;
+		for( int start = query + 1; start <= end; ) {
+			int next = indexOf( url, '&', start, end );
+
+			if( next == start || isListed( url, start, next, removeParameters ) ) {
+				if( sb == null ) {
+					sb = new StringBuilder( url.length() );
+					sb.append( url, 0, ( kept == 0 ) ? query : start - 1 );
+				}
+			} else {
+				if( sb != null ) {
+					sb.append( ( kept == 0 ) ? '?' : '&' ).append( url, start, next );
+				}
+				kept++;
 			}
+			start = next + 1;
+		}
+
+		if( sb == null ) {
+			return url;
+		}
+		sb.append( url, end, url.length() );
+		return sb.toString();
+	}
+
+	/**
+	 * Canonicalize a URL for use as a cache or deduplication key, without sorting parameters
+	 *
+	 * @param url	URL
+	 * @return		Canonical URL, see {@link #canonicalize(String, boolean)}
+	 */
+	public static String canonicalize( String url ) {
+		return canonicalize( url, false );
+	}
+
+	/**
+	 * Canonicalize a URL for use as a cache or deduplication key
+	 *
+	 * The scheme and host are lowercased, the default port of http and https is removed,
+	 * an empty path becomes /, tracking and empty parameters and the fragment are dropped.
+	 * Percent-encoding and the case of the path are left alone. Strings without a scheme
+	 * are only trimmed.
+	 *
+	 * @param url				URL
+	 * @param sortParameters	True to sort parameters by name, keeping the order of equal names
+	 * @return					Canonical URL, null if url is null
+	 */
+	public static String canonicalize( String url, boolean sortParameters ) {
+		if( url == null ) {
+			return null;
+		}
+
+		int start = 0;
+		int end = url.length();
+		while( start < end && url.charAt( start ) <= ' ' ) {
+			start++;
+		}
+		while( end > start && url.charAt( end - 1 ) <= ' ' ) {
+			end--;
 		}
 
-		// Remove Parameters
-		for( String removeParameter : removeParameters ) {
-			if( parameterMap.containsKey( removeParameter ) ) {
-				parameterMap.remove( removeParameter );
+		int schemeEnd = url.indexOf( "://", start );
+		if( schemeEnd <= start || schemeEnd >= end || !isScheme( url, start, schemeEnd ) ) {
+			return url.substring( start, end );
+		}
+
+		int fragment = indexOf( url, '#', schemeEnd + 3, end );
+		int authorityEnd = schemeEnd + 3;
+		while( authorityEnd < fragment && url.charAt( authorityEnd ) != '/' && url.charAt( authorityEnd ) != '?' ) {
+			authorityEnd++;
+		}
+		int query = indexOf( url, '?', authorityEnd, fragment );
+
+		StringBuilder sb = new StringBuilder( end - start );
+		appendLowerCase( sb, url, start, schemeEnd );
+		sb.append( "://" );
+
+		// User info is kept, the host is lowercased and a default port dropped
+		int hostStart = url.lastIndexOf( '@', authorityEnd - 1 ) + 1;
+		if( hostStart <= schemeEnd + 3 ) {
+			hostStart = schemeEnd + 3;
+		} else {
+			sb.append( url, schemeEnd + 3, hostStart );
+		}
+		int portStart = authorityEnd;
+		for( int i = authorityEnd - 1; i >= hostStart; i-- ) {
+			char c = url.charAt( i );
+			if( c == ':' ) {
+				portStart = i;
+				break;
+			} else if( c < '0' || c > '9' ) {
+				break;
 			}
 		}
-		
-		// Resassemble URL
-		String ret = urlComponents[0];
-		if( parameterMap.size() > 0 ) {
-			ret += "?";
-			for( String key : parameterMap.keySet() ) {
-				ret += key + "=" + parameterMap.get( key ) + "&";				
+		appendLowerCase( sb, url, hostStart, portStart );
+		if( portStart + 1 < authorityEnd && !isDefaultPort( url, start, schemeEnd, portStart + 1, authorityEnd ) ) {
+			sb.append( url, portStart, authorityEnd );
+		}
+
+		if( query == authorityEnd ) {
+			sb.append( '/' );
+		} else {
+			sb.append( url, authorityEnd, query );
+		}
+
+		if( query < fragment ) {
+			if( sortParameters ) {
+				appendSortedParameters( sb, url, query + 1, fragment );
+			} else {
+				int kept = 0;
+				for( int i = query + 1; i <= fragment; ) {
+					int next = indexOf( url, '&', i, fragment );
+					if( next > i && !isTracking( url, i, next ) ) {
+						sb.append( ( kept++ == 0 ) ? '?' : '&' ).append( url, i, next );
+					}
+					i = next + 1;
+				}
 			}
 		}
-		if( ret.lastIndexOf( "&" ) == ( ret.length() - 1 ) ) {
-			ret = ret.substring( 0, ret.length() - 1 );
+
+		return sb.toString();
+	}
+
+	/**
+	 * Append the parameters sorted by name, dropping tracking and empty parameters
+	 */
+	private static void appendSortedParameters( StringBuilder sb, String url, int start, int end ) {
+		int[] starts = new int[8];
+		int[] ends = new int[8];
+		int count = 0;
+		for( int i = start; i <= end; ) {
+			int next = indexOf( url, '&', i, end );
+			if( next > i && !isTracking( url, i, next ) ) {
+				if( count == starts.length ) {
+					starts = Arrays.copyOf( starts, count * 2 );
+					ends = Arrays.copyOf( ends, count * 2 );
+				}
+
+				// Insertion sort, stable, queries are short
+				int j = count++;
+				while( j > 0 && compareNames( url, starts[j - 1], ends[j - 1], i, next ) > 0 ) {
+					starts[j] = starts[j - 1];
+					ends[j] = ends[j - 1];
+					j--;
+				}
+				starts[j] = i;
+				ends[j] = next;
+			}
+			i = next + 1;
+		}
+
+		for( int i = 0; i < count; i++ ) {
+			sb.append( ( i == 0 ) ? '?' : '&' ).append( url, starts[i], ends[i] );
 		}
-		
-		return ret;
+	}
+
+	/**
+	 * Compare the names of two parameters
+	 */
+	private static int compareNames( String url, int start1, int end1, int start2, int end2 ) {
+		int nameEnd1 = indexOf( url, '=', start1, end1 );
+		int nameEnd2 = indexOf( url, '=', start2, end2 );
+		int length1 = nameEnd1 - start1;
+		int length2 = nameEnd2 - start2;
+		for( int i = 0; i < Math.min( length1, length2 ); i++ ) {
+			int diff = url.charAt( start1 + i ) - url.charAt( start2 + i );
+			if( diff != 0 ) {
+				return diff;
+			}
+		}
+		return length1 - length2;
+	}
+
+	/**
+	 * Determine if the name of a parameter is one of a list
+	 */
+	private static boolean isListed( String url, int start, int end, String[] names ) {
+		int nameLength = indexOf( url, '=', start, end ) - start;
+		for( String name : names ) {
+			if( name.length() == nameLength && url.regionMatches( start, name, 0, nameLength ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if a parameter only tracks clicks
+	 */
+	private static boolean isTracking( String url, int start, int end ) {
+		int nameLength = indexOf( url, '=', start, end ) - start;
+		if( nameLength >= TRACKING_PREFIX.length() && url.regionMatches( true, start, TRACKING_PREFIX, 0, TRACKING_PREFIX.length() ) ) {
+			return true;
+		}
+		for( String name : TRACKING_PARAMETERS ) {
+			if( name.length() == nameLength && url.regionMatches( true, start, name, 0, nameLength ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if a range is an RFC 3986 scheme, a letter followed by letters, digits, +, - or .
+	 */
+	private static boolean isScheme( String url, int start, int end ) {
+		for( int i = start; i < end; i++ ) {
+			char c = url.charAt( i );
+			boolean alpha = ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+			if( !alpha && ( i == start || !( ( c >= '0' && c <= '9' ) || c == '+' || c == '-' || c == '.' ) ) ) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
+	/**
+	 * Determine if a port is the default of the scheme, for http and https
+	 */
+	private static boolean isDefaultPort( String url, int schemeStart, int schemeEnd, int portStart, int portEnd ) {
+		if( schemeEnd - schemeStart == 4 && url.regionMatches( true, schemeStart, "http", 0, 4 ) ) {
+			return portEnd - portStart == 2 && url.startsWith( "80", portStart );
+		} else if( schemeEnd - schemeStart == 5 && url.regionMatches( true, schemeStart, "https", 0, 5 ) ) {
+			return portEnd - portStart == 3 && url.startsWith( "443", portStart );
+		}
+		return false;
+	}
+
+	private static void appendLowerCase( StringBuilder sb, String url, int start, int end ) {
+		for( int i = start; i < end; i++ ) {
+			char c = url.charAt( i );
+			sb.append( ( c >= 'A' && c <= 'Z' ) ? (char) ( c + ( 'a' - 'A' ) ) : c );
+		}
+	}
+
+	/**
+	 * Index of a character within a range
+	 * @return Index, end if not found
+	 */
+	private static int indexOf( String url, char c, int start, int end ) {
+		int i = url.indexOf( c, start );
+		return ( i < 0 || i > end ) ? end : i;
+	}
+
 }